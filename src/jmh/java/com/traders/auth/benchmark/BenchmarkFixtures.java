@@ -0,0 +1,61 @@
+package com.traders.auth.benchmark;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.jwk.Curve;
+import com.nimbusds.jose.jwk.ECKey;
+import com.nimbusds.jose.jwk.KeyUse;
+import com.nimbusds.jose.jwk.gen.ECKeyGenerator;
+import com.traders.auth.domain.Authority;
+import com.traders.auth.domain.User;
+import com.traders.common.constants.AuthoritiesConstants;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Shared, deterministic inputs for the benchmarks.
+ */
+public final class BenchmarkFixtures {
+
+    private BenchmarkFixtures() {}
+
+    public static User user(long id) {
+        User user = new User();
+        user.setId(id);
+        user.setLogin("user" + id);
+        user.setFirstName("First" + id);
+        user.setLastName("Last" + id);
+        user.setEmail("user" + id + "@example.com");
+        user.setActivated(true);
+        user.setPassword("$2a$10$VEjxo0jq2YG9Rbk2HmX9S.k1uZBGYUHdUcid3g/vfiEl7lwWgOH/K");
+        user.setCreatedBy("system");
+        user.setCreatedDate(Instant.EPOCH);
+        user.setAuthorities(Set.of(new Authority().name(AuthoritiesConstants.USER)));
+        return user;
+    }
+
+    public static List<User> users(int count) {
+        List<User> users = new ArrayList<>(count);
+        for (int i = 1; i <= count; i++) {
+            users.add(user(i));
+        }
+        return users;
+    }
+
+    public static ECKey signingKey() {
+        try {
+            return new ECKeyGenerator(Curve.P_256)
+                .keyID("benchmark")
+                .keyUse(KeyUse.SIGNATURE)
+                .algorithm(JWSAlgorithm.ES256)
+                .notBeforeTime(Date.from(Instant.EPOCH))
+                .generate();
+        } catch (JOSEException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
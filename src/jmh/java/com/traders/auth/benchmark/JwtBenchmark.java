@@ -0,0 +1,161 @@
+package com.traders.auth.benchmark;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.crypto.ECDSAVerifier;
+import com.nimbusds.jose.jwk.ECKey;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.source.ImmutableJWKSet;
+import com.nimbusds.jose.jwk.source.ImmutableSecret;
+import com.nimbusds.jose.proc.SecurityContext;
+import com.traders.auth.domain.User;
+import com.traders.auth.security.CredentialCache;
+import com.traders.auth.security.CustomUserDetails;
+import com.traders.auth.security.JwtKeyManager;
+import com.traders.auth.security.KeyRotatingJwtDecoder;
+import com.traders.auth.security.LoginMetrics;
+import com.traders.auth.security.StepUpAssertionService;
+import com.traders.auth.security.TokenRevocationService;
+import com.traders.auth.security.UserAuthenticationService;
+import com.traders.auth.repository.UserRepository;
+import com.traders.auth.service.LoginWriteBehind;
+import com.traders.auth.service.RedisBatchWriter;
+import com.traders.auth.service.RefreshTokenService;
+import com.traders.auth.web.rest.AuthenticateController;
+import com.traders.common.security.SecurityUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.config.annotation.authentication.builders.AuthenticationManagerBuilder;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.oauth2.jose.jws.SignatureAlgorithm;
+import org.springframework.security.oauth2.jwt.JwsHeader;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtClaimsSet;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtEncoder;
+import org.springframework.security.oauth2.jwt.JwtEncoderParameters;
+import org.springframework.security.oauth2.jwt.JwtValidators;
+import org.springframework.security.oauth2.jwt.NimbusJwtDecoder;
+import org.springframework.security.oauth2.jwt.NimbusJwtEncoder;
+
+import javax.crypto.spec.SecretKeySpec;
+import java.security.SecureRandom;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+/**
+ * Token issuance through {@link AuthenticateController#createToken} and verification through the resource-server
+ * decoders, for the current ES256 keys and the legacy HS512 secret.
+ * <p>
+ * Collaborators that would reach Redis or the database are stub-only mocks, so only claim building, signing and
+ * verification are measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class JwtBenchmark {
+
+    private AuthenticateController authenticateController;
+
+    private Authentication authentication;
+
+    private JwtDecoder es256Decoder;
+
+    private JwtDecoder hs512Decoder;
+
+    private String es256Token;
+
+    private String hs512Token;
+
+    @Setup
+    public void setUp() throws JOSEException {
+        ECKey signingKey = BenchmarkFixtures.signingKey();
+        JwtKeyManager jwtKeyManager = stub(JwtKeyManager.class);
+        when(jwtKeyManager.activeKey()).thenReturn(signingKey);
+        when(jwtKeyManager.verifier(signingKey.getKeyID())).thenReturn(Optional.of(new ECDSAVerifier(signingKey.toPublicJWK())));
+        JwtEncoder es256Encoder = new NimbusJwtEncoder(new ImmutableJWKSet<>(new JWKSet(signingKey)));
+
+        authenticateController = new AuthenticateController(
+            es256Encoder,
+            stub(RedisBatchWriter.class),
+            stub(AuthenticationManagerBuilder.class),
+            stub(UserRepository.class),
+            stub(PasswordEncoder.class),
+            stub(UserAuthenticationService.class),
+            stub(CredentialCache.class),
+            jwtKeyManager,
+            stub(RefreshTokenService.class),
+            stub(TokenRevocationService.class),
+            stub(LoginWriteBehind.class),
+            stub(StepUpAssertionService.class),
+            stub(LoginMetrics.class)
+        );
+        User user = BenchmarkFixtures.user(1);
+        CustomUserDetails userDetails = new CustomUserDetails(
+            user.getId(),
+            "encrypted-user-id",
+            new org.springframework.security.core.userdetails.User(user.getLogin(), user.getPassword(), List.of(new SimpleGrantedAuthority("ROLE_USER")))
+        );
+        authentication = new UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities());
+
+        es256Decoder = new KeyRotatingJwtDecoder(jwtKeyManager, null, JwtValidators.createDefault());
+        es256Token = es256Encoder
+            .encode(JwtEncoderParameters.from(JwsHeader.with(SignatureAlgorithm.ES256).keyId(signingKey.getKeyID()).build(), claims()))
+            .getTokenValue();
+
+        byte[] secret = new byte[64];
+        new SecureRandom().nextBytes(secret);
+        SecretKeySpec secretKey = new SecretKeySpec(secret, SecurityUtils.JWT_ALGORITHM.getName());
+        NimbusJwtDecoder legacyDecoder = NimbusJwtDecoder.withSecretKey(secretKey).macAlgorithm(SecurityUtils.JWT_ALGORITHM).build();
+        legacyDecoder.setJwtValidator(JwtValidators.createDefault());
+        hs512Decoder = legacyDecoder;
+        hs512Token = new NimbusJwtEncoder(new ImmutableSecret<SecurityContext>(secretKey))
+            .encode(JwtEncoderParameters.from(JwsHeader.with(SecurityUtils.JWT_ALGORITHM).build(), claims()))
+            .getTokenValue();
+    }
+
+    private static JwtClaimsSet claims() {
+        Instant now = Instant.now();
+        return JwtClaimsSet.builder()
+            .id("benchmark")
+            .issuedAt(now)
+            .expiresAt(now.plus(1, ChronoUnit.DAYS))
+            .subject("user1")
+            .claim(SecurityUtils.AUTHORITIES_KEY, "ROLE_USER")
+            .claim("userId", "encrypted-user-id")
+            .build();
+    }
+
+    private static <T> T stub(Class<T> type) {
+        return mock(type, withSettings().stubOnly());
+    }
+
+    @Benchmark
+    public String createToken() {
+        return authenticateController.createToken(authentication, false);
+    }
+
+    @Benchmark
+    public Jwt decodeEs256() {
+        return es256Decoder.decode(es256Token);
+    }
+
+    @Benchmark
+    public Jwt decodeLegacyHs512() {
+        return hs512Decoder.decode(hs512Token);
+    }
+}
@@ -0,0 +1,57 @@
+package com.traders.auth.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.security.crypto.argon2.Argon2PasswordEncoder;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of one password hash and one verification, per algorithm and cost parameter.
+ * <p>
+ * {@code bcrypt-N} is BCrypt at strength N; {@code argon2-N} is Argon2id with 19 MiB of memory and N iterations.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class PasswordEncoderBenchmark {
+
+    private static final String PASSWORD = "correct horse battery staple";
+
+    @Param({ "bcrypt-10", "bcrypt-12", "bcrypt-14", "argon2-1", "argon2-2", "argon2-3" })
+    public String encoder;
+
+    private PasswordEncoder passwordEncoder;
+
+    private String hash;
+
+    @Setup
+    public void setUp() {
+        String[] parts = encoder.split("-");
+        int cost = Integer.parseInt(parts[1]);
+        passwordEncoder = switch (parts[0]) {
+            case "bcrypt" -> new BCryptPasswordEncoder(cost);
+            case "argon2" -> new Argon2PasswordEncoder(16, 32, 1, 19456, cost);
+            default -> throw new IllegalArgumentException(encoder);
+        };
+        hash = passwordEncoder.encode(PASSWORD);
+    }
+
+    @Benchmark
+    public String encode() {
+        return passwordEncoder.encode(PASSWORD);
+    }
+
+    @Benchmark
+    public boolean matches() {
+        return passwordEncoder.matches(PASSWORD, hash);
+    }
+}
@@ -0,0 +1,61 @@
+package com.traders.auth.benchmark;
+
+import com.traders.auth.domain.User;
+import com.traders.auth.service.dto.AdminUserDTO;
+import com.traders.auth.service.dto.UserDTO;
+import com.traders.auth.service.mapper.UserMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * DTO construction and {@link UserMapper} list mapping, as done for every page of users returned by the API.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class UserMappingBenchmark {
+
+    @Param({ "20", "200" })
+    public int pageSize;
+
+    private final UserMapper userMapper = new UserMapper();
+
+    private User user;
+
+    private List<User> users;
+
+    @Setup
+    public void setUp() {
+        user = BenchmarkFixtures.user(1);
+        users = BenchmarkFixtures.users(pageSize);
+    }
+
+    @Benchmark
+    public AdminUserDTO adminUserDto() {
+        return new AdminUserDTO(user);
+    }
+
+    @Benchmark
+    public UserDTO userDto() {
+        return new UserDTO(user);
+    }
+
+    @Benchmark
+    public List<AdminUserDTO> usersToAdminUserDtos() {
+        return userMapper.usersToAdminUserDTOs(users);
+    }
+
+    @Benchmark
+    public List<UserDTO> usersToUserDtos() {
+        return userMapper.usersToUserDTOs(users);
+    }
+}
@@ -0,0 +1,50 @@
+package com.traders.auth.security;
+
+import com.traders.auth.benchmark.BenchmarkFixtures;
+import com.traders.auth.repository.UserRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.withSettings;
+
+/**
+ * Building the authenticated principal from cached credentials, including the {@code EncryptionUtil.encrypt} of the
+ * user id done for every login and refresh.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class UserAuthenticationServiceBenchmark {
+
+    private UserAuthenticationService userAuthenticationService;
+
+    private CredentialSnapshot credentials;
+
+    @Setup
+    public void setUp() {
+        userAuthenticationService = new UserAuthenticationService(
+            mock(UserRepository.class, withSettings().stubOnly()),
+            mock(CredentialCache.class, withSettings().stubOnly()),
+            mock(LoginAttemptService.class, withSettings().stubOnly())
+        );
+        credentials = CredentialSnapshot.of(BenchmarkFixtures.user(1));
+    }
+
+    @Benchmark
+    public CustomUserDetails createSpringSecurityUser() {
+        return userAuthenticationService.createSpringSecurityUser("user1", credentials);
+    }
+
+    @Benchmark
+    public CredentialSnapshot credentialSnapshot() {
+        return CredentialSnapshot.of(BenchmarkFixtures.user(1));
+    }
+}
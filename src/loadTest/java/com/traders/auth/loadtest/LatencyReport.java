@@ -0,0 +1,150 @@
+package com.traders.auth.loadtest;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency histograms of a load-test run, per scenario.
+ * <p>
+ * Two latencies are recorded for every request. <em>Response time</em> runs from the moment the request was scheduled
+ * to arrive until its response, so a stalled service or client is charged for every request that should have been sent
+ * meanwhile; this is the coordinated-omission corrected number to compare against targets. <em>Service time</em> runs
+ * from the moment the request was actually sent and shows how much of the response time was queueing.
+ */
+class LatencyReport {
+
+    private static final long HIGHEST_TRACKABLE_NANOS = TimeUnit.MINUTES.toNanos(2);
+
+    private static final double NANOS_PER_MILLI = 1_000_000.0;
+
+    private final Map<Scenario, Stats> stats = new EnumMap<>(Scenario.class);
+
+    LatencyReport() {
+        for (Scenario scenario : Scenario.values()) {
+            stats.put(scenario, new Stats());
+        }
+    }
+
+    void record(Scenario scenario, long intendedStart, long actualStart, long end, boolean success) {
+        Stats stats = this.stats.get(scenario);
+        stats.responseTime.recordValue(Math.min(end - intendedStart, HIGHEST_TRACKABLE_NANOS));
+        stats.serviceTime.recordValue(Math.min(end - actualStart, HIGHEST_TRACKABLE_NANOS));
+        if (!success) {
+            stats.errors.increment();
+        }
+    }
+
+    /**
+     * Counts an arrival that was not sent because too many requests were in flight.
+     */
+    void dropped(Scenario scenario) {
+        stats.get(scenario).dropped.increment();
+    }
+
+    /**
+     * Discards everything recorded so far, at the end of the warmup.
+     */
+    void reset() {
+        stats.values().forEach(Stats::reset);
+    }
+
+    /**
+     * Prints a summary and writes the full percentile distributions to {@code dir}.
+     */
+    void write(Path dir, LoadTestSettings settings, Duration elapsed, PrintStream out) throws IOException {
+        Files.createDirectories(dir);
+        out.printf(
+            Locale.ENGLISH,
+            "%nLoad test: %d users, %d req/s %s arrivals, %s measured%n",
+            settings.users(),
+            settings.rate(),
+            settings.arrivals().name().toLowerCase(Locale.ENGLISH),
+            elapsed
+        );
+        out.printf(
+            Locale.ENGLISH,
+            "%-22s %9s %8s %8s %9s %9s %9s %9s %9s   %9s %9s%n",
+            "scenario",
+            "count",
+            "errors",
+            "dropped",
+            "p50 ms",
+            "p90 ms",
+            "p99 ms",
+            "p99.9 ms",
+            "max ms",
+            "svc p50",
+            "svc p99"
+        );
+        Histogram total = new Histogram(HIGHEST_TRACKABLE_NANOS, 3);
+        for (Map.Entry<Scenario, Stats> entry : stats.entrySet()) {
+            Histogram response = entry.getValue().responseTime.getIntervalHistogram();
+            Histogram service = entry.getValue().serviceTime.getIntervalHistogram();
+            if (response.getTotalCount() == 0 && entry.getValue().dropped.sum() == 0) {
+                continue;
+            }
+            total.add(response);
+            String name = entry.getKey().name().toLowerCase(Locale.ENGLISH);
+            out.printf(
+                Locale.ENGLISH,
+                "%-22s %9d %8d %8d %9.2f %9.2f %9.2f %9.2f %9.2f   %9.2f %9.2f%n",
+                name,
+                response.getTotalCount(),
+                entry.getValue().errors.sum(),
+                entry.getValue().dropped.sum(),
+                millis(response.getValueAtPercentile(50)),
+                millis(response.getValueAtPercentile(90)),
+                millis(response.getValueAtPercentile(99)),
+                millis(response.getValueAtPercentile(99.9)),
+                millis(response.getMaxValue()),
+                millis(service.getValueAtPercentile(50)),
+                millis(service.getValueAtPercentile(99))
+            );
+            writeDistribution(dir.resolve(name + "-response.hgrm"), response);
+            writeDistribution(dir.resolve(name + "-service.hgrm"), service);
+        }
+        double throughput = total.getTotalCount() / Math.max(1.0, elapsed.toMillis() / 1000.0);
+        out.printf(Locale.ENGLISH, "%nThroughput: %.1f req/s, all scenarios p99 %.2f ms%n", throughput, millis(total.getValueAtPercentile(99)));
+        writeDistribution(dir.resolve("all-response.hgrm"), total);
+        out.printf("Distributions written to %s%n", dir.toAbsolutePath());
+    }
+
+    private static void writeDistribution(Path file, Histogram histogram) throws IOException {
+        try (PrintStream stream = new PrintStream(Files.newOutputStream(file))) {
+            histogram.outputPercentileDistribution(stream, NANOS_PER_MILLI);
+        }
+    }
+
+    private static double millis(long nanos) {
+        return nanos / NANOS_PER_MILLI;
+    }
+
+    private static final class Stats {
+
+        private final Recorder responseTime = new Recorder(HIGHEST_TRACKABLE_NANOS, 3);
+
+        private final Recorder serviceTime = new Recorder(HIGHEST_TRACKABLE_NANOS, 3);
+
+        private final LongAdder errors = new LongAdder();
+
+        private final LongAdder dropped = new LongAdder();
+
+        void reset() {
+            responseTime.reset();
+            serviceTime.reset();
+            errors.reset();
+            dropped.reset();
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.traders.auth.loadtest;
+
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Open-model traffic generator.
+ * <p>
+ * Arrivals follow a fixed schedule derived from the target rate and never wait for earlier responses, the way
+ * independent users behave. Each request runs on its own virtual thread and its latency is measured from its scheduled
+ * arrival, so when the service or this generator falls behind, the backlog shows up in the numbers instead of silently
+ * lowering the offered load.
+ */
+class LoadGenerator {
+
+    private final LoadTestSettings settings;
+
+    private final Scenario[] scenarios;
+
+    private final int[] cumulativeWeights;
+
+    LoadGenerator(LoadTestSettings settings) {
+        this.settings = settings;
+        this.scenarios = settings.mix().keySet().toArray(Scenario[]::new);
+        this.cumulativeWeights = new int[scenarios.length];
+        int sum = 0;
+        int i = 0;
+        for (Map.Entry<Scenario, Integer> entry : settings.mix().entrySet()) {
+            sum += entry.getValue();
+            cumulativeWeights[i++] = sum;
+        }
+    }
+
+    /**
+     * Runs the warmup and the measured phase.
+     *
+     * @return the latencies of the measured phase.
+     */
+    LatencyReport run(Scenario.Context context) throws InterruptedException {
+        LatencyReport report = new LatencyReport();
+        Semaphore inFlight = new Semaphore(settings.maxInFlight());
+        ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+        HttpClient client = HttpClient.newBuilder()
+            .executor(executor)
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+
+        double meanGapNanos = TimeUnit.SECONDS.toNanos(1) / (double) settings.rate();
+        long start = System.nanoTime();
+        long measureFrom = start + settings.warmup().toNanos();
+        long end = measureFrom + settings.duration().toNanos();
+        boolean measuring = settings.warmup().isZero();
+        for (double offset = 0; start + (long) offset < end; offset += gap(meanGapNanos)) {
+            long intendedStart = start + (long) offset;
+            waitUntil(intendedStart);
+            if (!measuring && intendedStart >= measureFrom) {
+                report.reset();
+                measuring = true;
+            }
+            Scenario scenario = pick();
+            if (!inFlight.tryAcquire()) {
+                report.dropped(scenario);
+            } else {
+                executor.execute(() -> {
+                    try {
+                        send(client, scenario, context, intendedStart, report);
+                    } finally {
+                        inFlight.release();
+                    }
+                });
+            }
+        }
+        executor.shutdown();
+        if (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+            executor.shutdownNow();
+        }
+        client.close();
+        return report;
+    }
+
+    private static void send(HttpClient client, Scenario scenario, Scenario.Context context, long intendedStart, LatencyReport report) {
+        long actualStart = System.nanoTime();
+        boolean success;
+        try {
+            HttpRequest request = scenario.request(context);
+            success = scenario.isSuccess(client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode());
+        } catch (IOException e) {
+            success = false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        report.record(scenario, intendedStart, actualStart, System.nanoTime(), success);
+    }
+
+    private Scenario pick() {
+        int ticket = ThreadLocalRandom.current().nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+        for (int i = 0; i < cumulativeWeights.length; i++) {
+            if (ticket < cumulativeWeights[i]) {
+                return scenarios[i];
+            }
+        }
+        return scenarios[scenarios.length - 1];
+    }
+
+    private double gap(double meanGapNanos) {
+        if (settings.arrivals() == LoadTestSettings.Arrivals.CONSTANT) {
+            return meanGapNanos;
+        }
+        return -Math.log(1 - ThreadLocalRandom.current().nextDouble()) * meanGapNanos;
+    }
+
+    // a late dispatcher sends immediately; the requests it owes are charged from their scheduled time
+    private static void waitUntil(long deadline) {
+        long remaining;
+        while ((remaining = deadline - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(remaining);
+        }
+    }
+}
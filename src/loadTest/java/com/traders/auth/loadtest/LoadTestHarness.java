@@ -0,0 +1,114 @@
+package com.traders.auth.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.fppt.jedismock.RedisServer;
+import com.traders.auth.HellotradersAuthenticationService;
+import com.traders.auth.service.DownlineAggregateService;
+import com.traders.auth.service.ReferenceDataRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Boots the service against in-process stand-ins of its MySQL database (H2 in MySQL mode) and Redis, seeds users, and
+ * drives an open-model request mix against it. Run through {@code ./gradlew loadTest}; see {@link LoadTestSettings}.
+ */
+public final class LoadTestHarness {
+
+    private static final Logger LOG = LoggerFactory.getLogger(LoadTestHarness.class);
+
+    private LoadTestHarness() {}
+
+    public static void main(String[] args) throws Exception {
+        LoadTestSettings settings = LoadTestSettings.fromSystemProperties();
+        RedisServer redis = RedisServer.newRedisServer().start();
+        try (ConfigurableApplicationContext context = start(redis)) {
+            new UserSeeder(
+                context.getBean(JdbcTemplate.class),
+                context.getBean(TransactionTemplate.class),
+                context.getBean(PasswordEncoder.class)
+            ).seed(settings.users());
+            // the authorities and the parent account were seeded after the registry loaded
+            context.getBean(ReferenceDataRegistry.class).refresh();
+            // and the seeded users went straight into the tables, without downline aggregate deltas
+            context.getBean(DownlineAggregateService.class).rebuild();
+
+            URI baseUri = URI.create("http://localhost:" + context.getEnvironment().getProperty("local.server.port") + "/");
+            List<String> tokens = login(baseUri, settings.tokenPool());
+            LOG.info("Logged in {} users, running {} warmup and {} measured at {} req/s", tokens.size(), settings.warmup(), settings.duration(), settings.rate());
+
+            Scenario.Context scenarioContext = new Scenario.Context(baseUri, settings.users(), tokens, new AtomicLong());
+            LatencyReport report = new LoadGenerator(settings).run(scenarioContext);
+            report.write(settings.reportDir(), settings, settings.duration(), System.out);
+        } finally {
+            redis.stop();
+        }
+    }
+
+    private static ConfigurableApplicationContext start(RedisServer redis) {
+        // system properties, so that the bootstrap context sees them too
+        System.setProperty("spring.cloud.consul.enabled", "false");
+        System.setProperty("spring.cloud.config.enabled", "false");
+        System.setProperty("spring.profiles.active", "dev,loadtest");
+        System.setProperty("config.cache.redis.server", "redis://" + redis.getHost() + ":" + redis.getBindPort());
+        System.setProperty(
+            "spring.datasource.url",
+            "jdbc:h2:mem:loadtest;MODE=MySQL;DATABASE_TO_LOWER=TRUE;NON_KEYWORDS=USER;DB_CLOSE_DELAY=-1"
+        );
+        return SpringApplication.run(HellotradersAuthenticationService.class);
+    }
+
+    /**
+     * Logs in the first {@code count} seeded users and returns their access tokens.
+     */
+    private static List<String> login(URI baseUri, int count) throws Exception {
+        ObjectMapper mapper = new ObjectMapper();
+        // one login per core at a time, so the hashing queue never rejects one
+        try (
+            ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+            HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build()
+        ) {
+            List<Future<String>> logins = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                String body = """
+                    {"username":"%s","password":"%s"}""".formatted(UserSeeder.login(i), UserSeeder.PASSWORD);
+                HttpRequest request = HttpRequest.newBuilder(baseUri.resolve("/api/authenticate"))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(body))
+                    .build();
+                logins.add(
+                    executor.submit(() -> {
+                        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+                        if (response.statusCode() != 200) {
+                            throw new IllegalStateException("Login failed with status " + response.statusCode() + ": " + response.body());
+                        }
+                        JsonNode token = mapper.readTree(response.body()).get("id_token");
+                        return token.asText();
+                    })
+                );
+            }
+            List<String> tokens = new ArrayList<>(count);
+            for (Future<String> login : logins) {
+                tokens.add(login.get());
+            }
+            return tokens;
+        }
+    }
+}
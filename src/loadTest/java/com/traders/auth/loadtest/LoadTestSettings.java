@@ -0,0 +1,82 @@
+package com.traders.auth.loadtest;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Settings of a load-test run, read from {@code loadTest.*} system properties.
+ *
+ * @param users number of users seeded before the run.
+ * @param tokenPool number of seeded users logged in up front, whose tokens drive the authenticated scenarios.
+ * @param rate arrivals per second, independent of how fast the service answers.
+ * @param arrivals how arrivals are spaced.
+ * @param warmup time run before measuring.
+ * @param duration time measured.
+ * @param maxInFlight requests allowed in flight before new arrivals are counted as dropped.
+ * @param mix relative weight of each scenario, e.g. {@code login=60,account=25,transaction_password=10,register=3,enquiry=2}.
+ * @param reportDir directory the latency histograms are written to.
+ */
+public record LoadTestSettings(
+    int users,
+    int tokenPool,
+    int rate,
+    Arrivals arrivals,
+    Duration warmup,
+    Duration duration,
+    int maxInFlight,
+    Map<Scenario, Integer> mix,
+    Path reportDir
+) {
+    public enum Arrivals {
+        /** Evenly spaced arrivals. */
+        CONSTANT,
+        /** Exponentially distributed gaps, i.e. independent clients. */
+        POISSON,
+    }
+
+    public static final String PREFIX = "loadTest.";
+
+    public static LoadTestSettings fromSystemProperties() {
+        int users = intProperty("users", 10_000);
+        return new LoadTestSettings(
+            users,
+            Math.min(users, intProperty("tokenPool", 1_000)),
+            intProperty("rate", 200),
+            Arrivals.valueOf(property("arrivals", "poisson").toUpperCase(Locale.ENGLISH)),
+            Duration.parse(property("warmup", "PT15S")),
+            Duration.parse(property("duration", "PT60S")),
+            intProperty("maxInFlight", 10_000),
+            parseMix(property("mix", "login=60,account=25,transaction_password=10,register=3,enquiry=2")),
+            Path.of(property("reportDir", "build/reports/load-test"))
+        );
+    }
+
+    static Map<Scenario, Integer> parseMix(String mix) {
+        Map<Scenario, Integer> weights = new EnumMap<>(Scenario.class);
+        for (String entry : mix.split(",")) {
+            String[] parts = entry.trim().split("=");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Invalid mix entry '" + entry + "', expected <scenario>=<weight>");
+            }
+            int weight = Integer.parseInt(parts[1].trim());
+            if (weight > 0) {
+                weights.put(Scenario.valueOf(parts[0].trim().toUpperCase(Locale.ENGLISH)), weight);
+            }
+        }
+        if (weights.isEmpty()) {
+            throw new IllegalArgumentException("The mix '" + mix + "' has no scenario with a positive weight");
+        }
+        return weights;
+    }
+
+    private static String property(String name, String defaultValue) {
+        return System.getProperty(PREFIX + name, defaultValue);
+    }
+
+    private static int intProperty(String name, int defaultValue) {
+        return Integer.parseInt(property(name, String.valueOf(defaultValue)));
+    }
+}
@@ -0,0 +1,100 @@
+package com.traders.auth.loadtest;
+
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The requests a load-test run is mixed from.
+ */
+public enum Scenario {
+    LOGIN(200) {
+        @Override
+        HttpRequest request(Context context) {
+            String body = """
+                {"username":"%s","password":"%s","fcmToken":"fcm-%d"}""".formatted(
+                UserSeeder.login(context.randomUser()),
+                UserSeeder.PASSWORD,
+                ThreadLocalRandom.current().nextInt(4)
+            );
+            return post(context, "/api/authenticate", body).build();
+        }
+    },
+    ACCOUNT(200) {
+        @Override
+        HttpRequest request(Context context) {
+            return HttpRequest.newBuilder(context.uri("/api/account")).header("Authorization", "Bearer " + context.randomToken()).GET().build();
+        }
+    },
+    TRANSACTION_PASSWORD(200) {
+        @Override
+        HttpRequest request(Context context) {
+            String body = """
+                {"password":"%s"}""".formatted(UserSeeder.TRANSACTION_PASSWORD);
+            return post(context, "/api/authenticate/transaction-password", body)
+                .header("Authorization", "Bearer " + context.randomToken())
+                .build();
+        }
+    },
+    REGISTER(201) {
+        @Override
+        HttpRequest request(Context context) {
+            long n = context.registrations().incrementAndGet();
+            String body = """
+                {"login":"lt-new-%1$d","email":"lt-new-%1$d@example.com","contactNo":"8%2$09d","firstName":"Load","lastName":"Test","password":"%3$s"}""".formatted(
+                n,
+                n,
+                UserSeeder.PASSWORD
+            );
+            return post(context, "/api/open/register", body).build();
+        }
+    },
+    ENQUIRY(200) {
+        @Override
+        HttpRequest request(Context context) {
+            String body = """
+                {"name":"Load Test","contactNo":"7%09d","message":"Please call me back about opening an account"}""".formatted(
+                ThreadLocalRandom.current().nextInt(1_000_000_000)
+            );
+            return post(context, "/api/open/enquiry/add", body).build();
+        }
+    };
+
+    private final int expectedStatus;
+
+    Scenario(int expectedStatus) {
+        this.expectedStatus = expectedStatus;
+    }
+
+    abstract HttpRequest request(Context context);
+
+    boolean isSuccess(int status) {
+        return status == expectedStatus;
+    }
+
+    private static HttpRequest.Builder post(Context context, String path, String body) {
+        return HttpRequest.newBuilder(context.uri(path))
+            .header("Content-Type", "application/json")
+            .POST(HttpRequest.BodyPublishers.ofString(body));
+    }
+
+    /**
+     * What the scenarios need from the run: where the service listens, how many users were seeded and the tokens of
+     * the logged-in ones.
+     */
+    record Context(URI baseUri, int users, List<String> tokens, AtomicLong registrations) {
+        URI uri(String path) {
+            return baseUri.resolve(path);
+        }
+
+        int randomUser() {
+            return ThreadLocalRandom.current().nextInt(users);
+        }
+
+        String randomToken() {
+            return tokens.get(ThreadLocalRandom.current().nextInt(tokens.size()));
+        }
+    }
+}
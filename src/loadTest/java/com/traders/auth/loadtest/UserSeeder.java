@@ -0,0 +1,105 @@
+package com.traders.auth.loadtest;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Seeds the users a load-test run logs in with.
+ * <p>
+ * Every user gets the same password, hashed once with the service's own encoder, so seeding a large population costs
+ * a few batched inserts instead of one hash per user while logins still pay the full hashing cost.
+ */
+class UserSeeder {
+
+    private static final Logger LOG = LoggerFactory.getLogger(UserSeeder.class);
+
+    static final String PASSWORD = "load-test-password";
+
+    static final String TRANSACTION_PASSWORD = "load-test-pin";
+
+    private static final int BATCH_SIZE = 1_000;
+
+    private static final long PARENT_ID = 1;
+
+    private static final String INSERT_USER = """
+        INSERT INTO user (id, login, password_hash, first_name, last_name, email, activated, delete_flag, activation_key,
+            contact_no, transaction_password, parent_account, parent_user_id, created_by, created_date,
+            last_modified_by, last_modified_date)
+        VALUES (?, ?, ?, ?, ?, ?, TRUE, 0, NULL, ?, ?, ?, ?, 'loadtest', ?, 'loadtest', ?)""";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final PasswordEncoder passwordEncoder;
+
+    UserSeeder(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate, PasswordEncoder passwordEncoder) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.passwordEncoder = passwordEncoder;
+    }
+
+    static String login(int user) {
+        return "lt-user-" + user;
+    }
+
+    /**
+     * Creates the authorities, the parent account new registrations are attached to, and {@code users} activated users.
+     */
+    void seed(int users) {
+        long start = System.nanoTime();
+        transactionTemplate.executeWithoutResult(status -> insert(users));
+        LOG.info("Seeded {} users in {} ms", users, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private void insert(int users) {
+        String passwordHash = passwordEncoder.encode(PASSWORD);
+        String transactionPasswordHash = passwordEncoder.encode(TRANSACTION_PASSWORD);
+        Timestamp now = Timestamp.from(Instant.now());
+
+        jdbcTemplate.batchUpdate("INSERT INTO authority (name) VALUES (?)", List.of(new Object[] { "ROLE_ADMIN" }, new Object[] { "ROLE_USER" }));
+        jdbcTemplate.update(INSERT_USER, PARENT_ID, "lt-parent", passwordHash, "Parent", "Account", "lt-parent@example.com", "9000000000", transactionPasswordHash, 1, null, now, now);
+
+        List<Object[]> batch = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < users; i++) {
+            batch.add(
+                new Object[] {
+                    PARENT_ID + 1 + i,
+                    login(i),
+                    passwordHash,
+                    "Load",
+                    "User " + i,
+                    login(i) + "@example.com",
+                    String.valueOf(6_000_000_000L + i),
+                    transactionPasswordHash,
+                    0,
+                    PARENT_ID,
+                    now,
+                    now,
+                }
+            );
+            if (batch.size() == BATCH_SIZE) {
+                jdbcTemplate.batchUpdate(INSERT_USER, batch);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT_USER, batch);
+        }
+        jdbcTemplate.update("INSERT INTO user_authority (user_id, authority_name) SELECT id, 'ROLE_USER' FROM user");
+        jdbcTemplate.update("INSERT INTO user_authority (user_id, authority_name) VALUES (?, 'ROLE_ADMIN')", PARENT_ID);
+        // every seeded user sits directly under the parent account
+        jdbcTemplate.update("INSERT INTO user_hierarchy (ancestor_id, descendant_id, depth) SELECT id, id, 0 FROM user");
+        jdbcTemplate.update("INSERT INTO user_hierarchy (ancestor_id, descendant_id, depth) SELECT parent_user_id, id, 1 FROM user WHERE parent_user_id IS NOT NULL");
+        // ids were assigned here, registrations continue after them
+        jdbcTemplate.execute("ALTER SEQUENCE user_id_seq RESTART WITH " + (PARENT_ID + 1 + users));
+    }
+}
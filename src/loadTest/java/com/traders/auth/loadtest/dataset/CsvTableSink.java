@@ -0,0 +1,77 @@
+package com.traders.auth.loadtest.dataset;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Writes rows as a CSV file in the dialect of MySQL's {@code LOAD DATA}: comma separated, optionally double-quoted,
+ * backslash escaped, {@code \N} for {@code NULL}, one header line.
+ */
+class CsvTableSink implements TableSink {
+
+    static final DateTimeFormatter TIMESTAMP = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSSSSS").withZone(ZoneOffset.UTC);
+
+    private final BufferedWriter writer;
+
+    private final StringBuilder line = new StringBuilder(256);
+
+    private long count;
+
+    CsvTableSink(Table table, Path file) throws IOException {
+        this.writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8);
+        writer.write(String.join(",", table.columns()));
+        writer.write('\n');
+    }
+
+    @Override
+    public void add(Object... row) throws IOException {
+        line.setLength(0);
+        for (int i = 0; i < row.length; i++) {
+            if (i > 0) {
+                line.append(',');
+            }
+            append(row[i]);
+        }
+        line.append('\n');
+        writer.append(line);
+        count++;
+    }
+
+    private void append(Object value) {
+        switch (value) {
+            case null -> line.append("\\N");
+            case Boolean bool -> line.append(bool ? '1' : '0');
+            case Instant instant -> line.append(TIMESTAMP.format(instant));
+            case Number number -> line.append(number);
+            default -> {
+                String text = value.toString();
+                line.append('"');
+                for (int i = 0; i < text.length(); i++) {
+                    char c = text.charAt(i);
+                    switch (c) {
+                        case '"', '\\' -> line.append('\\').append(c);
+                        case '\n' -> line.append("\\n");
+                        default -> line.append(c);
+                    }
+                }
+                line.append('"');
+            }
+        }
+    }
+
+    @Override
+    public long count() {
+        return count;
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+}
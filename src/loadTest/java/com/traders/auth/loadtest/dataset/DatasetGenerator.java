@@ -0,0 +1,312 @@
+package com.traders.auth.loadtest.dataset;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * Generates a production-scale dataset of users, authorities, the hierarchy closure, wallets and enquiries.
+ * <p>
+ * The shape follows what production looks like rather than uniform noise: one root account ({@code parent_account = 1})
+ * over a layer of brokers whose downline sizes are Zipf-distributed, sub-brokers deeper in the tree, sign-ups growing
+ * over time, a share of never-activated and soft-deleted users, last logins clustered in the recent past, log-normal
+ * wallet balances and enquiries partly coming from a few repeating addresses.
+ * <p>
+ * Rows go either straight into a database through multi-row {@code INSERT}s ({@code -Pdataset.jdbcUrl=...}) or into
+ * CSV files plus a {@code load-data.sql} script of {@code LOAD DATA LOCAL INFILE} statements. Run through
+ * {@code ./gradlew generateDataset}; see {@link DatasetSettings}. The target schema, including the {@code ROLE_USER}
+ * and {@code ROLE_ADMIN} authorities, is expected to exist and to hold no users yet.
+ */
+public final class DatasetGenerator {
+
+    private static final Logger LOG = LoggerFactory.getLogger(DatasetGenerator.class);
+
+    private static final DateTimeFormatter DATE_TIME = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss").withZone(ZoneOffset.UTC);
+
+    private static final Duration HISTORY = Duration.ofDays(3 * 365);
+
+    private static final String[] FIRST_NAMES = {
+        "Aarav", "Vivaan", "Aditya", "Vihaan", "Arjun", "Sai", "Reyansh", "Ayaan", "Krishna", "Ishaan", "Ananya", "Diya",
+        "Priya", "Saanvi", "Aadhya", "Pari", "Anika", "Navya", "Riya", "Meera", "Rahul", "Rohit", "Neha", "Pooja",
+    };
+
+    private static final String[] LAST_NAMES = {
+        "Sharma", "Verma", "Gupta", "Singh", "Kumar", "Patel", "Shah", "Mehta", "Iyer", "Nair", "Reddy", "Rao", "Joshi",
+        "Agarwal", "Jain", "Bansal", "Chopra", "Malhotra", "Kapoor", "Das",
+    };
+
+    private static final String[] ENQUIRY_MESSAGES = {
+        "Please call me back about opening an account",
+        "What are the brokerage charges for intraday trading?",
+        "I could not log in after resetting my password",
+        "How long does a withdrawal take?",
+        "Interested in becoming a sub-broker",
+    };
+
+    // the pooled id generators must hand out ids after the generated ones
+    private static final List<String> RESET_ID_SEQUENCES = List.of(
+        "UPDATE user_id_seq SET next_val = (SELECT COALESCE(MAX(id), 0) + 1 FROM `user`)",
+        "UPDATE wallet_id_seq SET next_val = (SELECT COALESCE(MAX(wallet_id), 0) + 1 FROM wallet)",
+        "UPDATE enquiry_id_seq SET next_val = (SELECT COALESCE(MAX(id), 0) + 1 FROM enquiry)"
+    );
+
+    private final DatasetSettings settings;
+
+    private final SplittableRandom random;
+
+    private final Instant asOf = Instant.now().truncatedTo(ChronoUnit.DAYS);
+
+    private final String passwordHash;
+
+    private DatasetGenerator(DatasetSettings settings) {
+        this.settings = settings;
+        this.random = new SplittableRandom(settings.seed());
+        // one hash for everyone: hashing millions of passwords would take hours and tell nothing about the queries
+        this.passwordHash = "{bcrypt}" + new BCryptPasswordEncoder().encode(settings.password());
+    }
+
+    public static void main(String[] args) throws Exception {
+        DatasetSettings settings = DatasetSettings.fromSystemProperties();
+        long start = System.nanoTime();
+        Map<Table, TableSink> sinks = new LinkedHashMap<>();
+        if (settings.loadOverJdbc()) {
+            try (Connection connection = DriverManager.getConnection(settings.jdbcUrl(), settings.jdbcUser(), settings.jdbcPassword())) {
+                connection.setAutoCommit(false);
+                boolean mysql = connection.getMetaData().getDatabaseProductName().toLowerCase(Locale.ENGLISH).contains("mysql");
+                if (mysql) {
+                    setChecks(connection, 0);
+                }
+                for (Table table : Table.ALL) {
+                    sinks.put(table, new InsertTableSink(table, connection, settings.rowsPerInsert()));
+                }
+                new DatasetGenerator(settings).generate(sinks);
+                if (mysql) {
+                    setChecks(connection, 1);
+                    resetIdSequences(connection);
+                } else {
+                    LOG.warn("Not a MySQL database, reset the id sequences of user, wallet and enquiry past the generated ids");
+                }
+            }
+        } else {
+            Files.createDirectories(settings.output());
+            for (Table table : Table.ALL) {
+                sinks.put(table, new CsvTableSink(table, csvFile(settings, table)));
+            }
+            new DatasetGenerator(settings).generate(sinks);
+            writeLoadScript(settings);
+        }
+        for (Map.Entry<Table, TableSink> entry : sinks.entrySet()) {
+            LOG.info("{}: {} rows", entry.getKey().name(), entry.getValue().count());
+        }
+        LOG.info(
+            "Generated the dataset in {} s{}",
+            Duration.ofNanos(System.nanoTime() - start).toSeconds(),
+            settings.loadOverJdbc() ? "" : ", load it with " + settings.output().resolve("load-data.sql").toAbsolutePath()
+        );
+    }
+
+    private void generate(Map<Table, TableSink> sinks) throws IOException {
+        TableSink users = sinks.get(Table.USER);
+        TableSink authorities = sinks.get(Table.USER_AUTHORITY);
+        TableSink hierarchy = sinks.get(Table.USER_HIERARCHY);
+        TableSink wallets = sinks.get(Table.WALLET);
+        int brokers = Math.max(1, (int) (settings.users() * settings.brokerRatio()));
+        ZipfSampler brokerPopularity = new ZipfSampler(brokers, 1.1);
+        List<Long> subBrokers = new ArrayList<>();
+        // ancestors of the users that can have a downline, nearest first
+        Map<Long, long[]> parentChains = new HashMap<>();
+        long walletId = 1;
+
+        for (long id = 1; id <= settings.users(); id++) {
+            Instant created = createdAt(id);
+            Long parent;
+            if (id == 1) {
+                parent = null;
+            } else if (id <= brokers + 1) {
+                parent = 1L;
+            } else if (!subBrokers.isEmpty() && random.nextDouble() < 0.2) {
+                parent = subBrokers.get(random.nextInt(subBrokers.size()));
+            } else {
+                parent = 2L + brokerPopularity.sample(random);
+            }
+            boolean admin = id <= brokers + 1;
+            boolean subBroker = !admin && random.nextDouble() < settings.subBrokerRatio();
+            if (subBroker) {
+                subBrokers.add(id);
+            }
+            addUser(users, id, parent, admin, created);
+
+            long[] ancestors = parent == null ? new long[0] : prepend(parent, parentChains.get(parent));
+            hierarchy.add(id, id, 0);
+            for (int depth = 1; depth <= ancestors.length; depth++) {
+                hierarchy.add(ancestors[depth - 1], id, depth);
+            }
+            if (admin || subBroker) {
+                parentChains.put(id, ancestors);
+            }
+
+            authorities.add(id, "ROLE_USER");
+            if (admin) {
+                authorities.add(id, "ROLE_ADMIN");
+            }
+            if (random.nextDouble() < settings.walletRatio()) {
+                wallets.add(walletId++, id, balanceMinor(), 0, 0, DATE_TIME.format(created));
+            }
+            if (id % 100_000 == 0) {
+                LOG.info("Generated {} users", id);
+            }
+        }
+        addEnquiries(sinks.get(Table.ENQUIRY));
+        for (TableSink sink : sinks.values()) {
+            sink.close();
+        }
+    }
+
+    private static long[] prepend(long first, long[] rest) {
+        long[] chain = new long[rest.length + 1];
+        chain[0] = first;
+        System.arraycopy(rest, 0, chain, 1, rest.length);
+        return chain;
+    }
+
+    private void addUser(TableSink users, long id, Long parent, boolean admin, Instant created) throws IOException {
+        boolean activated = admin || random.nextDouble() >= settings.inactiveRatio();
+        boolean deleted = !admin && random.nextDouble() < settings.deletedRatio();
+        Instant lastLogin = activated && random.nextDouble() >= 0.15 ? lastLoginAt(created) : null;
+        String login = id == 1 ? "root" : (admin ? "broker" : "user") + id;
+        users.add(
+            id,
+            login,
+            passwordHash,
+            FIRST_NAMES[random.nextInt(FIRST_NAMES.length)],
+            LAST_NAMES[random.nextInt(LAST_NAMES.length)],
+            random.nextDouble() < 0.03 ? null : login + "@example.com",
+            activated,
+            deleted ? 1 : 0,
+            activated ? null : randomHex(10),
+            String.format("9%09d", id),
+            activated && random.nextDouble() < 0.6 ? passwordHash : null,
+            lastLogin != null && random.nextDouble() < 0.7 ? "fcm-" + randomHex(32) : null,
+            lastLogin,
+            id == 1 ? 1 : 0,
+            parent,
+            "system",
+            created,
+            "system",
+            lastLogin != null ? lastLogin : created
+        );
+    }
+
+    private void addEnquiries(TableSink enquiries) throws IOException {
+        long count = (long) (settings.users() * settings.enquiriesPerUser());
+        ZipfSampler repeatedAddresses = new ZipfSampler(500, 1.2);
+        for (long id = 1; id <= count; id++) {
+            Instant created = asOf.minus(HISTORY).plusSeconds((long) (HISTORY.toSeconds() * Math.sqrt((double) id / count)));
+            String ip = random.nextDouble() < 0.3
+                ? "10.0." + (repeatedAddresses.sample(random) / 250) + "." + (repeatedAddresses.sample(random) % 250 + 1)
+                : random.nextInt(1, 224) + "." + random.nextInt(256) + "." + random.nextInt(256) + "." + random.nextInt(1, 255);
+            enquiries.add(
+                id,
+                FIRST_NAMES[random.nextInt(FIRST_NAMES.length)] + " " + LAST_NAMES[random.nextInt(LAST_NAMES.length)],
+                String.format("8%09d", random.nextInt(1_000_000_000)),
+                ENQUIRY_MESSAGES[random.nextInt(ENQUIRY_MESSAGES.length)],
+                DATE_TIME.format(created),
+                ip
+            );
+        }
+    }
+
+    // sign-ups grow linearly over the history, so ids stay ordered by creation time
+    private Instant createdAt(long id) {
+        double progress = Math.sqrt((double) id / settings.users());
+        return asOf.minus(HISTORY).plusSeconds((long) (HISTORY.toSeconds() * progress)).plusSeconds(random.nextInt(3600));
+    }
+
+    // most active users logged in within the last days, a long tail weeks or months ago
+    private Instant lastLoginAt(Instant created) {
+        Instant lastLogin = asOf.minusSeconds((long) (random.nextExponential() * Duration.ofDays(7).toSeconds()));
+        return lastLogin.isBefore(created) ? created : lastLogin;
+    }
+
+    // in cents
+    private long balanceMinor() {
+        if (random.nextDouble() < 0.1) {
+            return 0;
+        }
+        return Math.round(Math.exp(Math.log(5_000) + 1.5 * random.nextGaussian()) * 100);
+    }
+
+    private String randomHex(int bytes) {
+        byte[] value = new byte[bytes];
+        random.nextBytes(value);
+        return HexFormat.of().formatHex(value);
+    }
+
+    private static Path csvFile(DatasetSettings settings, Table table) {
+        return settings.output().resolve(table.name() + ".csv");
+    }
+
+    private static void setChecks(Connection connection, int enabled) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("SET FOREIGN_KEY_CHECKS = " + enabled);
+            statement.execute("SET UNIQUE_CHECKS = " + enabled);
+        }
+    }
+
+    private static void resetIdSequences(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            for (String sql : RESET_ID_SEQUENCES) {
+                statement.execute(sql);
+            }
+        }
+        connection.commit();
+    }
+
+    private static void writeLoadScript(DatasetSettings settings) throws IOException {
+        StringBuilder script = new StringBuilder();
+        script.append("-- mysql --local-infile=1 <database> < load-data.sql\n");
+        script.append("SET FOREIGN_KEY_CHECKS = 0;\nSET UNIQUE_CHECKS = 0;\n");
+        for (Table table : Table.ALL) {
+            script
+                .append("LOAD DATA LOCAL INFILE '")
+                .append(csvFile(settings, table).toAbsolutePath().toString().replace("\\", "/"))
+                .append("' INTO TABLE `")
+                .append(table.name())
+                .append("` CHARACTER SET utf8mb4 FIELDS TERMINATED BY ',' OPTIONALLY ENCLOSED BY '\"' ESCAPED BY '\\\\'")
+                .append(" LINES TERMINATED BY '\\n' IGNORE 1 LINES (")
+                // BIT columns do not take the characters 0 and 1, go through a variable
+                .append(String.join(", ", table.columns()).replace("activated", "@activated"))
+                .append(")")
+                .append(table.columns().contains("activated") ? " SET activated = (@activated = '1')" : "")
+                .append(";\n");
+        }
+        script.append("SET UNIQUE_CHECKS = 1;\nSET FOREIGN_KEY_CHECKS = 1;\n");
+        for (String sql : RESET_ID_SEQUENCES) {
+            script.append(sql).append(";\n");
+        }
+        script.append("ANALYZE TABLE `user`, user_authority, wallet, enquiry;\n");
+        Files.writeString(settings.output().resolve("load-data.sql"), script, StandardCharsets.UTF_8);
+    }
+}
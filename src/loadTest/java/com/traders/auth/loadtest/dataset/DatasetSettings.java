@@ -0,0 +1,67 @@
+package com.traders.auth.loadtest.dataset;
+
+import java.nio.file.Path;
+
+/**
+ * Settings of the dataset generator, read from {@code dataset.*} system properties.
+ *
+ * @param users number of users, including the root account and the brokers.
+ * @param brokerRatio share of users that own a downline directly under the root account.
+ * @param subBrokerRatio share of regular users that are themselves the parent of later users.
+ * @param inactiveRatio share of users never activated.
+ * @param deletedRatio share of users soft-deleted ({@code delete_flag = 1}).
+ * @param walletRatio share of users with a wallet.
+ * @param enquiriesPerUser enquiries generated per user.
+ * @param seed random seed; the same seed and settings give the same rows, with timestamps relative to the day of the run.
+ * @param output directory the CSV files and load script are written to, when not loading over JDBC.
+ * @param jdbcUrl database to insert into directly; empty to write CSV files instead.
+ * @param jdbcUser database user.
+ * @param jdbcPassword database password.
+ * @param rowsPerInsert rows per multi-row {@code INSERT} when loading over JDBC.
+ * @param password clear-text password of every generated user.
+ */
+record DatasetSettings(
+    int users,
+    double brokerRatio,
+    double subBrokerRatio,
+    double inactiveRatio,
+    double deletedRatio,
+    double walletRatio,
+    double enquiriesPerUser,
+    long seed,
+    Path output,
+    String jdbcUrl,
+    String jdbcUser,
+    String jdbcPassword,
+    int rowsPerInsert,
+    String password
+) {
+    private static final String PREFIX = "dataset.";
+
+    static DatasetSettings fromSystemProperties() {
+        return new DatasetSettings(
+            Integer.parseInt(property("users", "1000000")),
+            Double.parseDouble(property("brokerRatio", "0.002")),
+            Double.parseDouble(property("subBrokerRatio", "0.05")),
+            Double.parseDouble(property("inactiveRatio", "0.08")),
+            Double.parseDouble(property("deletedRatio", "0.03")),
+            Double.parseDouble(property("walletRatio", "0.85")),
+            Double.parseDouble(property("enquiriesPerUser", "0.3")),
+            Long.parseLong(property("seed", "42")),
+            Path.of(property("output", "build/dataset")),
+            property("jdbcUrl", ""),
+            property("jdbcUser", "root"),
+            property("jdbcPassword", ""),
+            Integer.parseInt(property("rowsPerInsert", "1000")),
+            property("password", "user")
+        );
+    }
+
+    boolean loadOverJdbc() {
+        return !jdbcUrl.isBlank();
+    }
+
+    private static String property(String name, String defaultValue) {
+        return System.getProperty(PREFIX + name, defaultValue);
+    }
+}
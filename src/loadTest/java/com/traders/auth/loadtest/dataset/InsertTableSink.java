@@ -0,0 +1,106 @@
+package com.traders.auth.loadtest.dataset;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Inserts rows through multi-row {@code INSERT} statements, one transaction per statement.
+ * <p>
+ * A multi-row statement is parsed once and sent in one round trip, which loads an order of magnitude faster than
+ * batched single-row inserts on drivers that do not rewrite batches.
+ */
+class InsertTableSink implements TableSink {
+
+    private final Table table;
+
+    private final Connection connection;
+
+    private final int rowsPerStatement;
+
+    private final List<Object[]> pending;
+
+    private PreparedStatement fullStatement;
+
+    private long count;
+
+    InsertTableSink(Table table, Connection connection, int rowsPerStatement) {
+        this.table = table;
+        this.connection = connection;
+        this.rowsPerStatement = rowsPerStatement;
+        this.pending = new ArrayList<>(rowsPerStatement);
+    }
+
+    @Override
+    public void add(Object... row) throws IOException {
+        pending.add(row);
+        count++;
+        if (pending.size() == rowsPerStatement) {
+            flush();
+        }
+    }
+
+    private void flush() throws IOException {
+        if (pending.isEmpty()) {
+            return;
+        }
+        try {
+            if (pending.size() == rowsPerStatement) {
+                if (fullStatement == null) {
+                    fullStatement = connection.prepareStatement(sql(rowsPerStatement));
+                }
+                execute(fullStatement);
+            } else {
+                try (PreparedStatement statement = connection.prepareStatement(sql(pending.size()))) {
+                    execute(statement);
+                }
+            }
+            connection.commit();
+        } catch (SQLException e) {
+            throw new IOException("Could not insert into " + table.name() + ": " + e.getMessage(), e);
+        } finally {
+            pending.clear();
+        }
+    }
+
+    private void execute(PreparedStatement statement) throws SQLException {
+        int index = 1;
+        for (Object[] row : pending) {
+            for (Object value : row) {
+                statement.setObject(index++, value instanceof Instant instant ? Timestamp.from(instant) : value);
+            }
+        }
+        statement.executeUpdate();
+    }
+
+    private String sql(int rows) {
+        String values = "(" + "?,".repeat(table.columns().size() - 1) + "?)";
+        StringBuilder sql = new StringBuilder("INSERT INTO ").append(table.name()).append(" (").append(String.join(", ", table.columns())).append(") VALUES ");
+        for (int i = 0; i < rows; i++) {
+            sql.append(i == 0 ? "" : ",").append(values);
+        }
+        return sql.toString();
+    }
+
+    @Override
+    public long count() {
+        return count;
+    }
+
+    @Override
+    public void close() throws IOException {
+        flush();
+        if (fullStatement != null) {
+            try {
+                fullStatement.close();
+            } catch (SQLException e) {
+                throw new IOException(e);
+            }
+        }
+    }
+}
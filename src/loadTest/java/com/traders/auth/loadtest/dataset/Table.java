@@ -0,0 +1,43 @@
+package com.traders.auth.loadtest.dataset;
+
+import java.util.List;
+
+/**
+ * A table the generator fills, with its columns in the order rows are produced.
+ */
+record Table(String name, List<String> columns) {
+    static final Table USER = new Table(
+        "user",
+        List.of(
+            "id",
+            "login",
+            "password_hash",
+            "first_name",
+            "last_name",
+            "email",
+            "activated",
+            "delete_flag",
+            "activation_key",
+            "contact_no",
+            "transaction_password",
+            "fcm_token",
+            "last_login_at",
+            "parent_account",
+            "parent_user_id",
+            "created_by",
+            "created_date",
+            "last_modified_by",
+            "last_modified_date"
+        )
+    );
+
+    static final Table USER_AUTHORITY = new Table("user_authority", List.of("user_id", "authority_name"));
+
+    static final Table WALLET = new Table("wallet", List.of("wallet_id", "user_id", "balance_minor", "held_minor", "version", "created_at"));
+
+    static final Table ENQUIRY = new Table("enquiry", List.of("id", "name", "contact_no", "message", "created_datetime", "ip_address"));
+
+    static final Table USER_HIERARCHY = new Table("user_hierarchy", List.of("ancestor_id", "descendant_id", "depth"));
+
+    static final List<Table> ALL = List.of(USER, USER_AUTHORITY, USER_HIERARCHY, WALLET, ENQUIRY);
+}
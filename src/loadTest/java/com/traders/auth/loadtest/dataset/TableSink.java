@@ -0,0 +1,18 @@
+package com.traders.auth.loadtest.dataset;
+
+import java.io.IOException;
+
+/**
+ * Receives the generated rows of one table.
+ */
+interface TableSink extends AutoCloseable {
+    /**
+     * Adds a row, with one value per column of the table; {@code null} is SQL {@code NULL}.
+     */
+    void add(Object... row) throws IOException;
+
+    long count();
+
+    @Override
+    void close() throws IOException;
+}
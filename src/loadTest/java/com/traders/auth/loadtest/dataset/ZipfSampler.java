@@ -0,0 +1,28 @@
+package com.traders.auth.loadtest.dataset;
+
+import java.util.Arrays;
+import java.util.random.RandomGenerator;
+
+/**
+ * Samples ranks {@code 0..n-1} with probability proportional to {@code 1 / (rank + 1)^exponent}, so that a few ranks
+ * take most of the samples.
+ */
+class ZipfSampler {
+
+    private final double[] cumulative;
+
+    ZipfSampler(int n, double exponent) {
+        this.cumulative = new double[n];
+        double sum = 0;
+        for (int rank = 0; rank < n; rank++) {
+            sum += 1 / Math.pow(rank + 1, exponent);
+            cumulative[rank] = sum;
+        }
+    }
+
+    int sample(RandomGenerator random) {
+        double ticket = random.nextDouble() * cumulative[cumulative.length - 1];
+        int index = Arrays.binarySearch(cumulative, ticket);
+        return index >= 0 ? index : Math.min(-index - 1, cumulative.length - 1);
+    }
+}
@@ -0,0 +1,75 @@
+package com.traders.auth.cache;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.stereotype.Component;
+
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Publishes the Hibernate statistics of every second-level cache region: requests by result, puts, and the hit ratio
+ * as {@code hibernate.second.level.cache.hit.ratio}. Requires {@code hibernate.generate_statistics}, which is off by
+ * default for the bookkeeping it adds to every session; turn it on under {@code spring.jpa.properties} to look into
+ * the caches.
+ * <p>
+ * A hit here is a hit in either tier; the near caches publish their own {@code cache.*} meters with
+ * {@code tier=l1}.
+ */
+@Component
+public class HibernateCacheMetrics implements MeterBinder {
+
+    private final Statistics statistics;
+
+    public HibernateCacheMetrics(EntityManagerFactory entityManagerFactory) {
+        this.statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        if (!statistics.isStatisticsEnabled()) {
+            return;
+        }
+        for (String region : statistics.getSecondLevelCacheRegionNames()) {
+            CacheRegionStatistics regionStatistics = statistics.getCacheRegionStatistics(region);
+            if (regionStatistics == null) {
+                continue;
+            }
+            requests(registry, region, "hit", regionStatistics, CacheRegionStatistics::getHitCount);
+            requests(registry, region, "miss", regionStatistics, CacheRegionStatistics::getMissCount);
+            FunctionCounter.builder("hibernate.second.level.cache.puts", regionStatistics, CacheRegionStatistics::getPutCount)
+                .description("Entries put in the second-level cache region")
+                .tag("region", region)
+                .register(registry);
+            Gauge.builder("hibernate.second.level.cache.hit.ratio", regionStatistics, HibernateCacheMetrics::hitRatio)
+                .description("Share of second-level cache region lookups that were hits, since start-up")
+                .tag("region", region)
+                .register(registry);
+        }
+    }
+
+    private static void requests(
+        MeterRegistry registry,
+        String region,
+        String result,
+        CacheRegionStatistics regionStatistics,
+        ToDoubleFunction<CacheRegionStatistics> count
+    ) {
+        FunctionCounter.builder("hibernate.second.level.cache.requests", regionStatistics, count)
+            .description("Lookups in the second-level cache region")
+            .tag("region", region)
+            .tag("result", result)
+            .register(registry);
+    }
+
+    private static double hitRatio(CacheRegionStatistics regionStatistics) {
+        long hits = regionStatistics.getHitCount();
+        long lookups = hits + regionStatistics.getMissCount();
+        return lookups == 0 ? Double.NaN : (double) hits / lookups;
+    }
+}
@@ -0,0 +1,104 @@
+package com.traders.auth.cache;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.traders.auth.properties.AuthProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.hibernate.cache.spi.RegionFactory;
+import org.redisson.api.RedissonClient;
+import org.redisson.jcache.configuration.RedissonConfiguration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import javax.cache.Cache;
+import javax.cache.CacheManager;
+import javax.cache.configuration.Factory;
+import javax.cache.configuration.MutableConfiguration;
+import javax.cache.expiry.AccessedExpiryPolicy;
+import javax.cache.expiry.CreatedExpiryPolicy;
+import javax.cache.expiry.Duration;
+import javax.cache.expiry.EternalExpiryPolicy;
+import javax.cache.expiry.ExpiryPolicy;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The caches behind the Hibernate second-level cache regions, configured per region from
+ * {@code auth.hibernate-cache}: each region is a Redisson JCache cache with its own expiry, fronted by a near cache
+ * when the region asks for one and may have one. Handed to {@link RedissonJCacheRegionFactory} through the Hibernate
+ * properties.
+ */
+@Component
+public class HibernateCacheRegions {
+
+    private static final Logger LOG = LoggerFactory.getLogger(HibernateCacheRegions.class);
+
+    private final CacheManager cacheManager;
+
+    private final RedissonClient redissonClient;
+
+    private final AuthProperties.HibernateCache properties;
+
+    private final MeterRegistry registry;
+
+    private final Set<String> sharedOnly = ConcurrentHashMap.newKeySet();
+
+    public HibernateCacheRegions(CacheManager cacheManager, RedissonClient redissonClient, AuthProperties authProperties, MeterRegistry registry) {
+        this.cacheManager = cacheManager;
+        this.redissonClient = redissonClient;
+        this.properties = authProperties.getHibernateCache();
+        this.registry = registry;
+    }
+
+    CacheManager cacheManager() {
+        return cacheManager;
+    }
+
+    /**
+     * Keeps the region from getting a near cache, whatever its settings.
+     */
+    void sharedOnly(String regionName) {
+        sharedOnly.add(regionName);
+    }
+
+    Cache<Object, Object> create(String regionName) {
+        AuthProperties.CacheRegion region = properties.region(regionName);
+        MutableConfiguration<Object, Object> configuration = new MutableConfiguration<>()
+            .setExpiryPolicyFactory(expiryPolicy(region))
+            .setStatisticsEnabled(true);
+        LOG.debug("Creating second-level cache region {} with a TTL of {}", regionName, region.getTtl());
+        return cacheManager.createCache(regionName, RedissonConfiguration.fromInstance(redissonClient, configuration));
+    }
+
+    Cache<Object, Object> withNearCache(String regionName, Cache<Object, Object> cache) {
+        AuthProperties.CacheRegion region = properties.region(regionName);
+        if (region.getNearCacheMaxSize() <= 0) {
+            return cache;
+        }
+        // a stale timestamp would let a query result outlive the write that invalidated it, a stale entity its changes
+        if (sharedOnly.contains(regionName) || RegionFactory.DEFAULT_UPDATE_TIMESTAMPS_REGION_UNQUALIFIED_NAME.equals(regionName)) {
+            LOG.warn("Ignoring the near cache configured for {}, whose entries must not be served stale", regionName);
+            return cache;
+        }
+        com.github.benmanes.caffeine.cache.Cache<Object, Object> local = Caffeine.newBuilder()
+            .maximumSize(region.getNearCacheMaxSize())
+            .expireAfterWrite(region.getNearCacheTtl())
+            .recordStats()
+            .build();
+        CaffeineCacheMetrics.monitor(registry, local, regionName, "tier", "l1");
+        return new NearCache(cache, local);
+    }
+
+    private static Factory<ExpiryPolicy> expiryPolicy(AuthProperties.CacheRegion region) {
+        if (region.getTtl().isZero()) {
+            return EternalExpiryPolicy.factoryOf();
+        }
+        Duration ttl = new Duration(TimeUnit.MILLISECONDS, region.getTtl().toMillis());
+        return switch (region.getExpiry()) {
+            case CREATED -> CreatedExpiryPolicy.factoryOf(ttl);
+            case ACCESSED -> AccessedExpiryPolicy.factoryOf(ttl);
+        };
+    }
+}
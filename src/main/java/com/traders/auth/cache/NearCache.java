@@ -0,0 +1,248 @@
+package com.traders.auth.cache;
+
+import javax.cache.Cache;
+import javax.cache.CacheManager;
+import javax.cache.configuration.CacheEntryListenerConfiguration;
+import javax.cache.configuration.Configuration;
+import javax.cache.configuration.MutableCacheEntryListenerConfiguration;
+import javax.cache.event.CacheEntryEvent;
+import javax.cache.event.CacheEntryExpiredListener;
+import javax.cache.event.CacheEntryRemovedListener;
+import javax.cache.event.CacheEntryUpdatedListener;
+import javax.cache.integration.CompletionListener;
+import javax.cache.processor.EntryProcessor;
+import javax.cache.processor.EntryProcessorResult;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A shared JCache cache with a bounded in-process tier in front of it.
+ * <p>
+ * Reads are answered locally while the entry is there; writes go through to the shared cache and replace or drop the
+ * local copy. Entries that other nodes update or remove are dropped when the shared cache's listener event arrives,
+ * and the local TTL bounds how long a lost event can leave a stale entry behind.
+ */
+final class NearCache implements Cache<Object, Object> {
+
+    private final Cache<Object, Object> shared;
+
+    private final com.github.benmanes.caffeine.cache.Cache<Object, Object> local;
+
+    private final CacheEntryListenerConfiguration<Object, Object> invalidation;
+
+    NearCache(Cache<Object, Object> shared, com.github.benmanes.caffeine.cache.Cache<Object, Object> local) {
+        this.shared = shared;
+        this.local = local;
+        Invalidator invalidator = new Invalidator(local);
+        this.invalidation = new MutableCacheEntryListenerConfiguration<Object, Object>(() -> invalidator, null, false, false);
+        shared.registerCacheEntryListener(invalidation);
+    }
+
+    @Override
+    public Object get(Object key) {
+        Object value = local.getIfPresent(key);
+        if (value == null) {
+            value = shared.get(key);
+            if (value != null) {
+                local.put(key, value);
+            }
+        }
+        return value;
+    }
+
+    @Override
+    public Map<Object, Object> getAll(Set<?> keys) {
+        Map<Object, Object> values = new HashMap<>(local.getAllPresent(keys));
+        if (values.size() < keys.size()) {
+            Set<Object> missing = new HashSet<>(keys);
+            missing.removeAll(values.keySet());
+            Map<Object, Object> loaded = shared.getAll(missing);
+            local.putAll(loaded);
+            values.putAll(loaded);
+        }
+        return values;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return local.getIfPresent(key) != null || shared.containsKey(key);
+    }
+
+    @Override
+    public void loadAll(Set<?> keys, boolean replaceExistingValues, CompletionListener completionListener) {
+        local.invalidateAll(keys);
+        shared.loadAll(keys, replaceExistingValues, completionListener);
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        shared.put(key, value);
+        local.put(key, value);
+    }
+
+    @Override
+    public Object getAndPut(Object key, Object value) {
+        Object previous = shared.getAndPut(key, value);
+        local.put(key, value);
+        return previous;
+    }
+
+    @Override
+    public void putAll(Map<?, ?> map) {
+        shared.putAll(map);
+        local.putAll(map);
+    }
+
+    @Override
+    public boolean putIfAbsent(Object key, Object value) {
+        boolean put = shared.putIfAbsent(key, value);
+        if (put) {
+            local.put(key, value);
+        } else {
+            local.invalidate(key);
+        }
+        return put;
+    }
+
+    @Override
+    public boolean remove(Object key) {
+        local.invalidate(key);
+        return shared.remove(key);
+    }
+
+    @Override
+    public boolean remove(Object key, Object oldValue) {
+        local.invalidate(key);
+        return shared.remove(key, oldValue);
+    }
+
+    @Override
+    public Object getAndRemove(Object key) {
+        local.invalidate(key);
+        return shared.getAndRemove(key);
+    }
+
+    @Override
+    public boolean replace(Object key, Object oldValue, Object newValue) {
+        local.invalidate(key);
+        return shared.replace(key, oldValue, newValue);
+    }
+
+    @Override
+    public boolean replace(Object key, Object value) {
+        local.invalidate(key);
+        return shared.replace(key, value);
+    }
+
+    @Override
+    public Object getAndReplace(Object key, Object value) {
+        local.invalidate(key);
+        return shared.getAndReplace(key, value);
+    }
+
+    @Override
+    public void removeAll(Set<?> keys) {
+        local.invalidateAll(keys);
+        shared.removeAll(keys);
+    }
+
+    @Override
+    public void removeAll() {
+        local.invalidateAll();
+        shared.removeAll();
+    }
+
+    @Override
+    public void clear() {
+        local.invalidateAll();
+        shared.clear();
+    }
+
+    @Override
+    public <C extends Configuration<Object, Object>> C getConfiguration(Class<C> type) {
+        return shared.getConfiguration(type);
+    }
+
+    @Override
+    public <T> T invoke(Object key, EntryProcessor<Object, Object, T> processor, Object... arguments) {
+        local.invalidate(key);
+        return shared.invoke(key, processor, arguments);
+    }
+
+    @Override
+    public <T> Map<Object, EntryProcessorResult<T>> invokeAll(Set<?> keys, EntryProcessor<Object, Object, T> processor, Object... arguments) {
+        local.invalidateAll(keys);
+        return shared.invokeAll(keys, processor, arguments);
+    }
+
+    @Override
+    public String getName() {
+        return shared.getName();
+    }
+
+    @Override
+    public CacheManager getCacheManager() {
+        return shared.getCacheManager();
+    }
+
+    @Override
+    public void close() {
+        local.invalidateAll();
+        if (!shared.isClosed()) {
+            shared.deregisterCacheEntryListener(invalidation);
+        }
+        shared.close();
+    }
+
+    @Override
+    public boolean isClosed() {
+        return shared.isClosed();
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> type) {
+        return type.isInstance(this) ? type.cast(this) : shared.unwrap(type);
+    }
+
+    @Override
+    public void registerCacheEntryListener(CacheEntryListenerConfiguration<Object, Object> configuration) {
+        shared.registerCacheEntryListener(configuration);
+    }
+
+    @Override
+    public void deregisterCacheEntryListener(CacheEntryListenerConfiguration<Object, Object> configuration) {
+        shared.deregisterCacheEntryListener(configuration);
+    }
+
+    @Override
+    public Iterator<Entry<Object, Object>> iterator() {
+        return shared.iterator();
+    }
+
+    private record Invalidator(com.github.benmanes.caffeine.cache.Cache<Object, Object> local)
+        implements CacheEntryUpdatedListener<Object, Object>, CacheEntryRemovedListener<Object, Object>, CacheEntryExpiredListener<Object, Object> {
+        @Override
+        public void onUpdated(Iterable<CacheEntryEvent<?, ?>> events) {
+            invalidate(events);
+        }
+
+        @Override
+        public void onRemoved(Iterable<CacheEntryEvent<?, ?>> events) {
+            invalidate(events);
+        }
+
+        @Override
+        public void onExpired(Iterable<CacheEntryEvent<?, ?>> events) {
+            invalidate(events);
+        }
+
+        private void invalidate(Iterable<CacheEntryEvent<?, ?>> events) {
+            for (CacheEntryEvent<?, ?> event : events) {
+                local.invalidate(event.getKey());
+            }
+        }
+    }
+}
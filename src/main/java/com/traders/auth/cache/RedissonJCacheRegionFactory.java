@@ -0,0 +1,79 @@
+package com.traders.auth.cache;
+
+import org.hibernate.boot.spi.SessionFactoryOptions;
+import org.hibernate.cache.CacheException;
+import org.hibernate.cache.cfg.spi.DomainDataCachingConfig;
+import org.hibernate.cache.cfg.spi.DomainDataRegionBuildingContext;
+import org.hibernate.cache.cfg.spi.DomainDataRegionConfig;
+import org.hibernate.cache.jcache.internal.JCacheRegionFactory;
+import org.hibernate.cache.spi.access.AccessType;
+import org.hibernate.cache.spi.support.DomainDataStorageAccess;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+
+import javax.cache.Cache;
+import javax.cache.CacheManager;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * JCache region factory that takes its caches from {@link HibernateCacheRegions}, so that every region gets the
+ * expiry and near cache configured for it rather than the defaults of a cache created on the fly.
+ * <p>
+ * Entity, collection and natural-id regions that are not all {@code READ_ONLY} never get a near cache: it hears of other
+ * nodes' writes asynchronously, which would let a node serve a changed password hash or revoked authority.
+ */
+public class RedissonJCacheRegionFactory extends JCacheRegionFactory {
+
+    /**
+     * Hibernate property holding the {@link HibernateCacheRegions} instance.
+     */
+    public static final String REGIONS = "com.traders.auth.cache.regions";
+
+    private HibernateCacheRegions regions;
+
+    @Override
+    @SuppressWarnings("rawtypes")
+    protected CacheManager resolveCacheManager(SessionFactoryOptions settings, Map properties) {
+        if (!(properties.get(REGIONS) instanceof HibernateCacheRegions configured)) {
+            throw new CacheException("No " + HibernateCacheRegions.class.getSimpleName() + " under " + REGIONS);
+        }
+        this.regions = configured;
+        return regions.cacheManager();
+    }
+
+    @Override
+    protected DomainDataStorageAccess createDomainDataStorageAccess(
+        DomainDataRegionConfig regionConfig,
+        DomainDataRegionBuildingContext buildingContext
+    ) {
+        if (!isReadOnly(regionConfig)) {
+            regions.sharedOnly(regionConfig.getRegionName());
+        }
+        return super.createDomainDataStorageAccess(regionConfig, buildingContext);
+    }
+
+    static boolean isReadOnly(DomainDataRegionConfig regionConfig) {
+        List<DomainDataCachingConfig> configs = new ArrayList<>();
+        configs.addAll(regionConfig.getEntityCaching());
+        configs.addAll(regionConfig.getNaturalIdCaching());
+        configs.addAll(regionConfig.getCollectionCaching());
+        return configs.stream().allMatch(config -> config.getAccessType() == AccessType.READ_ONLY);
+    }
+
+    @Override
+    protected Cache<Object, Object> getOrCreateCache(String unqualifiedRegionName, SessionFactoryImplementor sessionFactory) {
+        return regions.withNearCache(unqualifiedRegionName, super.getOrCreateCache(unqualifiedRegionName, sessionFactory));
+    }
+
+    @Override
+    protected Cache<Object, Object> createCache(String regionName) {
+        return regions.create(regionName);
+    }
+
+    @Override
+    protected void releaseFromUse() {
+        // the cache manager belongs to the application context and is closed with it
+        regions = null;
+    }
+}
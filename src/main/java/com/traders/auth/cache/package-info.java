@@ -0,0 +1,4 @@
+/**
+ * Hibernate second-level cache regions on Redisson's JCache, with an optional in-process near cache.
+ */
+package com.traders.auth.cache;
@@ -1,9 +1,14 @@
 package com.traders.auth.config;
 
+import com.traders.auth.cache.HibernateCacheRegions;
+import com.traders.auth.cache.RedissonJCacheRegionFactory;
 import com.traders.common.config.RedissonConfig;
 import com.traders.common.utils.CommonValidations;
+import org.hibernate.cfg.AvailableSettings;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
 import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
 @Configuration
@@ -17,6 +22,14 @@ public class CacheConfiguration extends com.traders.common.config.CacheConfigura
         this.redissonConfig = redissonConfig;
     }
 
-
-
+    /**
+     * Second-level cache regions with the expiry and near cache configured under {@code auth.hibernate-cache}.
+     */
+    @Bean
+    public HibernatePropertiesCustomizer secondLevelCacheRegionsCustomizer(HibernateCacheRegions regions) {
+        return hibernateProperties -> {
+            hibernateProperties.put(AvailableSettings.CACHE_REGION_FACTORY, RedissonJCacheRegionFactory.class.getName());
+            hibernateProperties.put(RedissonJCacheRegionFactory.REGIONS, regions);
+        };
+    }
 }
@@ -3,17 +3,25 @@ package com.traders.auth.config;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.traders.auth.properties.AuthProperties;
+import com.traders.auth.security.BoundedPasswordEncoder;
+import com.traders.auth.security.PasswordHashCalibrator;
 import com.traders.auth.service.RedissonConfig;
 import com.traders.common.properties.ConfigProperties;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.redisson.Redisson;
 import org.redisson.api.RedissonClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.web.ServerProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 
 @Configuration
 public class CommonBeanService {
+    private static final Logger LOG = LoggerFactory.getLogger(CommonBeanService.class);
+
     private final RedissonConfig redissonConfig;
 
     public CommonBeanService(RedissonConfig redissonConfig) {
@@ -25,8 +33,32 @@ public class CommonBeanService {
     }
 
     @Bean
-    public PasswordEncoder getPasswordEncoder(){
-        return new BCryptPasswordEncoder();
+    public PasswordEncoder getPasswordEncoder(AuthProperties authProperties, ServerProperties serverProperties, MeterRegistry meterRegistry){
+        AuthProperties.PasswordHashing hashing = authProperties.getPasswordHashing();
+        return new BoundedPasswordEncoder(
+                new PasswordHashCalibrator(hashing).createPasswordEncoder(),
+                hashing.getThreads(),
+                hashingQueueCapacity(hashing, serverProperties),
+                hashing.getWaitTimeout(),
+                hashing.getRetryAfterSeconds(),
+                meterRegistry);
+    }
+
+    // requests queued for a hash park their worker, so the queue must be rejecting before the workers run out
+    private static int hashingQueueCapacity(AuthProperties.PasswordHashing hashing, ServerProperties serverProperties) {
+        Integer configuredWorkers = serverProperties.getUndertow().getThreads().getWorker();
+        // Undertow's default: eight workers per IO thread, one IO thread per processor and at least two
+        int workers = configuredWorkers != null ? configuredWorkers : Math.max(Runtime.getRuntime().availableProcessors(), 2) * 8;
+        int hashingThreads = BoundedPasswordEncoder.poolSize(hashing.getThreads());
+        int maxCapacity = Math.max(1, workers - hashingThreads - 1);
+        if (hashing.getQueueCapacity() <= 0) {
+            return Math.max(1, Math.min(workers / 2 - hashingThreads, maxCapacity));
+        }
+        if (hashing.getQueueCapacity() > maxCapacity) {
+            LOG.warn("Password hashing queue capped at {} to leave some of the {} worker threads free", maxCapacity, workers);
+            return maxCapacity;
+        }
+        return hashing.getQueueCapacity();
     }
 
     @Bean
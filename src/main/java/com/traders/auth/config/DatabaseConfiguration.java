@@ -1,5 +1,10 @@
 package com.traders.auth.config;
 
+import com.traders.auth.management.connection.ConnectionHoldPostProcessor;
+import com.traders.auth.properties.AuthProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.jpa.repository.config.EnableJpaAuditing;
 import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
@@ -9,4 +14,13 @@ import org.springframework.transaction.annotation.EnableTransactionManagement;
 @EnableJpaRepositories({ "com.traders.authService.repository" })
 @EnableJpaAuditing(auditorAwareRef = "springSecurityAuditorAware")
 @EnableTransactionManagement
-public class DatabaseConfiguration {}
+public class DatabaseConfiguration {
+
+    @Bean
+    public static ConnectionHoldPostProcessor connectionHoldPostProcessor(
+        ObjectProvider<MeterRegistry> registry,
+        ObjectProvider<AuthProperties> authProperties
+    ) {
+        return new ConnectionHoldPostProcessor(registry, authProperties);
+    }
+}
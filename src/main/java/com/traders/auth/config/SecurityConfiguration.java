@@ -1,9 +1,15 @@
 package com.traders.auth.config;
 
 import com.traders.common.properties.ConfigProperties;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.annotation.Order;
 import org.springframework.security.config.annotation.authentication.configuration.AuthenticationConfiguration;
 import org.springframework.security.config.annotation.method.configuration.EnableMethodSecurity;
+import org.springframework.security.config.annotation.web.builders.HttpSecurity;
+import org.springframework.security.config.annotation.web.configurers.AbstractHttpConfigurer;
+import org.springframework.security.config.http.SessionCreationPolicy;
+import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.cors.CorsConfigurationSource;
 import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
@@ -19,6 +25,22 @@ public class SecurityConfiguration extends com.traders.common.config.SecurityCon
         super(configProperties, authenticationConfiguration);
     }
 
+    /**
+     * Public endpoints owned by this service, such as the JWKS and the refresh-token grant, evaluated before the main
+     * API filter chain. The refresh grant must not require a bearer token since it is called once the access token
+     * has expired.
+     */
+    @Bean
+    @Order(1)
+    public SecurityFilterChain publicEndpointsFilterChain(HttpSecurity http) throws Exception {
+        http
+            .securityMatcher("/.well-known/**", "/api/authenticate/refresh")
+            .csrf(AbstractHttpConfigurer::disable)
+            .sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
+            .authorizeHttpRequests(authz -> authz.anyRequest().permitAll());
+        return http.build();
+    }
+
 
 
    /* @Override
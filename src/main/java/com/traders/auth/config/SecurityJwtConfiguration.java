@@ -1,8 +1,60 @@
 package com.traders.auth.config;
 
+import com.nimbusds.jose.jwk.source.JWKSource;
+import com.nimbusds.jose.proc.SecurityContext;
+import com.nimbusds.jose.util.Base64;
+import com.traders.auth.properties.AuthProperties;
+import com.traders.auth.security.JwtKeyManager;
+import com.traders.auth.security.KeyRotatingJwtDecoder;
+import com.traders.auth.security.TokenRevocationService;
+import com.traders.common.security.SecurityUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.security.oauth2.core.DelegatingOAuth2TokenValidator;
+import org.springframework.security.oauth2.core.OAuth2TokenValidator;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtEncoder;
+import org.springframework.security.oauth2.jwt.JwtValidators;
+import org.springframework.security.oauth2.jwt.NimbusJwtDecoder;
+import org.springframework.security.oauth2.jwt.NimbusJwtEncoder;
+
+import javax.crypto.spec.SecretKeySpec;
 
 @Configuration
 public class SecurityJwtConfiguration extends com.traders.common.config.SecurityJwtConfiguration {
-    //no code change
+
+    /**
+     * Signs tokens with the ES256 key named by the {@code kid} header, taken from this node's key ring.
+     */
+    @Bean
+    @Primary
+    public JwtEncoder rotatingJwtEncoder(JwtKeyManager jwtKeyManager) {
+        JWKSource<SecurityContext> jwkSource = (jwkSelector, context) -> jwkSelector.select(jwtKeyManager.signingKeys());
+        return new NimbusJwtEncoder(jwkSource);
+    }
+
+    /**
+     * Verifies tokens against the key ring, then rejects revoked ones from the in-memory revocation state.
+     */
+    @Bean
+    @Primary
+    public JwtDecoder rotatingJwtDecoder(
+        JwtKeyManager jwtKeyManager,
+        TokenRevocationService tokenRevocationService,
+        AuthProperties authProperties,
+        @Value("${config.security.authentication.jwt.base64-secret:}") String legacySecret
+    ) {
+        OAuth2TokenValidator<Jwt> validator = new DelegatingOAuth2TokenValidator<>(JwtValidators.createDefault(), tokenRevocationService);
+        JwtDecoder legacyDecoder = null;
+        if (authProperties.getJwt().isLegacyHmacVerification() && !legacySecret.isEmpty()) {
+            SecretKeySpec secretKey = new SecretKeySpec(Base64.from(legacySecret).decode(), SecurityUtils.JWT_ALGORITHM.getName());
+            NimbusJwtDecoder hmacDecoder = NimbusJwtDecoder.withSecretKey(secretKey).macAlgorithm(SecurityUtils.JWT_ALGORITHM).build();
+            hmacDecoder.setJwtValidator(validator);
+            legacyDecoder = hmacDecoder;
+        }
+        return new KeyRotatingJwtDecoder(jwtKeyManager, legacyDecoder, validator);
+    }
 }
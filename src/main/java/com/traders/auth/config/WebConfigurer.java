@@ -1,15 +1,23 @@
 package com.traders.auth.config;
 
+import com.traders.auth.management.allocation.RouteResourceMetrics;
+import com.traders.auth.properties.AuthProperties;
+import com.traders.auth.security.RateLimiter;
+import com.traders.auth.web.filter.LoginThrottlingFilter;
+import com.traders.auth.web.filter.RequestResourceFilter;
 import com.traders.common.properties.ConfigProperties;
 import jakarta.servlet.ServletContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.security.SecurityProperties;
 import org.springframework.boot.web.server.WebServerFactory;
 import org.springframework.boot.web.server.WebServerFactoryCustomizer;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
 import org.springframework.boot.web.servlet.ServletContextInitializer;
 import org.springframework.boot.web.servlet.server.ConfigurableServletWebServerFactory;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
 import org.springframework.core.env.Environment;
 import org.springframework.util.CollectionUtils;
 import org.springframework.web.cors.CorsConfiguration;
@@ -33,4 +41,28 @@ public class WebConfigurer extends com.traders.common.config.WebConfigurer {
     public WebConfigurer(Environment env, ConfigProperties configProperties) {
         super(env, configProperties);
     }
+
+    /**
+     * Per-IP throttling of the credential endpoints, ahead of the Spring Security filter chain.
+     */
+    @Bean
+    public FilterRegistrationBean<LoginThrottlingFilter> loginThrottlingFilter(RateLimiter rateLimiter, AuthProperties authProperties) {
+        FilterRegistrationBean<LoginThrottlingFilter> registration = new FilterRegistrationBean<>(
+            new LoginThrottlingFilter(rateLimiter, authProperties)
+        );
+        registration.setOrder(SecurityProperties.DEFAULT_FILTER_ORDER - 10);
+        return registration;
+    }
+
+    /**
+     * Per-route allocation and CPU accounting, first in line so that it covers every other filter.
+     */
+    @Bean
+    public FilterRegistrationBean<RequestResourceFilter> requestResourceFilter(RouteResourceMetrics metrics, AuthProperties authProperties) {
+        FilterRegistrationBean<RequestResourceFilter> registration = new FilterRegistrationBean<>(
+            new RequestResourceFilter(metrics, authProperties)
+        );
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE);
+        return registration;
+    }
 }
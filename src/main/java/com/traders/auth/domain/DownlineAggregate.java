@@ -0,0 +1,53 @@
+package com.traders.auth.domain;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+
+/**
+ * One figure about the downline of a user: how many users it has, how many of them are active, their total wallet
+ * balance, or how many hold a given authority.
+ * <p>
+ * Only the downline aggregate fold and rebuild jobs write these rows; changes reach them as
+ * {@link DownlineAggregateDelta}s.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@IdClass(DownlineAggregate.Key.class)
+@Table(name = "downline_aggregate")
+public class DownlineAggregate {
+
+    @Id
+    @Column(name = "ancestor_id")
+    private Long ancestorId;
+
+    @Id
+    @Column(length = 64)
+    private String metric;
+
+    @Column(nullable = false, precision = 19, scale = 2)
+    private BigDecimal amount;
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @EqualsAndHashCode
+    public static class Key implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private Long ancestorId;
+
+        private String metric;
+    }
+}
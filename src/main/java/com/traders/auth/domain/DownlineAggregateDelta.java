@@ -0,0 +1,34 @@
+package com.traders.auth.domain;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.math.BigDecimal;
+
+/**
+ * A change to one {@link DownlineAggregate} not folded into it yet.
+ * <p>
+ * Deltas are only ever inserted by the transactions that change users, wallets or the hierarchy, so those never wait
+ * on each other for the aggregate rows of a shared ancestor. They are inserted with {@code INSERT ... SELECT} over the
+ * closure, hence the database-generated id.
+ */
+@Getter
+@Setter
+@Entity
+@Table(name = "downline_aggregate_delta")
+public class DownlineAggregateDelta {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "ancestor_id", nullable = false)
+    private Long ancestorId;
+
+    @Column(length = 64, nullable = false)
+    private String metric;
+
+    @Column(nullable = false, precision = 19, scale = 2)
+    private BigDecimal delta;
+}
@@ -10,7 +10,8 @@ import lombok.Setter;
 @Setter
 public class Enquiry {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "enquiry_id_seq")
+    @SequenceGenerator(name = "enquiry_id_seq", sequenceName = "enquiry_id_seq", allocationSize = 50)
     private Integer id;
     
     private String name;
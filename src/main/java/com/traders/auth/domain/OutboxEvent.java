@@ -0,0 +1,72 @@
+package com.traders.auth.domain;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.Instant;
+
+/**
+ * A side effect of a committed change, written in the same transaction and carried out later by the outbox
+ * dispatcher.
+ */
+@Getter
+@Setter
+@Entity
+@Table(name = "outbox_event", indexes = @Index(name = "idx_outbox_event_status_available_at", columnList = "status, available_at"))
+public class OutboxEvent {
+
+    public enum Type {
+        /**
+         * Create the wallet of a registered user, {@code aggregateId} is the user id.
+         */
+        USER_WALLET,
+    }
+
+    public enum Status {
+        PENDING,
+        /**
+         * Gave up after the maximum number of attempts.
+         */
+        FAILED,
+    }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "outbox_event_id_seq")
+    @SequenceGenerator(name = "outbox_event_id_seq", sequenceName = "outbox_event_id_seq", allocationSize = 50)
+    private Long id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(length = 32, nullable = false)
+    private Type type;
+
+    @Column(nullable = false)
+    private Long aggregateId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(length = 16, nullable = false)
+    private Status status = Status.PENDING;
+
+    @Column(nullable = false)
+    private Instant createdAt;
+
+    /**
+     * When the event may next be picked up: after a retry backoff, or once a dispatcher's claim on it has lapsed.
+     */
+    @Column(nullable = false)
+    private Instant availableAt;
+
+    private int attempts;
+
+    @Column(length = 512)
+    private String lastError;
+
+    public static OutboxEvent of(Type type, Long aggregateId, Instant now) {
+        OutboxEvent event = new OutboxEvent();
+        event.setType(type);
+        event.setAggregateId(aggregateId);
+        event.setCreatedAt(now);
+        event.setAvailableAt(now);
+        return event;
+    }
+}
@@ -0,0 +1,56 @@
+package com.traders.auth.domain;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.io.Serializable;
+
+/**
+ * A row of the closure of {@code user.parent_user_id}: {@code descendant} is {@code depth} levels below
+ * {@code ancestor}. Every user also has a row of depth 0 to itself.
+ * <p>
+ * Maintained by {@link com.traders.auth.service.UserHierarchyService} in the transaction that registers or moves a
+ * user.
+ */
+@Getter
+@Setter
+@Entity
+@IdClass(UserHierarchy.Key.class)
+@Table(
+    name = "user_hierarchy",
+    indexes = {
+        @Index(name = "idx_user_hierarchy_ancestor_depth", columnList = "ancestor_id, depth"),
+        @Index(name = "idx_user_hierarchy_descendant_depth", columnList = "descendant_id, depth"),
+    }
+)
+public class UserHierarchy {
+
+    @Id
+    @Column(name = "ancestor_id")
+    private Long ancestorId;
+
+    @Id
+    @Column(name = "descendant_id")
+    private Long descendantId;
+
+    @Column(nullable = false)
+    private int depth;
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @EqualsAndHashCode
+    public static class Key implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private Long ancestorId;
+
+        private Long descendantId;
+    }
+}
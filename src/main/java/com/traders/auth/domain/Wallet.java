@@ -8,17 +8,35 @@ import lombok.Setter;
 
 import java.util.List;
 
+/**
+ * Amounts are in minor units (cents): {@code balanceMinor} is what the wallet holds, of which {@code heldMinor} is
+ * reserved and cannot be debited. They are only changed by the conditional updates of {@code WalletRepository}, each of
+ * which bumps {@code version}. A user has at most one wallet.
+ */
 @Getter
 @Setter
 @Entity(name="wallet")
+@Table(uniqueConstraints = @UniqueConstraint(name = Wallet.USER_UNIQUE_CONSTRAINT, columnNames = "user_id"))
 public class Wallet {
 
+    public static final String USER_UNIQUE_CONSTRAINT = "ux_wallet_user_id";
+
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "wallet_id_seq")
+    @SequenceGenerator(name = "wallet_id_seq", sequenceName = "wallet_id_seq", allocationSize = 50)
     private Long walletId;
 
     private String createdAt;
-    private Double balance;
+
+    @Column(name = "balance_minor", nullable = false)
+    private long balanceMinor;
+
+    @Column(name = "held_minor", nullable = false)
+    private long heldMinor;
+
+    @Version
+    @Column(nullable = false)
+    private long version;
 
     @OneToOne
     @JoinColumn(name = "user_id",referencedColumnName = "id")
@@ -0,0 +1,25 @@
+package com.traders.auth.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.security.core.AuthenticationException;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * Thrown when an account has used up its password attempts for now.
+ */
+@ResponseStatus(HttpStatus.TOO_MANY_REQUESTS)
+public class LoginThrottledException extends AuthenticationException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final long retryAfterMillis;
+
+    public LoginThrottledException(long retryAfterMillis) {
+        super("Too many login attempts, please retry later.");
+        this.retryAfterMillis = retryAfterMillis;
+    }
+
+    public long getRetryAfterSeconds() {
+        return Math.max(1, (retryAfterMillis + 999) / 1000);
+    }
+}
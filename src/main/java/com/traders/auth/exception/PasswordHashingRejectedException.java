@@ -0,0 +1,20 @@
+package com.traders.auth.exception;
+
+/**
+ * Thrown when the password hashing queue is full and the request should be retried later.
+ */
+public class PasswordHashingRejectedException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final long retryAfterSeconds;
+
+    public PasswordHashingRejectedException(long retryAfterSeconds) {
+        super("Too many concurrent password verifications, please retry later.");
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
@@ -0,0 +1,63 @@
+package com.traders.auth.management.allocation;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * {@code /management/allocations}: the routes that allocated the most since start-up, with their per-request mean,
+ * so that a regression in DTO mapping or serialization stands out. {@code ?limit=} caps the list, 10 by default.
+ * <p>
+ * Counts cover the measured requests only, see {@code auth.request-accounting.sample-rate}.
+ */
+@Component
+@Endpoint(id = "allocations")
+public class AllocationEndpoint {
+
+    private static final int DEFAULT_LIMIT = 10;
+
+    private final RouteResourceMetrics metrics;
+
+    public AllocationEndpoint(RouteResourceMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @ReadOperation
+    public List<RouteAllocation> topRoutes(@Nullable Integer limit) {
+        return metrics
+            .routes()
+            .stream()
+            .map(RouteAllocation::of)
+            .sorted(Comparator.comparingLong(RouteAllocation::allocatedBytes).reversed())
+            .limit(limit == null || limit < 1 ? DEFAULT_LIMIT : limit)
+            .toList();
+    }
+
+    public record RouteAllocation(
+        String method,
+        String uri,
+        long requests,
+        long allocatedBytes,
+        long meanAllocatedBytes,
+        long maxAllocatedBytes,
+        double meanCpuMillis
+    ) {
+        static RouteAllocation of(RouteResourceMetrics.RouteStats stats) {
+            long requests = stats.requests();
+            long allocatedBytes = stats.allocatedBytes();
+            return new RouteAllocation(
+                stats.route().method(),
+                stats.route().uri(),
+                requests,
+                allocatedBytes,
+                requests == 0 ? 0 : allocatedBytes / requests,
+                stats.maxAllocatedBytes(),
+                requests == 0 ? 0 : stats.cpuNanos() / 1_000_000.0 / requests
+            );
+        }
+    }
+}
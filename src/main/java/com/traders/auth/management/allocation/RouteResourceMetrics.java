@@ -0,0 +1,127 @@
+package com.traders.auth.management.allocation;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bytes allocated and CPU time used by requests, per route, published as the {@code auth.request.allocation} and
+ * {@code auth.request.cpu} distribution summaries tagged by method and uri template.
+ * <p>
+ * Next to the meters, running totals are kept per route so that {@link AllocationEndpoint} can rank them since start-up
+ * without going through the registry.
+ */
+@Component
+public class RouteResourceMetrics {
+
+    private final ConcurrentMap<Route, RouteStats> routes = new ConcurrentHashMap<>();
+
+    private final MeterRegistry registry;
+
+    public RouteResourceMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    /**
+     * Records one request.
+     *
+     * @param method the HTTP method.
+     * @param uri the matched uri template, e.g. {@code /api/admin/users/{login}}.
+     * @param allocatedBytes bytes allocated by the request's thread, or {@code -1} if unknown.
+     * @param cpuNanos CPU time used by the request's thread, or {@code -1} if unknown.
+     */
+    public void record(String method, String uri, long allocatedBytes, long cpuNanos) {
+        routes.computeIfAbsent(new Route(method, uri), this::register).record(allocatedBytes, cpuNanos);
+    }
+
+    Collection<RouteStats> routes() {
+        return routes.values();
+    }
+
+    private RouteStats register(Route route) {
+        DistributionSummary allocation = DistributionSummary.builder("auth.request.allocation")
+            .description("Bytes allocated on the request thread while serving a request")
+            .baseUnit("bytes")
+            .tag("method", route.method())
+            .tag("uri", route.uri())
+            .publishPercentileHistogram()
+            .minimumExpectedValue(1024.0)
+            .maximumExpectedValue(256.0 * 1024 * 1024)
+            .register(registry);
+        DistributionSummary cpu = DistributionSummary.builder("auth.request.cpu")
+            .description("CPU time used on the request thread while serving a request")
+            .baseUnit("milliseconds")
+            .scale(1e-6)
+            .tag("method", route.method())
+            .tag("uri", route.uri())
+            .publishPercentileHistogram()
+            .minimumExpectedValue(0.01)
+            .maximumExpectedValue(10_000.0)
+            .register(registry);
+        return new RouteStats(route, allocation, cpu);
+    }
+
+    record Route(String method, String uri) {}
+
+    static final class RouteStats {
+
+        private final Route route;
+
+        private final DistributionSummary allocation;
+
+        private final DistributionSummary cpu;
+
+        private final LongAdder requests = new LongAdder();
+
+        private final LongAdder allocatedBytes = new LongAdder();
+
+        private final LongAccumulator maxAllocatedBytes = new LongAccumulator(Math::max, 0);
+
+        private final LongAdder cpuNanos = new LongAdder();
+
+        private RouteStats(Route route, DistributionSummary allocation, DistributionSummary cpu) {
+            this.route = route;
+            this.allocation = allocation;
+            this.cpu = cpu;
+        }
+
+        private void record(long bytes, long nanos) {
+            requests.increment();
+            if (bytes >= 0) {
+                allocation.record(bytes);
+                allocatedBytes.add(bytes);
+                maxAllocatedBytes.accumulate(bytes);
+            }
+            if (nanos >= 0) {
+                cpu.record(nanos);
+                cpuNanos.add(nanos);
+            }
+        }
+
+        Route route() {
+            return route;
+        }
+
+        long requests() {
+            return requests.sum();
+        }
+
+        long allocatedBytes() {
+            return allocatedBytes.sum();
+        }
+
+        long maxAllocatedBytes() {
+            return maxAllocatedBytes.get();
+        }
+
+        long cpuNanos() {
+            return cpuNanos.sum();
+        }
+    }
+}
@@ -0,0 +1,4 @@
+/**
+ * Per-route accounting of the memory allocated and the CPU time used by requests.
+ */
+package com.traders.auth.management.allocation;
@@ -0,0 +1,153 @@
+package com.traders.auth.management.connection;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Times every connection handed out, from {@code getConnection} until it is closed back into the pool, in the
+ * {@code auth.db.connection.hold} timer tagged with the method that asked for it.
+ * <p>
+ * The caller is the innermost frame of this service outside of its instrumentation and aspects, e.g.
+ * {@code UserService.registerUser} for a connection taken by a transaction that method started. Connections held longer than the slow threshold are
+ * also logged with their caller.
+ */
+public class ConnectionHoldDataSource extends DelegatingDataSource {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ConnectionHoldDataSource.class);
+
+    private static final String SERVICE_PACKAGE = "com.traders.auth.";
+
+    /**
+     * Instrumentation and aspects that sit between a caller and its repositories.
+     */
+    private static final List<String> SKIPPED_PACKAGES = List.of("com.traders.auth.management.", "com.traders.auth.logging.");
+
+    private static final String UNKNOWN_CALLER = "other";
+
+    private static final StackWalker STACK_WALKER = StackWalker.getInstance();
+
+    private final ConcurrentMap<String, Timer> timers = new ConcurrentHashMap<>();
+
+    private final MeterRegistry registry;
+
+    private final long slowThresholdNanos;
+
+    public ConnectionHoldDataSource(DataSource dataSource, MeterRegistry registry, Duration slowThreshold) {
+        super(dataSource);
+        this.registry = registry;
+        this.slowThresholdNanos = slowThreshold.toNanos();
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return held(obtainTargetDataSource().getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return held(obtainTargetDataSource().getConnection(username, password));
+    }
+
+    private Connection held(Connection connection) {
+        HeldConnection handler = new HeldConnection(connection, caller(), System.nanoTime());
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[] { Connection.class }, handler);
+    }
+
+    private void record(String caller, long nanos) {
+        timers.computeIfAbsent(caller, this::timer).record(Duration.ofNanos(nanos));
+        if (slowThresholdNanos > 0 && nanos > slowThresholdNanos) {
+            LOG.warn("{} held a database connection for {} ms", caller, nanos / 1_000_000);
+        }
+    }
+
+    private Timer timer(String caller) {
+        return Timer.builder("auth.db.connection.hold")
+            .description("Time a pooled database connection is held, from checkout until it is returned")
+            .tag("caller", caller)
+            .publishPercentileHistogram()
+            .register(registry);
+    }
+
+    private static String caller() {
+        Optional<StackWalker.StackFrame> frame = STACK_WALKER.walk(frames ->
+            frames
+                .filter(f -> f.getClassName().startsWith(SERVICE_PACKAGE))
+                .filter(f -> SKIPPED_PACKAGES.stream().noneMatch(f.getClassName()::startsWith))
+                .findFirst()
+        );
+        return frame.map(ConnectionHoldDataSource::callerName).orElse(UNKNOWN_CALLER);
+    }
+
+    /**
+     * {@code SimpleClassName.method}, with Spring's proxy suffix and the lambda wrapping of the method name removed.
+     */
+    static String callerName(StackWalker.StackFrame frame) {
+        String className = frame.getClassName();
+        int proxy = className.indexOf("$$");
+        if (proxy >= 0) {
+            className = className.substring(0, proxy);
+        }
+        className = className.substring(className.lastIndexOf('.') + 1);
+        String method = frame.getMethodName();
+        if (method.startsWith("lambda$")) {
+            int end = method.indexOf('$', "lambda$".length());
+            method = method.substring("lambda$".length(), end < 0 ? method.length() : end);
+        }
+        return className + "." + method;
+    }
+
+    private final class HeldConnection implements java.lang.reflect.InvocationHandler {
+
+        private final Connection target;
+
+        private final String caller;
+
+        private final long checkedOut;
+
+        private boolean closed;
+
+        HeldConnection(Connection target, String caller, long checkedOut) {
+            this.target = target;
+            this.caller = caller;
+            this.checkedOut = checkedOut;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "close":
+                    if (!closed) {
+                        closed = true;
+                        record(caller, System.nanoTime() - checkedOut);
+                    }
+                    break;
+                default:
+                    break;
+            }
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getTargetException();
+            }
+        }
+    }
+}
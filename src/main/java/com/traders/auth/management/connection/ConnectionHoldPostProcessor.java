@@ -0,0 +1,39 @@
+package com.traders.auth.management.connection;
+
+import com.traders.auth.properties.AuthProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+
+import javax.sql.DataSource;
+
+/**
+ * Wraps the application's {@link DataSource} in a {@link ConnectionHoldDataSource} when
+ * {@code auth.connection-hold.enabled} is set.
+ * <p>
+ * Registered from a static bean method, the registry and the properties are looked up when the data source is created
+ * rather than when this post-processor is.
+ */
+public class ConnectionHoldPostProcessor implements BeanPostProcessor {
+
+    private final ObjectProvider<MeterRegistry> registry;
+
+    private final ObjectProvider<AuthProperties> authProperties;
+
+    public ConnectionHoldPostProcessor(ObjectProvider<MeterRegistry> registry, ObjectProvider<AuthProperties> authProperties) {
+        this.registry = registry;
+        this.authProperties = authProperties;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (!(bean instanceof DataSource dataSource) || bean instanceof ConnectionHoldDataSource) {
+            return bean;
+        }
+        AuthProperties.ConnectionHold properties = authProperties.getObject().getConnectionHold();
+        if (!properties.isEnabled()) {
+            return bean;
+        }
+        return new ConnectionHoldDataSource(dataSource, registry.getObject(), properties.getSlowThreshold());
+    }
+}
@@ -0,0 +1,4 @@
+/**
+ * How long pooled database connections are held, per calling method.
+ */
+package com.traders.auth.management.connection;
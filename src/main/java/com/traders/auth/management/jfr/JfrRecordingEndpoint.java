@@ -0,0 +1,177 @@
+package com.traders.auth.management.jfr;
+
+import com.traders.auth.properties.AuthProperties;
+import jakarta.annotation.PreDestroy;
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.boot.actuate.endpoint.web.WebEndpointResponse;
+import org.springframework.boot.actuate.endpoint.web.annotation.WebEndpoint;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.text.ParseException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * {@code /management/jfr}: time-boxed JDK Flight Recorder recordings, started and downloaded over HTTP.
+ * <ul>
+ *     <li>{@code GET /management/jfr} lists the recordings started here.</li>
+ *     <li>{@code POST /management/jfr} starts one, with an optional {@code duration} (capped at
+ *     {@code auth.jfr.max-duration}) and {@code settings} ({@code default} or {@code profile}).</li>
+ *     <li>{@code POST /management/jfr/{id}} stops it early.</li>
+ *     <li>{@code GET /management/jfr/{id}} downloads what it has recorded so far as a {@code .jfr} file.</li>
+ *     <li>{@code DELETE /management/jfr/{id}} discards it.</li>
+ * </ul>
+ * Recordings include the service's own events ({@code com.traders.auth.*}) next to the JDK ones, less those that
+ * capture the environment, system properties and JVM arguments, which hold secrets. Downloads are dumped to a file of
+ * their own in the temporary directory, deleted once it has been streamed.
+ */
+@Component
+@WebEndpoint(id = "jfr")
+public class JfrRecordingEndpoint {
+
+    private static final Logger LOG = LoggerFactory.getLogger(JfrRecordingEndpoint.class);
+
+    private static final List<Class<? extends jdk.jfr.Event>> EVENTS = List.of(
+        LoginPhaseEvent.class,
+        PasswordHashEvent.class,
+        RedisCallEvent.class,
+        RepositoryCallEvent.class
+    );
+
+    private static final List<String> SECRET_EVENTS = List.of("jdk.InitialEnvironmentVariable", "jdk.InitialSystemProperty", "jdk.JVMInformation");
+
+    private final Map<Long, Recording> recordings = new ConcurrentHashMap<>();
+
+    private final AuthProperties.Jfr properties;
+
+    public JfrRecordingEndpoint(AuthProperties authProperties) {
+        this.properties = authProperties.getJfr();
+    }
+
+    @ReadOperation
+    public List<RecordingDescriptor> recordings() {
+        return recordings.values().stream().map(RecordingDescriptor::of).sorted(Comparator.comparingLong(RecordingDescriptor::id)).toList();
+    }
+
+    @WriteOperation
+    public synchronized WebEndpointResponse<Object> start(@Nullable Duration duration, @Nullable String settings) {
+        long running = recordings.values().stream().filter(recording -> recording.getState() == RecordingState.RUNNING).count();
+        if (running >= properties.getMaxRecordings()) {
+            return new WebEndpointResponse<>("Already " + running + " recording(s) running", WebEndpointResponse.STATUS_TOO_MANY_REQUESTS);
+        }
+        Configuration configuration;
+        try {
+            configuration = Configuration.getConfiguration(settings == null ? "default" : settings);
+        } catch (IOException | ParseException e) {
+            return new WebEndpointResponse<>("Unknown settings '" + settings + "', use default or profile", WebEndpointResponse.STATUS_BAD_REQUEST);
+        }
+        Duration length = duration == null ? properties.getDefaultDuration() : duration;
+        if (length.compareTo(properties.getMaxDuration()) > 0) {
+            length = properties.getMaxDuration();
+        }
+        Recording recording = new Recording(configuration);
+        EVENTS.forEach(recording::enable);
+        SECRET_EVENTS.forEach(recording::disable);
+        recording.setName("authservice-" + Instant.now().getEpochSecond());
+        recording.setDuration(length);
+        recording.setMaxSize(properties.getMaxSize().toBytes());
+        recording.setToDisk(true);
+        recording.start();
+        recordings.put(recording.getId(), recording);
+        LOG.info("Started JFR recording {} for {}", recording.getId(), length);
+        return new WebEndpointResponse<>(RecordingDescriptor.of(recording));
+    }
+
+    @WriteOperation
+    public WebEndpointResponse<RecordingDescriptor> stop(@Selector long id) {
+        Recording recording = recordings.get(id);
+        if (recording == null) {
+            return new WebEndpointResponse<>(WebEndpointResponse.STATUS_NOT_FOUND);
+        }
+        if (recording.getState() == RecordingState.RUNNING) {
+            recording.stop();
+        }
+        return new WebEndpointResponse<>(RecordingDescriptor.of(recording));
+    }
+
+    @ReadOperation(produces = "application/octet-stream")
+    public WebEndpointResponse<Resource> download(@Selector long id) throws IOException {
+        Recording recording = recordings.get(id);
+        if (recording == null) {
+            return new WebEndpointResponse<>(WebEndpointResponse.STATUS_NOT_FOUND);
+        }
+        Path file = Files.createTempFile(recording.getName() + "-" + recording.getId() + "-", ".jfr");
+        try {
+            recording.dump(file);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(file);
+            throw e;
+        }
+        return new WebEndpointResponse<>(new DumpResource(file));
+    }
+
+    @DeleteOperation
+    public WebEndpointResponse<Void> discard(@Selector long id) throws IOException {
+        Recording recording = recordings.remove(id);
+        if (recording == null) {
+            return new WebEndpointResponse<>(WebEndpointResponse.STATUS_NOT_FOUND);
+        }
+        recording.close();
+        return new WebEndpointResponse<>(WebEndpointResponse.STATUS_NO_CONTENT);
+    }
+
+    @PreDestroy
+    public void closeAll() {
+        recordings.values().forEach(Recording::close);
+        recordings.clear();
+    }
+
+    /**
+     * A dump that is deleted once it has been read, and at the latest when the JVM exits.
+     */
+    private static final class DumpResource extends FileSystemResource {
+
+        DumpResource(Path file) {
+            super(file);
+            file.toFile().deleteOnExit();
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            return Files.newInputStream(getFile().toPath(), StandardOpenOption.DELETE_ON_CLOSE);
+        }
+    }
+
+    public record RecordingDescriptor(long id, String name, RecordingState state, Instant startTime, Duration duration, long size) {
+        static RecordingDescriptor of(Recording recording) {
+            return new RecordingDescriptor(
+                recording.getId(),
+                recording.getName(),
+                recording.getState(),
+                recording.getStartTime(),
+                recording.getDuration(),
+                recording.getSize()
+            );
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.traders.auth.management.jfr;
+
+import com.google.common.hash.Hashing;
+
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.util.Locale;
+
+/**
+ * Pseudonymises logins before they go into a recording.
+ * <p>
+ * The hash is keyed with a random per-process secret: events of one user correlate within a recording, but a recording
+ * handed over for analysis does not reveal who logged in.
+ */
+public final class JfrUsers {
+
+    private static final byte[] KEY = new byte[32];
+
+    static {
+        new SecureRandom().nextBytes(KEY);
+    }
+
+    private JfrUsers() {}
+
+    public static String hash(String login) {
+        if (login == null) {
+            return null;
+        }
+        return Hashing.hmacSha256(KEY).hashString(login.toLowerCase(Locale.ENGLISH), StandardCharsets.UTF_8).toString().substring(0, 16);
+    }
+}
@@ -0,0 +1,24 @@
+package com.traders.auth.management.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * One phase of a login, as timed by {@link com.traders.auth.security.LoginTrace}.
+ */
+@Name("com.traders.auth.LoginPhase")
+@Label("Login Phase")
+@Category({ "Hello Traders", "Authentication" })
+@StackTrace(false)
+public class LoginPhaseEvent extends jdk.jfr.Event {
+
+    @Label("Phase")
+    public String phase;
+
+    @Label("User")
+    @Description("Hash of the login, see JfrUsers")
+    public String user;
+}
@@ -0,0 +1,24 @@
+package com.traders.auth.management.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * A password hash computed on the hashing pool.
+ */
+@Name("com.traders.auth.PasswordHash")
+@Label("Password Hash")
+@Category({ "Hello Traders", "Authentication" })
+@StackTrace(false)
+public class PasswordHashEvent extends jdk.jfr.Event {
+
+    @Label("Operation")
+    public String operation;
+
+    @Label("Queue Time")
+    @Timespan(Timespan.NANOSECONDS)
+    public long queueTime;
+}
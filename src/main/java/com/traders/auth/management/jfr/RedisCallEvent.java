@@ -0,0 +1,43 @@
+package com.traders.auth.management.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+import java.util.function.Supplier;
+
+/**
+ * A blocking round trip to Redis.
+ */
+@Name("com.traders.auth.RedisCall")
+@Label("Redis Call")
+@Category({ "Hello Traders", "Redis" })
+@StackTrace(false)
+public class RedisCallEvent extends jdk.jfr.Event {
+
+    @Label("Operation")
+    public String operation;
+
+    @Label("Commands")
+    public int commands;
+
+    public static <T> T time(String operation, Supplier<T> call) {
+        return time(operation, 1, call);
+    }
+
+    public static <T> T time(String operation, int commands, Supplier<T> call) {
+        RedisCallEvent event = new RedisCallEvent();
+        event.begin();
+        try {
+            return call.get();
+        } finally {
+            event.end();
+            if (event.shouldCommit()) {
+                event.operation = operation;
+                event.commands = commands;
+                event.commit();
+            }
+        }
+    }
+}
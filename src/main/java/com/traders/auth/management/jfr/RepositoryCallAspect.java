@@ -0,0 +1,50 @@
+package com.traders.auth.management.jfr;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.repository.Repository;
+import org.springframework.stereotype.Component;
+
+/**
+ * Emits a {@link RepositoryCallEvent} around every Spring Data repository call, while a recording has the event
+ * enabled.
+ */
+@Aspect
+@Component
+@ConditionalOnProperty(prefix = "auth.jfr", name = "repository-events", havingValue = "true", matchIfMissing = true)
+public class RepositoryCallAspect {
+
+    // repository interface of a proxy class, e.g. UserRepository
+    private static final ClassValue<String> REPOSITORY_NAMES = new ClassValue<>() {
+        @Override
+        protected String computeValue(Class<?> type) {
+            for (Class<?> candidate : type.getInterfaces()) {
+                if (Repository.class.isAssignableFrom(candidate) && !candidate.getName().startsWith("org.springframework.")) {
+                    return candidate.getSimpleName();
+                }
+            }
+            return type.getSimpleName();
+        }
+    };
+
+    @Around("execution(* org.springframework.data.repository.Repository+.*(..))")
+    public Object record(ProceedingJoinPoint joinPoint) throws Throwable {
+        RepositoryCallEvent event = new RepositoryCallEvent();
+        if (!event.isEnabled()) {
+            return joinPoint.proceed();
+        }
+        event.begin();
+        try {
+            return joinPoint.proceed();
+        } finally {
+            event.end();
+            if (event.shouldCommit()) {
+                event.repository = REPOSITORY_NAMES.get(joinPoint.getThis().getClass());
+                event.method = joinPoint.getSignature().getName();
+                event.commit();
+            }
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.traders.auth.management.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A call to a Spring Data repository, i.e. one or more SQL statements and the entity mapping around them.
+ */
+@Name("com.traders.auth.RepositoryCall")
+@Label("Repository Call")
+@Category({ "Hello Traders", "JPA" })
+public class RepositoryCallEvent extends jdk.jfr.Event {
+
+    @Label("Repository")
+    public String repository;
+
+    @Label("Method")
+    public String method;
+}
@@ -0,0 +1,4 @@
+/**
+ * JDK Flight Recorder events of the service and the endpoint recording them.
+ */
+package com.traders.auth.management.jfr;
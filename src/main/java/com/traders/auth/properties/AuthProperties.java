@@ -0,0 +1,582 @@
+package com.traders.auth.properties;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tuning properties owned by the authentication service itself.
+ * <p>
+ * Kept apart from the shared {@code config.*} tree, which is bound strictly by the common library.
+ */
+@Getter
+@Configuration
+@ConfigurationProperties(prefix = "auth", ignoreUnknownFields = false)
+public class AuthProperties {
+
+    private final PasswordHashing passwordHashing = new PasswordHashing();
+
+    private final CredentialCache credentialCache = new CredentialCache();
+
+    private final Jwt jwt = new Jwt();
+
+    private final RefreshToken refreshToken = new RefreshToken();
+
+    private final Revocation revocation = new Revocation();
+
+    private final RedisBatch redisBatch = new RedisBatch();
+
+    private final LoginWriteBehind loginWriteBehind = new LoginWriteBehind();
+
+    private final Outbox outbox = new Outbox();
+
+    private final StepUp stepUp = new StepUp();
+
+    private final Throttling throttling = new Throttling();
+
+    private final LoginTiming loginTiming = new LoginTiming();
+
+    private final Jfr jfr = new Jfr();
+
+    private final RequestAccounting requestAccounting = new RequestAccounting();
+
+    private final HibernateCache hibernateCache = new HibernateCache();
+
+    private final ConnectionHold connectionHold = new ConnectionHold();
+
+    private final Hierarchy hierarchy = new Hierarchy();
+
+    private final DownlineAggregates downlineAggregates = new DownlineAggregates();
+
+    private final WalletOperations walletOperations = new WalletOperations();
+
+    @Getter
+    @Setter
+    public static class PasswordHashing {
+
+        /**
+         * Number of hashing threads, {@code 0} means one per available processor.
+         */
+        private int threads = 0;
+
+        /**
+         * Hash requests allowed to wait for a free thread before new ones are rejected, {@code 0} means sized from
+         * the server's worker threads so that at most half of them wait on hashing. Capped so that some workers
+         * always stay free for other requests.
+         */
+        private int queueCapacity = 0;
+
+        /**
+         * How long a request waits for its hash before it is rejected like a request finding the queue full.
+         */
+        private Duration waitTimeout = Duration.ofSeconds(2);
+
+        /**
+         * Value of the {@code Retry-After} header sent when the queue is full.
+         */
+        private long retryAfterSeconds = 1;
+
+        /**
+         * Algorithm used for new hashes, {@code bcrypt} or {@code argon2}. Hashes of the other algorithm are still
+         * verified and rehashed on the next successful login.
+         */
+        private String algorithm = "bcrypt";
+
+        /**
+         * Hash latency the startup calibration aims for on the current host.
+         */
+        private long targetMillis = 50;
+
+        private final Bcrypt bcrypt = new Bcrypt();
+
+        private final Argon2 argon2 = new Argon2();
+    }
+
+    @Getter
+    @Setter
+    public static class Bcrypt {
+
+        /**
+         * Fixed BCrypt cost, {@code 0} means calibrate against {@code target-millis} at startup.
+         */
+        private int strength = 0;
+
+        private int minStrength = 10;
+
+        private int maxStrength = 16;
+    }
+
+    @Getter
+    @Setter
+    public static class Argon2 {
+
+        private int memoryKib = 19456;
+
+        private int parallelism = 1;
+
+        /**
+         * Fixed Argon2 iteration count, {@code 0} means calibrate against {@code target-millis} at startup.
+         */
+        private int iterations = 0;
+
+        private int maxIterations = 10;
+
+        private int saltLength = 16;
+
+        private int hashLength = 32;
+    }
+
+    @Getter
+    @Setter
+    public static class CredentialCache {
+
+        private boolean enabled = true;
+
+        private long localMaxSize = 10_000;
+
+        private long localTtlSeconds = 60;
+
+        private long sharedTtlSeconds = 600;
+
+        /**
+         * How long an invalidated entry stays a tombstone, which keeps lookups that read the old row from caching it.
+         * Must be longer than any lookup takes.
+         */
+        private long tombstoneSeconds = 30;
+    }
+
+    @Getter
+    @Setter
+    public static class Jwt {
+
+        /**
+         * How long a signing key is used before the next one takes over.
+         */
+        private Duration rotationInterval = Duration.ofDays(1);
+
+        /**
+         * How long a new key is published in the JWKS before it signs anything, so verifiers can fetch it first.
+         */
+        private Duration prePublish = Duration.ofMinutes(10);
+
+        /**
+         * How often each node reloads the public keys of the others and checks whether its own rotation is due.
+         */
+        private Duration keyRefreshInterval = Duration.ofMinutes(1);
+
+        /**
+         * Max-age advertised for the JWKS document.
+         */
+        private Duration jwksMaxAge = Duration.ofMinutes(5);
+
+        /**
+         * Keep accepting HMAC tokens without a {@code kid}, issued before asymmetric signing was enabled.
+         */
+        private boolean legacyHmacVerification = true;
+    }
+
+    @Getter
+    @Setter
+    public static class RefreshToken {
+
+        /**
+         * Issue a refresh token with every password login. Off by default: logins then keep the token validity and
+         * remember-me validity of {@code config.security.authentication.jwt}, which clients that do not refresh rely on.
+         */
+        private boolean enabled = false;
+
+        /**
+         * Lifetime of access tokens issued together with a refresh token.
+         */
+        private Duration accessTokenValidity = Duration.ofMinutes(15);
+
+        /**
+         * Lifetime of a refresh token, renewed on every rotation.
+         */
+        private Duration validity = Duration.ofDays(1);
+
+        /**
+         * Lifetime of a refresh token when the login asked to be remembered.
+         */
+        private Duration rememberMeValidity = Duration.ofDays(30);
+    }
+
+    @Getter
+    @Setter
+    public static class Revocation {
+
+        /**
+         * Number of revoked, unexpired tokens the per-node Bloom filter is sized for.
+         */
+        private long expectedRevokedTokens = 100_000;
+
+        /**
+         * False positive rate of the Bloom filter at its expected size; false positives fall through to an exact lookup.
+         */
+        private double falsePositiveProbability = 0.01;
+
+        /**
+         * How often expired token revocations are dropped and the Bloom filter rebuilt.
+         */
+        private Duration purgeInterval = Duration.ofMinutes(1);
+    }
+
+    @Getter
+    @Setter
+    public static class RedisBatch {
+
+        public enum Durability {
+            /**
+             * Return as soon as the write is queued.
+             */
+            FIRE_AND_FORGET,
+            /**
+             * Wait until the batch holding the write has been flushed.
+             */
+            AWAIT_FLUSH,
+        }
+
+        /**
+         * Pipeline token-state writes; when disabled every write is a synchronous round trip.
+         */
+        private boolean enabled = true;
+
+        /**
+         * Longest time the first write of a batch waits for others to join it.
+         */
+        private Duration flushInterval = Duration.ofMillis(2);
+
+        private int maxBatchSize = 128;
+
+        /**
+         * Writes allowed to wait for the flusher; beyond that writes are done inline.
+         */
+        private int queueCapacity = 10_000;
+
+        private Durability durability = Durability.FIRE_AND_FORGET;
+
+        /**
+         * How long an {@code AWAIT_FLUSH} caller waits for its batch before giving up on the acknowledgement.
+         */
+        private Duration awaitTimeout = Duration.ofMillis(500);
+
+        /**
+         * How long shutdown waits for queued writes to be flushed.
+         */
+        private Duration shutdownTimeout = Duration.ofSeconds(5);
+    }
+
+    @Getter
+    @Setter
+    public static class LoginWriteBehind {
+
+        /**
+         * Write login updates on a timer; when disabled they are written before the login response.
+         */
+        private boolean enabled = true;
+
+        private Duration flushInterval = Duration.ofSeconds(1);
+
+        private int maxBatchSize = 500;
+
+        /**
+         * Flushes a login update may fail before it is dropped.
+         */
+        private int maxAttempts = 5;
+    }
+
+    @Getter
+    @Setter
+    public static class Outbox {
+
+        private Duration pollInterval = Duration.ofSeconds(1);
+
+        /**
+         * Events claimed and carried out per poll; events of one type are carried out in one transaction.
+         */
+        private int batchSize = 100;
+
+        /**
+         * How long claimed events stay with a dispatcher before another node may pick them up again.
+         */
+        private Duration claimTimeout = Duration.ofMinutes(1);
+
+        /**
+         * Attempts before an event is marked failed and left for an operator.
+         */
+        private int maxAttempts = 10;
+
+        /**
+         * Delay before the first retry, doubled on each further attempt up to {@code max-retry-delay}.
+         */
+        private Duration retryDelay = Duration.ofSeconds(5);
+
+        private Duration maxRetryDelay = Duration.ofMinutes(10);
+    }
+
+    @Getter
+    @Setter
+    public static class StepUp {
+
+        /**
+         * How long a step-up assertion stands in for re-entering a password.
+         */
+        private Duration validity = Duration.ofMinutes(5);
+    }
+
+    @Getter
+    @Setter
+    public static class Throttling {
+
+        private boolean enabled = true;
+
+        /**
+         * POST endpoints limited per client IP, each with a bucket of its own.
+         */
+        private List<String> paths = new ArrayList<>(
+            List.of("/api/authenticate", "/api/open/register", "/api/client/authenticate", "/api/account/reset-password/init")
+        );
+
+        /**
+         * Calls per client IP and endpoint.
+         */
+        private final Bucket ip = new Bucket(20, Duration.ofMinutes(1));
+
+        /**
+         * Password attempts per account, across all nodes and IPs, whether by login or by email.
+         */
+        private final Bucket account = new Bucket(10, Duration.ofMinutes(1));
+
+        private final Lockout lockout = new Lockout();
+
+        /**
+         * Size of the per-node pre-filter, in buckets.
+         */
+        private long localMaxBuckets = 100_000;
+    }
+
+    /**
+     * A token bucket holding {@code capacity} tokens, refilled at {@code capacity} tokens per {@code period}.
+     */
+    @Getter
+    @Setter
+    public static class Bucket {
+
+        private long capacity;
+
+        private Duration period;
+
+        public Bucket() {}
+
+        public Bucket(long capacity, Duration period) {
+            this.capacity = capacity;
+            this.period = period;
+        }
+    }
+
+    @Getter
+    @Setter
+    public static class Lockout {
+
+        /**
+         * Failed password attempts within {@code failure-window} that lock the account.
+         */
+        private int maxFailures = 5;
+
+        private Duration failureWindow = Duration.ofMinutes(15);
+
+        /**
+         * First lock duration, doubled for every further lock until {@code max-duration}.
+         */
+        private Duration baseDuration = Duration.ofMinutes(1);
+
+        private Duration maxDuration = Duration.ofHours(1);
+
+        /**
+         * How long a node trusts its cached view of an account's lock state.
+         */
+        private Duration localCacheTtl = Duration.ofSeconds(1);
+    }
+
+    @Getter
+    @Setter
+    public static class LoginTiming {
+
+        /**
+         * Share of logins, from {@code 0} to {@code 1}, answered with a {@code Server-Timing} header of their phases.
+         */
+        private double serverTimingSampleRate = 0;
+    }
+
+    @Getter
+    @Setter
+    public static class Jfr {
+
+        /**
+         * Whether Spring Data repository calls are wrapped to emit JFR events.
+         */
+        private boolean repositoryEvents = true;
+
+        /**
+         * Length of a recording started without one.
+         */
+        private Duration defaultDuration = Duration.ofMinutes(1);
+
+        /**
+         * Longest recording that can be requested.
+         */
+        private Duration maxDuration = Duration.ofMinutes(15);
+
+        /**
+         * Disk space a recording may use before its oldest data is dropped.
+         */
+        private DataSize maxSize = DataSize.ofMegabytes(100);
+
+        /**
+         * Recordings allowed to run at the same time.
+         */
+        private int maxRecordings = 1;
+    }
+
+    @Getter
+    @Setter
+    public static class RequestAccounting {
+
+        /**
+         * Whether requests are measured for the bytes they allocate and the CPU time they use.
+         */
+        private boolean enabled = true;
+
+        /**
+         * Share of requests measured, from {@code 0} to {@code 1}.
+         */
+        private double sampleRate = 1;
+    }
+
+    @Getter
+    @Setter
+    public static class HibernateCache {
+
+        /**
+         * Settings of the regions not listed under {@code regions}.
+         */
+        private CacheRegion defaults = new CacheRegion();
+
+        /**
+         * Settings per region: entity and collection regions are named after the class and role, e.g.
+         * {@code com.traders.auth.domain.User.authorities}, query cache regions after the repository constants.
+         */
+        private Map<String, CacheRegion> regions = new LinkedHashMap<>();
+
+        public CacheRegion region(String name) {
+            return regions.getOrDefault(name, defaults);
+        }
+    }
+
+    @Getter
+    @Setter
+    public static class CacheRegion {
+
+        public enum Expiry {
+            /**
+             * Entries expire {@code ttl} after they were written.
+             */
+            CREATED,
+            /**
+             * Entries expire {@code ttl} after they were last read or written.
+             */
+            ACCESSED,
+        }
+
+        /**
+         * How long entries stay in Redis, zero for as long as Redis keeps them.
+         */
+        private Duration ttl = Duration.ofHours(1);
+
+        private Expiry expiry = Expiry.CREATED;
+
+        /**
+         * Entries kept in the in-process near cache before the least used ones are evicted; zero disables it. Only
+         * query result regions and read-only entity and collection regions can have one.
+         */
+        private long nearCacheMaxSize = 0;
+
+        /**
+         * How long a node may serve a near-cached entry that another node changed without it hearing of it.
+         */
+        private Duration nearCacheTtl = Duration.ofSeconds(10);
+    }
+
+    @Getter
+    @Setter
+    public static class ConnectionHold {
+
+        /**
+         * Whether connections are timed from checkout to return, per calling method.
+         */
+        private boolean enabled = true;
+
+        /**
+         * Connections held longer are logged with their caller; zero disables the log.
+         */
+        private Duration slowThreshold = Duration.ofMillis(500);
+    }
+
+    @Getter
+    @Setter
+    public static class Hierarchy {
+
+        /**
+         * Users per downline page when the request does not ask for a size.
+         */
+        private int downlinePageSize = 50;
+
+        private int maxDownlinePageSize = 500;
+    }
+
+    @Getter
+    @Setter
+    public static class DownlineAggregates {
+
+        /**
+         * How often pending deltas are folded into the aggregates, and so how far behind a downline summary may be.
+         */
+        private Duration foldInterval = Duration.ofSeconds(1);
+
+        private int foldBatchSize = 1000;
+
+        /**
+         * When every aggregate is recomputed and checked.
+         */
+        private String rebuildCron = "0 30 3 * * ?";
+
+        /**
+         * How long the rebuild waits for the lock, held by the fold or by a rebuild on another node, before giving up.
+         */
+        private Duration rebuildLockWait = Duration.ofMinutes(1);
+    }
+
+    @Getter
+    @Setter
+    public static class WalletOperations {
+
+        /**
+         * Locks the operations of a node are spread over by wallet id; operations on wallets sharing a lock run one
+         * at a time on the node.
+         */
+        private int lockStripes = 1024;
+
+        /**
+         * How long an operation waits for its wallet's lock before it goes ahead without it.
+         */
+        private Duration lockTimeout = Duration.ofSeconds(2);
+    }
+}
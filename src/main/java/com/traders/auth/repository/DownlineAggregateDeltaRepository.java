@@ -0,0 +1,46 @@
+package com.traders.auth.repository;
+
+import com.traders.auth.domain.DownlineAggregateDelta;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Spring Data JPA repository for the {@link DownlineAggregateDelta} entity.
+ */
+@Repository
+public interface DownlineAggregateDeltaRepository extends JpaRepository<DownlineAggregateDelta, Long> {
+    /**
+     * Records the change for every current ancestor of the user.
+     */
+    @Modifying
+    @Query(
+        value = """
+        INSERT INTO downline_aggregate_delta (ancestor_id, metric, delta)
+        SELECT h.ancestor_id, :metric, :delta FROM user_hierarchy h WHERE h.descendant_id = :userId AND h.depth > 0""",
+        nativeQuery = true
+    )
+    int insertForAncestors(@Param("userId") Long userId, @Param("metric") String metric, @Param("delta") BigDecimal delta);
+
+    @Query("SELECT d.id FROM DownlineAggregateDelta d ORDER BY d.id")
+    List<Long> findIds(Limit limit);
+
+    /**
+     * Rows of ancestor id, metric and summed delta.
+     */
+    @Query("SELECT d.ancestorId, d.metric, SUM(d.delta) FROM DownlineAggregateDelta d WHERE d.id IN :ids GROUP BY d.ancestorId, d.metric")
+    List<Object[]> sumByAncestorAndMetric(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Rows of ancestor id, metric and summed delta over every delta not folded yet.
+     */
+    @Query("SELECT d.ancestorId, d.metric, SUM(d.delta) FROM DownlineAggregateDelta d GROUP BY d.ancestorId, d.metric")
+    List<Object[]> sumPending();
+}
@@ -0,0 +1,67 @@
+package com.traders.auth.repository;
+
+import com.traders.auth.domain.DownlineAggregate;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * Spring Data JPA repository for the {@link DownlineAggregate} entity, and the queries that compute the aggregates
+ * from the users, their authorities and wallets through the {@code user_hierarchy} closure.
+ */
+@Repository
+public interface DownlineAggregateRepository extends JpaRepository<DownlineAggregate, DownlineAggregate.Key> {
+    List<DownlineAggregate> findByAncestorId(Long ancestorId);
+
+    @Modifying
+    @Query("UPDATE DownlineAggregate a SET a.amount = a.amount + :delta WHERE a.ancestorId = :ancestorId AND a.metric = :metric")
+    int addToAmount(@Param("ancestorId") Long ancestorId, @Param("metric") String metric, @Param("delta") BigDecimal delta);
+
+    // the user and its downline
+
+    @Query("SELECT COUNT(h) FROM UserHierarchy h WHERE h.ancestorId = :userId")
+    long countSubtreeUsers(@Param("userId") Long userId);
+
+    @Query(
+        "SELECT COUNT(h) FROM UserHierarchy h JOIN User u ON u.id = h.descendantId " +
+        "WHERE h.ancestorId = :userId AND u.activated = true AND u.deleteFlag = 0"
+    )
+    long countSubtreeActiveUsers(@Param("userId") Long userId);
+
+    @Query("SELECT COALESCE(SUM(w.balanceMinor), 0) FROM UserHierarchy h JOIN wallet w ON w.user.id = h.descendantId WHERE h.ancestorId = :userId")
+    Long sumSubtreeBalance(@Param("userId") Long userId);
+
+    /**
+     * Rows of authority name and number of users holding it.
+     */
+    @Query(
+        "SELECT a.name, COUNT(h) FROM UserHierarchy h JOIN User u ON u.id = h.descendantId JOIN u.authorities a " +
+        "WHERE h.ancestorId = :userId GROUP BY a.name"
+    )
+    List<Object[]> countSubtreeUsersByAuthority(@Param("userId") Long userId);
+
+    // every downline, for the rebuild: rows of ancestor id, [authority name,] value
+
+    @Query("SELECT h.ancestorId, COUNT(h) FROM UserHierarchy h WHERE h.depth > 0 GROUP BY h.ancestorId")
+    List<Object[]> countDownlineUsers();
+
+    @Query(
+        "SELECT h.ancestorId, COUNT(h) FROM UserHierarchy h JOIN User u ON u.id = h.descendantId " +
+        "WHERE h.depth > 0 AND u.activated = true AND u.deleteFlag = 0 GROUP BY h.ancestorId"
+    )
+    List<Object[]> countDownlineActiveUsers();
+
+    @Query("SELECT h.ancestorId, SUM(w.balanceMinor) FROM UserHierarchy h JOIN wallet w ON w.user.id = h.descendantId WHERE h.depth > 0 GROUP BY h.ancestorId")
+    List<Object[]> sumDownlineBalances();
+
+    @Query(
+        "SELECT h.ancestorId, a.name, COUNT(h) FROM UserHierarchy h JOIN User u ON u.id = h.descendantId JOIN u.authorities a " +
+        "WHERE h.depth > 0 GROUP BY h.ancestorId, a.name"
+    )
+    List<Object[]> countDownlineUsersByAuthority();
+}
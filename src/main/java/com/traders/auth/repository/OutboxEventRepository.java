@@ -0,0 +1,27 @@
+package com.traders.auth.repository;
+
+import com.traders.auth.domain.OutboxEvent;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Spring Data JPA repository for the {@link OutboxEvent} entity.
+ */
+@Repository
+public interface OutboxEventRepository extends JpaRepository<OutboxEvent, Long> {
+    /**
+     * Locks the oldest events that are due, skipping those another dispatcher has locked ({@code -2} is
+     * {@code SKIP LOCKED}).
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = "-2"))
+    List<OutboxEvent> findByStatusAndAvailableAtLessThanEqualOrderById(OutboxEvent.Status status, Instant now, Limit limit);
+}
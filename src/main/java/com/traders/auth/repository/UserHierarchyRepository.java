@@ -0,0 +1,118 @@
+package com.traders.auth.repository;
+
+import com.traders.auth.domain.User;
+import com.traders.auth.domain.UserHierarchy;
+import com.traders.auth.service.dto.DownlineLevelDTO;
+import com.traders.auth.service.dto.DownlineUserDTO;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Spring Data JPA repository for the {@link UserHierarchy} closure table.
+ */
+@Repository
+public interface UserHierarchyRepository extends JpaRepository<UserHierarchy, UserHierarchy.Key> {
+    /**
+     * Locks the user row of the root of a subtree about to be moved, so that users being added below it wait for the
+     * move to commit.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT u FROM User u WHERE u.id = :userId")
+    User lockSubtreeRoot(@Param("userId") Long userId);
+
+    /**
+     * Share-locks the user rows of {@code userId} and its ancestors, in id order, before their links are copied to
+     * users added or moved below; this waits for a move of any subtree containing them.
+     */
+    @Lock(LockModeType.PESSIMISTIC_READ)
+    @Query("SELECT u FROM User u WHERE u.id IN (SELECT h.ancestorId FROM UserHierarchy h WHERE h.descendantId = :userId) ORDER BY u.id")
+    List<User> lockPath(@Param("userId") Long userId);
+
+    /**
+     * Links a new user to itself and to every ancestor of its parent, if it has one.
+     */
+    @Modifying
+    @Query(
+        value = """
+        INSERT INTO user_hierarchy (ancestor_id, descendant_id, depth)
+        SELECT :userId, :userId, 0
+        UNION ALL
+        SELECT h.ancestor_id, :userId, h.depth + 1 FROM user_hierarchy h WHERE h.descendant_id = :parentId""",
+        nativeQuery = true
+    )
+    int insertUser(@Param("userId") Long userId, @Param("parentId") Long parentId);
+
+    /**
+     * Links every user of the subtree rooted at {@code userId} to the new parent and its ancestors.
+     */
+    @Modifying
+    @Query(
+        value = """
+        INSERT INTO user_hierarchy (ancestor_id, descendant_id, depth)
+        SELECT a.ancestor_id, d.descendant_id, a.depth + d.depth + 1
+        FROM user_hierarchy a JOIN user_hierarchy d ON d.ancestor_id = :userId
+        WHERE a.descendant_id = :parentId""",
+        nativeQuery = true
+    )
+    int insertSubtreeUnder(@Param("userId") Long userId, @Param("parentId") Long parentId);
+
+    @Modifying
+    @Query("DELETE FROM UserHierarchy h WHERE h.descendantId IN :descendantIds AND h.ancestorId IN :ancestorIds")
+    int deleteLinks(@Param("descendantIds") Collection<Long> descendantIds, @Param("ancestorIds") Collection<Long> ancestorIds);
+
+    @Modifying
+    @Query("DELETE FROM UserHierarchy h WHERE h.descendantId = :userId OR h.ancestorId = :userId")
+    int deleteUser(@Param("userId") Long userId);
+
+    /**
+     * The user's ancestors, nearest first.
+     */
+    @Query("SELECT h.ancestorId FROM UserHierarchy h WHERE h.descendantId = :userId AND h.depth > 0 ORDER BY h.depth")
+    List<Long> findAncestorIds(@Param("userId") Long userId);
+
+    /**
+     * The user and everyone below it.
+     */
+    @Query("SELECT h.descendantId FROM UserHierarchy h WHERE h.ancestorId = :userId")
+    List<Long> findSubtreeIds(@Param("userId") Long userId);
+
+    boolean existsByAncestorIdAndDescendantId(Long ancestorId, Long descendantId);
+
+    boolean existsByAncestorIdAndDepthGreaterThan(Long ancestorId, int depth);
+
+    /**
+     * A page of the downline ordered by user id, starting after {@code afterId}.
+     */
+    @Query(
+        """
+        SELECT new com.traders.auth.service.dto.DownlineUserDTO(u.id, u.login, u.firstName, u.lastName, u.email, u.activated, u.parentUser.id, h.depth)
+        FROM UserHierarchy h JOIN User u ON u.id = h.descendantId
+        WHERE h.ancestorId = :ancestorId AND h.depth BETWEEN 1 AND :maxDepth AND h.descendantId > :afterId
+        ORDER BY h.descendantId"""
+    )
+    List<DownlineUserDTO> findDownline(
+        @Param("ancestorId") Long ancestorId,
+        @Param("maxDepth") int maxDepth,
+        @Param("afterId") long afterId,
+        Limit limit
+    );
+
+    @Query(
+        """
+        SELECT new com.traders.auth.service.dto.DownlineLevelDTO(h.depth, COUNT(h))
+        FROM UserHierarchy h
+        WHERE h.ancestorId = :ancestorId AND h.depth BETWEEN 1 AND :maxDepth
+        GROUP BY h.depth
+        ORDER BY h.depth"""
+    )
+    List<DownlineLevelDTO> countDownlineByDepth(@Param("ancestorId") Long ancestorId, @Param("maxDepth") int maxDepth);
+}
@@ -1,18 +1,24 @@
 package com.traders.auth.repository;
 
 import com.traders.auth.domain.User;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
 import jakarta.transaction.Transactional;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.Instant;
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
 
 /**
@@ -20,27 +26,76 @@ import java.util.Optional;
  */
 @Repository
 public interface UserRepository extends JpaRepository<User, Long> {
+    String USERS_BY_LOGIN_CACHE = "usersByLogin";
+
+    String USERS_BY_EMAIL_CACHE = "usersByEmail";
+
     Optional<User> findOneByActivationKey(String activationKey);
     List<User> findAllByActivatedIsFalseAndActivationKeyIsNotNullAndCreatedDateBefore(Instant dateTime);
     Optional<User> findOneByResetKey(String resetKey);
+    @QueryHints({ @QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"), @QueryHint(name = HibernateHints.HINT_CACHE_REGION, value = USERS_BY_EMAIL_CACHE) })
     Optional<User> findOneByEmailIgnoreCase(String email);
     Optional<User> findOneByContactNo(String contactNo);
+    @QueryHints({ @QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"), @QueryHint(name = HibernateHints.HINT_CACHE_REGION, value = USERS_BY_LOGIN_CACHE) })
     Optional<User> findOneByLogin(String login);
     Optional<User> findOneByParentAccount(int parentAccount);
 
     @EntityGraph(attributePaths = "authorities")
+    @QueryHints({ @QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"), @QueryHint(name = HibernateHints.HINT_CACHE_REGION, value = USERS_BY_LOGIN_CACHE) })
     Optional<User> findOneWithAuthoritiesByLogin(String login);
 
     @EntityGraph(attributePaths = "authorities")
+    @QueryHints({ @QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"), @QueryHint(name = HibernateHints.HINT_CACHE_REGION, value = USERS_BY_EMAIL_CACHE) })
     Optional<User> findOneWithAuthoritiesByEmailIgnoreCase(String email);
 
     Page<User> findAllByIdNotNullAndActivatedIsTrue(Pageable pageable);
 
+    @EntityGraph(attributePaths = "parentUser")
+    Optional<User> findOneWithParentUserById(Long id);
+
     @Transactional
     @Modifying
     @Query("UPDATE User u SET u.fcmToken = :fcmToken WHERE u.id = :userId")
     void updateFcmToken(@Param("userId") Long userId, @Param("fcmToken") String fcmToken);
 
+    /**
+     * The user, with its row locked until the end of the transaction.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT u FROM User u WHERE u.id = :userId")
+    Optional<User> findLockedById(@Param("userId") Long userId);
 
+    /**
+     * Replaces the password only if it is still the one that was verified. The change goes through the entity, so only
+     * that user is evicted from the second-level cache.
+     *
+     * @return {@code 1} if replaced, {@code 0} if the password was changed in the meantime.
+     */
+    @Transactional
+    default int replacePassword(Long userId, String verifiedPassword, String password) {
+        return findLockedById(userId)
+            .filter(user -> user.getPassword().equals(verifiedPassword))
+            .map(user -> {
+                user.setPassword(password);
+                return 1;
+            })
+            .orElse(0);
+    }
 
+    /**
+     * Replaces the transaction password only if it is still the one that was verified, through the entity as
+     * {@link #replacePassword} does.
+     *
+     * @return {@code 1} if replaced, {@code 0} if the transaction password was changed in the meantime.
+     */
+    @Transactional
+    default int replaceTransactionPassword(Long userId, String verifiedTransactionPassword, String transactionPassword) {
+        return findLockedById(userId)
+            .filter(user -> Objects.equals(user.getTransactionPassword(), verifiedTransactionPassword))
+            .map(user -> {
+                user.setTransactionPassword(transactionPassword);
+                return 1;
+            })
+            .orElse(0);
+    }
 }
@@ -1,8 +1,70 @@
 package com.traders.auth.repository;
 
 import com.traders.auth.domain.Wallet;
+import com.traders.auth.service.dto.WalletDTO;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Balance changes are single conditional {@code UPDATE}s rather than a read and a write of the entity: the database
+ * checks the condition and applies the change under the row lock, so concurrent operations cannot lose one another.
+ * Each bumps the version and, when {@code expectedVersion} is not null, only applies at that version. They return the
+ * number of rows changed, {@code 0} when the wallet does not exist or the condition does not hold.
+ */
 public interface WalletRepository extends JpaRepository<Wallet, Long> {
 
+    @Query("SELECT w.user.id FROM wallet w WHERE w.user.id IN :userIds")
+    Set<Long> findUserIdsWithWallet(@Param("userIds") Collection<Long> userIds);
+
+    @Query(
+        "SELECT new com.traders.auth.service.dto.WalletDTO(w.walletId, w.user.id, w.balanceMinor, w.heldMinor, w.version) " +
+        "FROM wallet w WHERE w.walletId = :walletId"
+    )
+    Optional<WalletDTO> findStateByWalletId(@Param("walletId") Long walletId);
+
+    @Modifying
+    @Query(
+        "UPDATE wallet w SET w.balanceMinor = w.balanceMinor + :amount, w.version = w.version + 1 " +
+        "WHERE w.walletId = :walletId AND (:expectedVersion IS NULL OR w.version = :expectedVersion)"
+    )
+    int credit(@Param("walletId") Long walletId, @Param("amount") long amount, @Param("expectedVersion") Long expectedVersion);
+
+    /**
+     * Only applies if the amount is available, i.e. not held.
+     */
+    @Modifying
+    @Query(
+        "UPDATE wallet w SET w.balanceMinor = w.balanceMinor - :amount, w.version = w.version + 1 " +
+        "WHERE w.walletId = :walletId AND w.balanceMinor - w.heldMinor >= :amount " +
+        "AND (:expectedVersion IS NULL OR w.version = :expectedVersion)"
+    )
+    int debit(@Param("walletId") Long walletId, @Param("amount") long amount, @Param("expectedVersion") Long expectedVersion);
+
+    /**
+     * Only applies if the amount is available, i.e. not already held.
+     */
+    @Modifying
+    @Query(
+        "UPDATE wallet w SET w.heldMinor = w.heldMinor + :amount, w.version = w.version + 1 " +
+        "WHERE w.walletId = :walletId AND w.balanceMinor - w.heldMinor >= :amount " +
+        "AND (:expectedVersion IS NULL OR w.version = :expectedVersion)"
+    )
+    int hold(@Param("walletId") Long walletId, @Param("amount") long amount, @Param("expectedVersion") Long expectedVersion);
+
+    /**
+     * Only applies if at least the amount is held.
+     */
+    @Modifying
+    @Query(
+        "UPDATE wallet w SET w.heldMinor = w.heldMinor - :amount, w.version = w.version + 1 " +
+        "WHERE w.walletId = :walletId AND w.heldMinor >= :amount " +
+        "AND (:expectedVersion IS NULL OR w.version = :expectedVersion)"
+    )
+    int release(@Param("walletId") Long walletId, @Param("amount") long amount, @Param("expectedVersion") Long expectedVersion);
 }
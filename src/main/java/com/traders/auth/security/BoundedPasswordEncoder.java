@@ -0,0 +1,180 @@
+package com.traders.auth.security;
+
+import com.traders.auth.exception.PasswordHashingRejectedException;
+import com.traders.auth.management.jfr.PasswordHashEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * {@link PasswordEncoder} running the delegate's {@code encode}/{@code matches} on a fixed-size pool with a bounded queue.
+ * <p>
+ * Hashing is CPU bound, so running more hashes than there are cores only adds latency. The calling request thread
+ * waits for its own hash, but at most {@code threads} hashes run at once and at most {@code queueCapacity} wait;
+ * anything beyond that fails fast with {@link PasswordHashingRejectedException} instead of piling up on the
+ * Undertow workers that also serve cheap endpoints. The queue is sized below the worker count for the same reason,
+ * and a caller waits at most {@code waitTimeout} for its hash before it gives up with the same exception.
+ */
+public class BoundedPasswordEncoder implements PasswordEncoder, AutoCloseable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(BoundedPasswordEncoder.class);
+
+    private static final String METRIC_PREFIX = "auth.password.hashing";
+
+    private final PasswordEncoder delegate;
+
+    private final ThreadPoolExecutor executor;
+
+    private final long waitTimeoutNanos;
+
+    private final long retryAfterSeconds;
+
+    private final Timer waitTimer;
+
+    private final Timer encodeTimer;
+
+    private final Timer matchesTimer;
+
+    private final Counter rejectedCounter;
+
+    private final Counter timedOutCounter;
+
+    public BoundedPasswordEncoder(
+        PasswordEncoder delegate,
+        int threads,
+        int queueCapacity,
+        Duration waitTimeout,
+        long retryAfterSeconds,
+        MeterRegistry registry
+    ) {
+        int poolSize = poolSize(threads);
+        this.delegate = delegate;
+        this.waitTimeoutNanos = waitTimeout.toNanos();
+        this.retryAfterSeconds = retryAfterSeconds;
+        this.executor = new ThreadPoolExecutor(
+            poolSize,
+            poolSize,
+            0L,
+            TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(queueCapacity),
+            new CustomizableThreadFactory("password-hashing-"),
+            new ThreadPoolExecutor.AbortPolicy()
+        );
+        this.executor.prestartAllCoreThreads();
+
+        Gauge.builder(METRIC_PREFIX + ".queue", executor, e -> e.getQueue().size())
+            .description("Password hash requests waiting for a hashing thread")
+            .register(registry);
+        Gauge.builder(METRIC_PREFIX + ".active", executor, ThreadPoolExecutor::getActiveCount)
+            .description("Password hashes currently running")
+            .register(registry);
+        this.waitTimer = Timer.builder(METRIC_PREFIX + ".wait")
+            .description("Time a password hash request spent queued")
+            .register(registry);
+        this.encodeTimer = Timer.builder(METRIC_PREFIX + ".time")
+            .description("Time spent computing a password hash")
+            .tag("operation", "encode")
+            .register(registry);
+        this.matchesTimer = Timer.builder(METRIC_PREFIX + ".time")
+            .description("Time spent computing a password hash")
+            .tag("operation", "matches")
+            .register(registry);
+        this.rejectedCounter = Counter.builder(METRIC_PREFIX + ".rejected")
+            .description("Password hash requests rejected because the queue was full or the wait timed out")
+            .tag("reason", "queue-full")
+            .register(registry);
+        this.timedOutCounter = Counter.builder(METRIC_PREFIX + ".rejected")
+            .description("Password hash requests rejected because the queue was full or the wait timed out")
+            .tag("reason", "timeout")
+            .register(registry);
+        LOG.info("Password hashing engine started with {} threads and a queue of {}", poolSize, queueCapacity);
+    }
+
+    /**
+     * Number of hashing threads for the configured value, {@code 0} meaning one per available processor.
+     */
+    public static int poolSize(int threads) {
+        return threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return submit("encode", encodeTimer, () -> delegate.encode(rawPassword));
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        return LoginTrace.time(LoginTrace.Phase.CREDENTIALS, () -> submit("matches", matchesTimer, () -> delegate.matches(rawPassword, encodedPassword)));
+    }
+
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        return delegate.upgradeEncoding(encodedPassword);
+    }
+
+    private <T> T submit(String operation, Timer hashTimer, Supplier<T> hash) {
+        long enqueuedAt = System.nanoTime();
+        Future<T> future;
+        try {
+            future = executor.submit(() -> {
+                long queueTime = System.nanoTime() - enqueuedAt;
+                waitTimer.record(queueTime, TimeUnit.NANOSECONDS);
+                PasswordHashEvent event = new PasswordHashEvent();
+                event.begin();
+                try {
+                    return hashTimer.record(hash);
+                } finally {
+                    event.end();
+                    if (event.shouldCommit()) {
+                        event.operation = operation;
+                        event.queueTime = queueTime;
+                        event.commit();
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rejectedCounter.increment();
+            throw new PasswordHashingRejectedException(retryAfterSeconds);
+        }
+        try {
+            return future.get(waitTimeoutNanos, TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            timedOutCounter.increment();
+            throw new PasswordHashingRejectedException(retryAfterSeconds);
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for password hashing", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            if (cause instanceof Error error) {
+                throw error;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+}
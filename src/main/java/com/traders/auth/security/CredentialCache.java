@@ -0,0 +1,245 @@
+package com.traders.auth.security;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.traders.auth.domain.User;
+import com.traders.auth.management.jfr.RedisCallEvent;
+import com.traders.auth.properties.AuthProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.redisson.api.RMapCache;
+import org.redisson.api.RTopic;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.StringCodec;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Two-tier cache of {@link CredentialSnapshot}s keyed by normalized login or email.
+ * <p>
+ * The first tier is a bounded in-process Caffeine cache, the second a Redis map shared by every node. Writes to a
+ * user's credentials must call {@link #invalidate(User)}: the Redis entries are replaced by tombstones and the keys are
+ * published so that every node drops its local copy.
+ * <p>
+ * A lookup may read the old row from the database and finish only after the change committed and was invalidated.
+ * Loaded snapshots are therefore only cached if the Redis entry is still absent: a tombstone, kept for
+ * {@code tombstone-seconds}, keeps a load that started before the change from caching what it read. Likewise a local
+ * copy put while an invalidation arrived is dropped again.
+ */
+@Component
+public class CredentialCache {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CredentialCache.class);
+
+    private static final String CACHE_NAME = "credentials";
+
+    private static final String REDIS_MAP = "auth:credentials";
+
+    private static final String INVALIDATION_TOPIC = "auth:credentials:invalidate";
+
+    static final String TOMBSTONE = "-";
+
+    private final Cache<String, CredentialSnapshot> local;
+
+    private final RMapCache<String, String> shared;
+
+    private final RTopic invalidationTopic;
+
+    private final ObjectMapper objectMapper;
+
+    private final AuthProperties.CredentialCache properties;
+
+    private final Counter sharedHits;
+
+    private final Counter sharedMisses;
+
+    private final Counter sharedPuts;
+
+    private final Counter sharedEvictions;
+
+    private final Counter staleLoads;
+
+    // bumped by every invalidation seen on this node
+    private final AtomicLong invalidations = new AtomicLong();
+
+    public CredentialCache(RedissonClient redissonClient, ObjectMapper objectMapper, AuthProperties authProperties, MeterRegistry registry) {
+        this.properties = authProperties.getCredentialCache();
+        this.objectMapper = objectMapper;
+        this.local = Caffeine.newBuilder()
+            .maximumSize(properties.getLocalMaxSize())
+            .expireAfterWrite(properties.getLocalTtlSeconds(), TimeUnit.SECONDS)
+            .recordStats()
+            .build();
+        CaffeineCacheMetrics.monitor(registry, local, CACHE_NAME, "tier", "l1");
+
+        this.shared = redissonClient.getMapCache(REDIS_MAP, StringCodec.INSTANCE);
+        this.sharedHits = sharedCounter(registry, "cache.gets", "result", "hit");
+        this.sharedMisses = sharedCounter(registry, "cache.gets", "result", "miss");
+        this.sharedPuts = sharedCounter(registry, "cache.puts");
+        this.sharedEvictions = sharedCounter(registry, "cache.evictions");
+        this.staleLoads = Counter.builder("auth.credentials.stale.loads")
+            .description("Loaded credentials not cached because they changed while loading or Redis did not take them")
+            .register(registry);
+
+        this.invalidationTopic = redissonClient.getTopic(INVALIDATION_TOPIC, StringCodec.INSTANCE);
+        this.invalidationTopic.addListener(String.class, (channel, key) -> {
+            invalidations.incrementAndGet();
+            local.invalidate(key);
+        });
+    }
+
+    private static Counter sharedCounter(MeterRegistry registry, String name, String... tags) {
+        return Counter.builder(name).tag("cache", CACHE_NAME).tag("tier", "l2").tags(tags).register(registry);
+    }
+
+    public static String loginKey(String login) {
+        return "login:" + login.toLowerCase(Locale.ENGLISH);
+    }
+
+    public static String emailKey(String email) {
+        return "email:" + email.toLowerCase(Locale.ENGLISH);
+    }
+
+    /**
+     * Returns the snapshot for the key, consulting the local tier, then Redis, then the loader.
+     */
+    public Optional<CredentialSnapshot> get(String key, Supplier<Optional<CredentialSnapshot>> loader) {
+        if (!properties.isEnabled()) {
+            return loader.get();
+        }
+        CredentialSnapshot snapshot = local.getIfPresent(key);
+        if (snapshot != null) {
+            return Optional.of(snapshot);
+        }
+        long generation = invalidations.get();
+        String cached = readShared(key);
+        if (cached != null && !TOMBSTONE.equals(cached)) {
+            snapshot = parse(key, cached);
+            if (snapshot != null) {
+                sharedHits.increment();
+                putLocal(key, snapshot, generation);
+                return Optional.of(snapshot);
+            }
+        }
+        sharedMisses.increment();
+        Optional<CredentialSnapshot> loaded = loader.get();
+        if (loaded.isPresent()) {
+            if (TOMBSTONE.equals(cached) || !writeSharedIfAbsent(key, loaded.get())) {
+                staleLoads.increment();
+            } else {
+                putLocal(key, loaded.get(), generation);
+            }
+        }
+        return loaded;
+    }
+
+    private void putLocal(String key, CredentialSnapshot snapshot, long generation) {
+        local.put(key, snapshot);
+        if (invalidations.get() != generation) {
+            // an invalidation may have come in between the read and the put
+            local.invalidate(key);
+        }
+    }
+
+    /**
+     * Drops every cached entry of the user, after the current transaction commits if there is one.
+     */
+    public void invalidate(User user) {
+        invalidate(user.getLogin(), user.getEmail());
+    }
+
+    public void invalidate(String login, String email) {
+        List<String> keys = new ArrayList<>(2);
+        if (login != null) {
+            keys.add(loginKey(login));
+        }
+        if (email != null) {
+            keys.add(emailKey(email));
+        }
+        if (keys.isEmpty()) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    evict(keys);
+                }
+            });
+        } else {
+            evict(keys);
+        }
+    }
+
+    private void evict(List<String> keys) {
+        invalidations.incrementAndGet();
+        local.invalidateAll(keys);
+        try {
+            Map<String, String> tombstones = new HashMap<>();
+            keys.forEach(key -> tombstones.put(key, TOMBSTONE));
+            RedisCallEvent.time("credentials.evict", () -> {
+                shared.putAll(tombstones, properties.getTombstoneSeconds(), TimeUnit.SECONDS);
+                return null;
+            });
+            sharedEvictions.increment(keys.size());
+            keys.forEach(invalidationTopic::publish);
+        } catch (RuntimeException e) {
+            // entries still expire with the shared TTL
+            LOG.warn("Could not invalidate cached credentials {}: {}", keys, e.getMessage());
+        }
+    }
+
+    private String readShared(String key) {
+        try {
+            return RedisCallEvent.time("credentials.get", () -> shared.get(key));
+        } catch (RuntimeException e) {
+            LOG.warn("Could not read cached credentials for {}: {}", key, e.getMessage());
+            return null;
+        }
+    }
+
+    private CredentialSnapshot parse(String key, String json) {
+        try {
+            return objectMapper.readValue(json, CredentialSnapshot.class);
+        } catch (JsonProcessingException e) {
+            LOG.warn("Could not read cached credentials for {}: {}", key, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Caches the snapshot unless there is an entry already, the tombstone of a change in particular.
+     */
+    private boolean writeSharedIfAbsent(String key, CredentialSnapshot snapshot) {
+        try {
+            String json = objectMapper.writeValueAsString(snapshot);
+            boolean put = RedisCallEvent.time(
+                "credentials.put",
+                () -> shared.fastPutIfAbsent(key, json, properties.getSharedTtlSeconds(), TimeUnit.SECONDS)
+            );
+            if (put) {
+                sharedPuts.increment();
+            }
+            return put;
+        } catch (JsonProcessingException | RuntimeException e) {
+            LOG.warn("Could not cache credentials for {}: {}", key, e.getMessage());
+            return false;
+        }
+    }
+}
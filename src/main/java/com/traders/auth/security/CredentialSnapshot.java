@@ -0,0 +1,37 @@
+package com.traders.auth.security;
+
+import com.traders.auth.domain.Authority;
+import com.traders.auth.domain.User;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * Immutable view of the fields needed to authenticate a user, cached by {@link CredentialCache}.
+ */
+public record CredentialSnapshot(
+    Long id,
+    String login,
+    String email,
+    String passwordHash,
+    String transactionPasswordHash,
+    boolean activated,
+    int deleteFlag,
+    List<String> authorities,
+    String fcmToken
+) implements Serializable {
+
+    public static CredentialSnapshot of(User user) {
+        return new CredentialSnapshot(
+            user.getId(),
+            user.getLogin(),
+            user.getEmail(),
+            user.getPassword(),
+            user.getTransactionPassword(),
+            user.isActivated(),
+            user.getDeleteFlag(),
+            user.getAuthorities().stream().map(Authority::getName).sorted().toList(),
+            user.getFcmToken()
+        );
+    }
+}
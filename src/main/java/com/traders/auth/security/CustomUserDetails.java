@@ -10,11 +10,19 @@ public class CustomUserDetails implements UserDetails {
     private final Long id;
     private final String userId;
     private final User user;  // This is Spring's User class
+    private final String email;
+    private final String fcmToken;
 
     public CustomUserDetails(Long id, String userId, User user) {
+        this(id, userId, user, null, null);
+    }
+
+    public CustomUserDetails(Long id, String userId, User user, String email, String fcmToken) {
         this.id = id;
         this.userId = userId;
         this.user = user;
+        this.email = email;
+        this.fcmToken = fcmToken;
     }
 
     public String getUserId() {
@@ -59,4 +67,29 @@ public class CustomUserDetails implements UserDetails {
     public Long getId() {
         return id;
     }
+
+    public String getEmail() {
+        return email;
+    }
+
+    /**
+     * FCM token stored for the user when these details were loaded.
+     */
+    public String getFcmToken() {
+        return fcmToken;
+    }
+
+    /**
+     * Copy of these details carrying a new password hash, used after the hash has been upgraded.
+     */
+    public CustomUserDetails withPassword(String password) {
+        return new CustomUserDetails(id, userId, (User) User.withUserDetails(user).password(password).build(), email, fcmToken);
+    }
+
+    /**
+     * Copy of these details reporting the account as locked.
+     */
+    public CustomUserDetails locked() {
+        return new CustomUserDetails(id, userId, (User) User.withUserDetails(user).accountLocked(true).build(), email, fcmToken);
+    }
 }
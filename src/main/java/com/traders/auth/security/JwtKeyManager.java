@@ -0,0 +1,261 @@
+package com.traders.auth.security;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSVerifier;
+import com.nimbusds.jose.crypto.ECDSAVerifier;
+import com.nimbusds.jose.jwk.Curve;
+import com.nimbusds.jose.jwk.ECKey;
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.KeyUse;
+import com.nimbusds.jose.jwk.gen.ECKeyGenerator;
+import com.traders.auth.properties.AuthProperties;
+import jakarta.annotation.PostConstruct;
+import org.redisson.api.RMap;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.StringCodec;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.text.ParseException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps the ES256 key rings used to sign and verify JWTs.
+ * <p>
+ * Each node signs with private keys of its own that never leave its memory; only their public JWKs are shared, in
+ * Redis, so that every node verifies the tokens of every other and publishes the same JWKS. Each key carries its own
+ * validity window: it is published {@code pre-publish} before it starts signing, signs for {@code rotation-interval},
+ * and stays published until the longest-lived token it could have signed has expired. A node that starts has no key
+ * yet and signs with its first one right away; verifiers that do not know it fetch it on the unknown key id.
+ */
+@Component
+public class JwtKeyManager {
+
+    private static final Logger LOG = LoggerFactory.getLogger(JwtKeyManager.class);
+
+    private static final String KEYS_MAP = "auth:jwt:keys";
+
+    private static final Duration MIN_RELOAD_INTERVAL = Duration.ofSeconds(5);
+
+    private final RMap<String, String> sharedKeys;
+
+    private final AuthProperties.Jwt properties;
+
+    private final Duration maxTokenValidity;
+
+    private final Map<String, JWSVerifier> verifiers = new ConcurrentHashMap<>();
+
+    // this node's private keys
+    private volatile KeyRing keyRing = new KeyRing(List.of());
+
+    // the public keys of every node
+    private volatile List<JWK> publishedKeys = List.of();
+
+    private volatile Instant lastReload = Instant.EPOCH;
+
+    public JwtKeyManager(
+        RedissonClient redissonClient,
+        AuthProperties authProperties,
+        @Value("${config.security.authentication.jwt.token-validity-in-seconds:0}") long tokenValidityInSeconds,
+        @Value("${config.security.authentication.jwt.token-validity-in-seconds-for-remember-me:0}") long tokenValidityInSecondsForRememberMe
+    ) {
+        this.sharedKeys = redissonClient.getMap(KEYS_MAP, StringCodec.INSTANCE);
+        this.properties = authProperties.getJwt();
+        this.maxTokenValidity = Duration.ofSeconds(Math.max(tokenValidityInSeconds, tokenValidityInSecondsForRememberMe));
+    }
+
+    @PostConstruct
+    public void init() {
+        rotateIfDue();
+        reload();
+    }
+
+    /**
+     * Rotates this node's key when it is about to run out, publishes its public keys again in case Redis lost them,
+     * and reloads those of the other nodes.
+     */
+    @Scheduled(fixedDelayString = "${auth.jwt.key-refresh-interval:PT1M}")
+    public void refresh() {
+        try {
+            rotateIfDue();
+            publish(keyRing.keys());
+            reload();
+        } catch (RuntimeException e) {
+            LOG.warn("Could not refresh JWT signing keys, keeping the current ones: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * The key new tokens must be signed with.
+     */
+    public ECKey activeKey() {
+        ECKey active = keyRing.active(Instant.now());
+        if (active == null) {
+            throw new IllegalStateException("No active JWT signing key");
+        }
+        return active;
+    }
+
+    /**
+     * This node's keys that may still sign a token, so that a token started just before a rotation can still be
+     * encoded.
+     */
+    public JWKSet signingKeys() {
+        return new JWKSet(List.copyOf(keyRing.keys()));
+    }
+
+    /**
+     * Public keys of every node, as served by the JWKS endpoint.
+     */
+    public Map<String, Object> publicJwkSet() {
+        Map<String, JWK> keys = new LinkedHashMap<>();
+        publishedKeys.forEach(key -> keys.put(key.getKeyID(), key));
+        keyRing.keys().forEach(key -> keys.putIfAbsent(key.getKeyID(), key.toPublicJWK()));
+        return new JWKSet(List.copyOf(keys.values())).toJSONObject(true);
+    }
+
+    /**
+     * Cached verifier for a key id, reloading the key ring once if the key is not known yet.
+     */
+    public Optional<JWSVerifier> verifier(String kid) {
+        JWSVerifier verifier = verifiers.get(kid);
+        if (verifier == null && Instant.now().isAfter(lastReload.plus(MIN_RELOAD_INTERVAL))) {
+            reload();
+            verifier = verifiers.get(kid);
+        }
+        return Optional.ofNullable(verifier);
+    }
+
+    private synchronized void reload() {
+        List<ECKey> keys = new ArrayList<>();
+        for (String json : sharedKeys.readAllValues()) {
+            parse(json).ifPresent(key -> {
+                if (key.isPrivate()) {
+                    // written by an older version that shared the private keys
+                    sharedKeys.fastPut(key.getKeyID(), key.toPublicJWK().toJSONString());
+                    LOG.warn("Replaced the shared private JWT key {} by its public part", key.getKeyID());
+                }
+                keys.add(key.toPublicJWK());
+            });
+        }
+        removeExpiredKeys(keys, Instant.now());
+        publishedKeys = List.copyOf(keys);
+        keyRing.keys().forEach(key -> keys.add(key.toPublicJWK()));
+        List<String> kids = keys.stream().map(JWK::getKeyID).toList();
+        verifiers.keySet().retainAll(kids);
+        for (ECKey key : keys) {
+            verifiers.computeIfAbsent(key.getKeyID(), kid -> createVerifier(key));
+        }
+        lastReload = Instant.now();
+    }
+
+    private synchronized void rotateIfDue() {
+        Instant now = Instant.now();
+        if (!keyRing.rotationDue(now, properties.getRotationInterval(), properties.getPrePublish())) {
+            return;
+        }
+        // the first key of a node has nothing to overlap with, so it signs immediately
+        Instant notBefore = keyRing.keys().isEmpty() ? now : now.plus(properties.getPrePublish());
+        ECKey key = generate(notBefore);
+        List<ECKey> keys = new ArrayList<>(keyRing.keys());
+        keys.removeIf(old -> old.getExpirationTime().toInstant().isBefore(now));
+        keys.add(key);
+        keyRing = new KeyRing(keys.stream().sorted(Comparator.comparing(JWK::getNotBeforeTime)).toList());
+        publish(List.of(key));
+        LOG.info("Generated JWT signing key {} active from {}", key.getKeyID(), notBefore);
+    }
+
+    private void publish(List<ECKey> keys) {
+        try {
+            keys.forEach(key -> sharedKeys.fastPut(key.getKeyID(), key.toPublicJWK().toJSONString()));
+        } catch (RuntimeException e) {
+            // verifiers on other nodes cannot see the key until the next refresh publishes it
+            LOG.warn("Could not publish JWT signing keys: {}", e.getMessage());
+        }
+    }
+
+    private ECKey generate(Instant notBefore) {
+        Instant expiration = notBefore.plus(properties.getRotationInterval()).plus(properties.getPrePublish()).plus(maxTokenValidity);
+        try {
+            return new ECKeyGenerator(Curve.P_256)
+                .keyID(UUID.randomUUID().toString())
+                .keyUse(KeyUse.SIGNATURE)
+                .algorithm(JWSAlgorithm.ES256)
+                .issueTime(new Date())
+                .notBeforeTime(Date.from(notBefore))
+                .expirationTime(Date.from(expiration))
+                .generate();
+        } catch (JOSEException e) {
+            throw new IllegalStateException("Could not generate a JWT signing key", e);
+        }
+    }
+
+    // keys of nodes that are gone are only removed here, by whichever node sees them expired first
+    private void removeExpiredKeys(List<ECKey> keys, Instant now) {
+        keys.removeIf(key -> {
+            if (key.getExpirationTime() == null || !key.getExpirationTime().toInstant().isBefore(now)) {
+                return false;
+            }
+            sharedKeys.fastRemove(key.getKeyID());
+            LOG.info("Removed expired JWT signing key {}", key.getKeyID());
+            return true;
+        });
+    }
+
+    private static Optional<ECKey> parse(String json) {
+        try {
+            return Optional.of(ECKey.parse(json));
+        } catch (ParseException e) {
+            LOG.error("Ignoring unreadable JWT signing key: {}", e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    private static JWSVerifier createVerifier(ECKey key) {
+        try {
+            return new ECDSAVerifier(key.toPublicJWK());
+        } catch (JOSEException e) {
+            throw new IllegalStateException("Could not create a verifier for JWT key " + key.getKeyID(), e);
+        }
+    }
+
+    /**
+     * Immutable view of the key ring, ordered by the time each key starts signing.
+     */
+    private record KeyRing(List<ECKey> keys) {
+        ECKey active(Instant now) {
+            ECKey active = null;
+            for (ECKey key : keys) {
+                if (!key.getNotBeforeTime().toInstant().isAfter(now)) {
+                    active = key;
+                }
+            }
+            return active;
+        }
+
+        boolean rotationDue(Instant now, Duration rotationInterval, Duration prePublish) {
+            if (keys.isEmpty()) {
+                return true;
+            }
+            ECKey newest = keys.get(keys.size() - 1);
+            Instant newestNotBefore = newest.getNotBeforeTime().toInstant();
+            // a successor is published pre-publish ahead of the end of the newest key's signing period
+            return !newestNotBefore.plus(rotationInterval).minus(prePublish).isAfter(now);
+        }
+    }
+}
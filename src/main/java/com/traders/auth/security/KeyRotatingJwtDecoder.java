@@ -0,0 +1,102 @@
+package com.traders.auth.security;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JOSEObjectType;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSVerifier;
+import com.nimbusds.jwt.SignedJWT;
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.security.oauth2.core.OAuth2TokenValidator;
+import org.springframework.security.oauth2.core.OAuth2TokenValidatorResult;
+import org.springframework.security.oauth2.jwt.BadJwtException;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtException;
+import org.springframework.security.oauth2.jwt.JwtValidationException;
+import org.springframework.security.oauth2.jwt.MappedJwtClaimSetConverter;
+
+import java.text.ParseException;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * {@link JwtDecoder} verifying ES256 tokens against the {@link JwtKeyManager} key ring.
+ * <p>
+ * The verifier is looked up by the token's {@code kid} header, so verification is a map lookup plus one signature
+ * check. Tokens without a {@code kid} were signed with the former shared HMAC secret and are handed to the legacy
+ * decoder, when one is configured.
+ * <p>
+ * Each decoder accepts a single token type, taken from the {@code typ} header, so that a token minted for one purpose
+ * (such as a step-up assertion) cannot be presented as another.
+ */
+public class KeyRotatingJwtDecoder implements JwtDecoder {
+
+    private final JwtKeyManager keyManager;
+
+    private final JwtDecoder legacyDecoder;
+
+    private final OAuth2TokenValidator<Jwt> validator;
+
+    private final JOSEObjectType type;
+
+    private final Converter<Map<String, Object>, Map<String, Object>> claimSetConverter = MappedJwtClaimSetConverter.withDefaults(
+        Collections.emptyMap()
+    );
+
+    /**
+     * Decoder for access tokens, which carry no {@code typ} header or {@code JWT}.
+     */
+    public KeyRotatingJwtDecoder(JwtKeyManager keyManager, JwtDecoder legacyDecoder, OAuth2TokenValidator<Jwt> validator) {
+        this(keyManager, legacyDecoder, validator, JOSEObjectType.JWT);
+    }
+
+    public KeyRotatingJwtDecoder(JwtKeyManager keyManager, JwtDecoder legacyDecoder, OAuth2TokenValidator<Jwt> validator, JOSEObjectType type) {
+        this.keyManager = keyManager;
+        this.legacyDecoder = legacyDecoder;
+        this.validator = validator;
+        this.type = type;
+    }
+
+    @Override
+    public Jwt decode(String token) throws JwtException {
+        SignedJWT signedJwt;
+        try {
+            signedJwt = SignedJWT.parse(token);
+        } catch (ParseException e) {
+            throw new BadJwtException("Malformed token", e);
+        }
+        String kid = signedJwt.getHeader().getKeyID();
+        if (kid == null) {
+            if (legacyDecoder == null) {
+                throw new BadJwtException("Token has no key id");
+            }
+            return legacyDecoder.decode(token);
+        }
+        JOSEObjectType tokenType = signedJwt.getHeader().getType() == null ? JOSEObjectType.JWT : signedJwt.getHeader().getType();
+        if (!type.equals(tokenType)) {
+            throw new BadJwtException("Unexpected token type " + tokenType);
+        }
+        if (!JWSAlgorithm.ES256.equals(signedJwt.getHeader().getAlgorithm())) {
+            throw new BadJwtException("Unsupported signing algorithm " + signedJwt.getHeader().getAlgorithm());
+        }
+        JWSVerifier verifier = keyManager.verifier(kid).orElseThrow(() -> new BadJwtException("Unknown signing key " + kid));
+        Map<String, Object> claims;
+        try {
+            if (!signedJwt.verify(verifier)) {
+                throw new BadJwtException("Invalid signature");
+            }
+            claims = claimSetConverter.convert(signedJwt.getJWTClaimsSet().getClaims());
+        } catch (JOSEException | ParseException e) {
+            throw new BadJwtException("Could not verify token", e);
+        }
+        Jwt jwt = Jwt.withTokenValue(token)
+            .headers(headers -> headers.putAll(signedJwt.getHeader().toJSONObject()))
+            .claims(jwtClaims -> jwtClaims.putAll(claims))
+            .build();
+        OAuth2TokenValidatorResult result = validator.validate(jwt);
+        if (result.hasErrors()) {
+            throw new JwtValidationException(result.getErrors().iterator().next().getDescription(), result.getErrors());
+        }
+        return jwt;
+    }
+}
@@ -0,0 +1,212 @@
+package com.traders.auth.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.traders.auth.exception.LoginThrottledException;
+import com.traders.auth.management.jfr.RedisCallEvent;
+import com.traders.auth.properties.AuthProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.redisson.api.RScript;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.StringCodec;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.event.EventListener;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.authentication.event.AuthenticationFailureBadCredentialsEvent;
+import org.springframework.security.authentication.event.AuthenticationSuccessEvent;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Per-account brute-force protection: a token bucket on password attempts and a progressive lockout after repeated
+ * failures.
+ * <p>
+ * Both live in Redis so that they hold across nodes. {@link UserAuthenticationService} consults them before a password
+ * is verified; a locked account is reported as not {@code accountNonLocked}, so Spring Security rejects it without
+ * hashing anything. The lock state is cached per node for {@code lockout.local-cache-ttl}.
+ * <p>
+ * Accounts are identified by user id (see {@link #account(Long)}), so that attempts by login and by email share one
+ * bucket and one lockout; identifiers that match no user get theirs by the normalized identifier.
+ */
+@Component
+public class LoginAttemptService {
+
+    private static final Logger LOG = LoggerFactory.getLogger(LoginAttemptService.class);
+
+    private static final String KEY_PREFIX = "auth:lockout:";
+
+    /**
+     * Counts a failure; once {@code max-failures} are reached within the window, locks the account for a duration that
+     * doubles with every lock, up to the maximum.
+     *
+     * @return the lock duration in milliseconds, or {@code 0} if the account is not locked.
+     */
+    private static final String RECORD_FAILURE_SCRIPT = """
+        local failures = redis.call('INCR', KEYS[1])
+        if failures == 1 then
+            redis.call('PEXPIRE', KEYS[1], ARGV[2])
+        end
+        if failures < tonumber(ARGV[1]) then
+            return 0
+        end
+        redis.call('DEL', KEYS[1])
+        local locks = redis.call('INCR', KEYS[3])
+        redis.call('PEXPIRE', KEYS[3], tonumber(ARGV[4]) * 4)
+        local duration = math.min(tonumber(ARGV[3]) * math.pow(2, locks - 1), tonumber(ARGV[4]))
+        redis.call('SET', KEYS[2], '1', 'PX', duration)
+        return duration
+        """;
+
+    private final RedissonClient redissonClient;
+
+    private final RateLimiter rateLimiter;
+
+    // looked up when needed, as it depends on this service
+    private final ObjectProvider<UserAuthenticationService> userAuthenticationService;
+
+    private final AuthProperties.Throttling properties;
+
+    private final Cache<String, Boolean> lockedAccounts;
+
+    private final Counter lockouts;
+
+    private final Counter failedOpen;
+
+    public LoginAttemptService(
+        RedissonClient redissonClient,
+        RateLimiter rateLimiter,
+        ObjectProvider<UserAuthenticationService> userAuthenticationService,
+        AuthProperties authProperties,
+        MeterRegistry registry
+    ) {
+        this.redissonClient = redissonClient;
+        this.rateLimiter = rateLimiter;
+        this.userAuthenticationService = userAuthenticationService;
+        this.properties = authProperties.getThrottling();
+        this.lockedAccounts = Caffeine.newBuilder()
+            .maximumSize(properties.getLocalMaxBuckets())
+            .expireAfterWrite(properties.getLockout().getLocalCacheTtl())
+            .build();
+        this.lockouts = Counter.builder("auth.lockout.locked").register(registry);
+        this.failedOpen = RateLimiter.failedOpenCounter(registry, "lockout");
+    }
+
+    /**
+     * The account of a user.
+     */
+    public static String account(Long userId) {
+        return "user:" + userId;
+    }
+
+    /**
+     * The account of a login or email that matches no user.
+     */
+    public static String unknownAccount(String login) {
+        return "unknown:" + (login == null ? "" : login.toLowerCase(Locale.ENGLISH));
+    }
+
+    /**
+     * Takes a password attempt from the account's bucket.
+     *
+     * @param account see {@link #account(Long)}.
+     * @throws LoginThrottledException if the account has no attempts left for now.
+     */
+    public void checkAttempt(String account) {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        long wait = rateLimiter.tryAcquire("account:" + account, properties.getAccount());
+        if (wait > 0) {
+            throw new LoginThrottledException(wait);
+        }
+    }
+
+    /**
+     * Whether the account is currently locked after too many failed attempts.
+     *
+     * @param account see {@link #account(Long)}.
+     */
+    public boolean isLocked(String account) {
+        if (!properties.isEnabled()) {
+            return false;
+        }
+        return lockedAccounts.get(account, key -> {
+            try {
+                return RedisCallEvent.time("lockout.read", () -> redissonClient.getBucket(lockKey(key), StringCodec.INSTANCE).isExists());
+            } catch (RuntimeException e) {
+                failedOpen.increment();
+                LOG.warn("Could not read the lock state of {}: {}", key, e.getMessage());
+                return false;
+            }
+        });
+    }
+
+    @EventListener
+    public void onFailure(AuthenticationFailureBadCredentialsEvent event) {
+        if (!properties.isEnabled() || !(event.getAuthentication() instanceof UsernamePasswordAuthenticationToken)) {
+            return;
+        }
+        String login = event.getAuthentication().getName();
+        AuthProperties.Lockout lockout = properties.getLockout();
+        try {
+            String account = userAuthenticationService.getObject().findUserId(login).map(LoginAttemptService::account).orElseGet(() -> unknownAccount(login));
+            Long lockedFor = RedisCallEvent.time(
+                "lockout.failure",
+                () -> redissonClient
+                    .getScript(StringCodec.INSTANCE)
+                    .<Long>eval(
+                        RScript.Mode.READ_WRITE,
+                        RECORD_FAILURE_SCRIPT,
+                        RScript.ReturnType.INTEGER,
+                        List.<Object>of(failuresKey(account), lockKey(account), locksKey(account)),
+                        String.valueOf(lockout.getMaxFailures()),
+                        String.valueOf(lockout.getFailureWindow().toMillis()),
+                        String.valueOf(lockout.getBaseDuration().toMillis()),
+                        String.valueOf(lockout.getMaxDuration().toMillis())
+                    )
+            );
+            if (lockedFor != null && lockedFor > 0) {
+                lockedAccounts.put(account, true);
+                lockouts.increment();
+                LOG.warn("Locked account {} for {} ms after repeated failed logins", account, lockedFor);
+            }
+        } catch (RuntimeException e) {
+            LOG.warn("Could not record a failed login of {}: {}", login, e.getMessage());
+        }
+    }
+
+    @EventListener
+    public void onSuccess(AuthenticationSuccessEvent event) {
+        if (
+            !properties.isEnabled() ||
+            !(event.getAuthentication() instanceof UsernamePasswordAuthenticationToken) ||
+            !(event.getAuthentication().getPrincipal() instanceof CustomUserDetails user)
+        ) {
+            return;
+        }
+        String account = account(user.getId());
+        try {
+            RedisCallEvent.time("lockout.reset", () -> redissonClient.getKeys().delete(failuresKey(account), locksKey(account)));
+        } catch (RuntimeException e) {
+            LOG.warn("Could not reset failed logins of {}: {}", account, e.getMessage());
+        }
+    }
+
+    // keys of one account share a hash tag so the script also runs on a Redis cluster
+    private static String failuresKey(String account) {
+        return KEY_PREFIX + "{" + account + "}:failures";
+    }
+
+    private static String lockKey(String account) {
+        return KEY_PREFIX + "{" + account + "}:locked";
+    }
+
+    private static String locksKey(String account) {
+        return KEY_PREFIX + "{" + account + "}:locks";
+    }
+}
@@ -0,0 +1,129 @@
+package com.traders.auth.security;
+
+import com.traders.auth.exception.LoginThrottledException;
+import com.traders.auth.exception.PasswordHashingRejectedException;
+import com.traders.auth.exception.UserNotActivatedException;
+import com.traders.auth.properties.AuthProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.DisabledException;
+import org.springframework.security.authentication.LockedException;
+import org.springframework.stereotype.Component;
+
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Publishes the phases of each login as {@code auth.login.phase} timers, tagged by phase and outcome, and renders them
+ * as a {@code Server-Timing} header for a sample of logins.
+ * <p>
+ * Phase times are recorded even when zero, so that each phase's count equals the number of logins with that outcome
+ * and a phase that was skipped (e.g. no password check for a locked account) shows up as such.
+ */
+@Component
+public class LoginMetrics {
+
+    public static final String SERVER_TIMING_HEADER = "Server-Timing";
+
+    public enum Outcome {
+        SUCCESS,
+        BAD_CREDENTIALS,
+        NOT_ACTIVATED,
+        LOCKED,
+        THROTTLED,
+        ERROR;
+
+        private final String tag = name().toLowerCase(Locale.ENGLISH);
+
+        /**
+         * The outcome of a login that failed with the given exception.
+         */
+        public static Outcome of(Throwable failure) {
+            // the authentication provider wraps exceptions thrown while loading the user
+            for (Throwable cause = failure; cause != null; cause = cause.getCause()) {
+                if (cause instanceof LoginThrottledException || cause instanceof PasswordHashingRejectedException) {
+                    return THROTTLED;
+                }
+                if (cause instanceof LockedException) {
+                    return LOCKED;
+                }
+                if (cause instanceof UserNotActivatedException || cause instanceof DisabledException) {
+                    return NOT_ACTIVATED;
+                }
+                if (cause instanceof BadCredentialsException) {
+                    return BAD_CREDENTIALS;
+                }
+            }
+            return ERROR;
+        }
+    }
+
+    private static final LoginTrace.Phase[] PHASES = LoginTrace.Phase.values();
+
+    private static final Outcome[] OUTCOMES = Outcome.values();
+
+    private final Timer[][] phaseTimers = new Timer[OUTCOMES.length][PHASES.length];
+
+    private final Timer[] totalTimers = new Timer[OUTCOMES.length];
+
+    private final AuthProperties.LoginTiming properties;
+
+    public LoginMetrics(AuthProperties authProperties, MeterRegistry registry) {
+        this.properties = authProperties.getLoginTiming();
+        for (Outcome outcome : OUTCOMES) {
+            for (LoginTrace.Phase phase : PHASES) {
+                phaseTimers[outcome.ordinal()][phase.ordinal()] = Timer.builder("auth.login.phase")
+                    .description("Time spent in one phase of a login")
+                    .tag("phase", phase.tag())
+                    .tag("outcome", outcome.tag)
+                    .publishPercentileHistogram()
+                    .register(registry);
+            }
+            totalTimers[outcome.ordinal()] = Timer.builder("auth.login")
+                .description("Time to answer a login")
+                .tag("outcome", outcome.tag)
+                .publishPercentileHistogram()
+                .register(registry);
+        }
+    }
+
+    public void record(LoginTrace trace, Outcome outcome) {
+        Timer[] timers = phaseTimers[outcome.ordinal()];
+        for (LoginTrace.Phase phase : PHASES) {
+            timers[phase.ordinal()].record(trace.nanos(phase), TimeUnit.NANOSECONDS);
+        }
+        totalTimers[outcome.ordinal()].record(trace.totalNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Whether this login is sampled for a {@code Server-Timing} header.
+     */
+    public boolean sampleServerTiming() {
+        double rate = properties.getServerTimingSampleRate();
+        return rate > 0 && (rate >= 1 || ThreadLocalRandom.current().nextDouble() < rate);
+    }
+
+    /**
+     * The trace as a {@code Server-Timing} header value, e.g. {@code lookup;dur=0.412;desc="user lookup", ...}.
+     */
+    public static String serverTiming(LoginTrace trace) {
+        StringBuilder header = new StringBuilder(256);
+        for (LoginTrace.Phase phase : PHASES) {
+            long nanos = trace.nanos(phase);
+            if (nanos > 0) {
+                appendMetric(header, phase.tag(), nanos, phase.description());
+            }
+        }
+        appendMetric(header, "total", trace.totalNanos(), "login");
+        return header.toString();
+    }
+
+    private static void appendMetric(StringBuilder header, String name, long nanos, String description) {
+        if (!header.isEmpty()) {
+            header.append(", ");
+        }
+        header.append(name).append(";dur=").append(String.format(Locale.ENGLISH, "%.3f", nanos / 1_000_000.0)).append(";desc=\"").append(description).append('"');
+    }
+}
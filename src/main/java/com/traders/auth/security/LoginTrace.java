@@ -0,0 +1,138 @@
+package com.traders.auth.security;
+
+import com.traders.auth.management.jfr.JfrUsers;
+import com.traders.auth.management.jfr.LoginPhaseEvent;
+
+import java.util.function.Supplier;
+
+/**
+ * Time spent in each phase of the login running on the current thread.
+ * <p>
+ * The login endpoint opens a trace and the components it goes through wrap their work in {@link #time}; outside of a
+ * login no trace is open and {@code time} just runs the work. Phases nested in one another are counted in both.
+ * <p>
+ * Each timed phase is also a {@link LoginPhaseEvent} in a running JFR recording, carrying the hashed login.
+ */
+public final class LoginTrace implements AutoCloseable {
+
+    public enum Phase {
+        LOOKUP("lookup", "user lookup"),
+        CREDENTIALS("credentials", "password check"),
+        AUTHORITIES("authorities", "authority mapping"),
+        ENCRYPTION("encryption", "user id encryption"),
+        FCM("fcm", "FCM token update"),
+        JWT("jwt", "JWT encoding"),
+        REDIS("redis", "Redis write");
+
+        private final String tag;
+
+        private final String description;
+
+        Phase(String tag, String description) {
+            this.tag = tag;
+            this.description = description;
+        }
+
+        public String tag() {
+            return tag;
+        }
+
+        public String description() {
+            return description;
+        }
+    }
+
+    private static final ThreadLocal<LoginTrace> CURRENT = new ThreadLocal<>();
+
+    private static final Phase[] PHASES = Phase.values();
+
+    private final long[] nanos = new long[PHASES.length];
+
+    private final long start = System.nanoTime();
+
+    private final String login;
+
+    private String user;
+
+    private long end;
+
+    private boolean closed;
+
+    private LoginTrace(String login) {
+        this.login = login;
+    }
+
+    /**
+     * Opens a trace on the current thread; close it once the login is answered.
+     *
+     * @param login the login or email being authenticated.
+     */
+    public static LoginTrace start(String login) {
+        LoginTrace trace = new LoginTrace(login);
+        CURRENT.set(trace);
+        return trace;
+    }
+
+    public static <T> T time(Phase phase, Supplier<T> work) {
+        LoginTrace trace = CURRENT.get();
+        if (trace == null) {
+            return work.get();
+        }
+        LoginPhaseEvent event = new LoginPhaseEvent();
+        event.begin();
+        long start = System.nanoTime();
+        try {
+            return work.get();
+        } finally {
+            trace.nanos[phase.ordinal()] += System.nanoTime() - start;
+            event.end();
+            if (event.shouldCommit()) {
+                event.phase = phase.tag();
+                event.user = trace.user();
+                event.commit();
+            }
+        }
+    }
+
+    public static void time(Phase phase, Runnable work) {
+        time(
+            phase,
+            () -> {
+                work.run();
+                return null;
+            }
+        );
+    }
+
+    private String user() {
+        if (user == null) {
+            user = JfrUsers.hash(login);
+        }
+        return user;
+    }
+
+    /**
+     * Nanoseconds spent in the phase so far.
+     */
+    public long nanos(Phase phase) {
+        return nanos[phase.ordinal()];
+    }
+
+    /**
+     * Nanoseconds since the trace was opened, or until it was closed.
+     */
+    public long totalNanos() {
+        return (closed ? end : System.nanoTime()) - start;
+    }
+
+    @Override
+    public void close() {
+        if (!closed) {
+            end = System.nanoTime();
+            closed = true;
+        }
+        if (CURRENT.get() == this) {
+            CURRENT.remove();
+        }
+    }
+}
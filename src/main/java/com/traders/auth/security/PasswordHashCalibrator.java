@@ -0,0 +1,120 @@
+package com.traders.auth.security;
+
+import com.traders.auth.properties.AuthProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.security.crypto.argon2.Argon2PasswordEncoder;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.DelegatingPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Builds the application's {@link DelegatingPasswordEncoder}, measuring hash cost on the current host first.
+ * <p>
+ * New hashes are written as {@code {bcrypt}...} or {@code {argon2}...}. Legacy hashes without a prefix are verified as
+ * BCrypt and reported by {@link PasswordEncoder#upgradeEncoding(String)}, as are hashes whose algorithm or cost differs
+ * from the calibrated one, so they get rewritten on the next successful login.
+ */
+public class PasswordHashCalibrator {
+
+    private static final Logger LOG = LoggerFactory.getLogger(PasswordHashCalibrator.class);
+
+    static final String BCRYPT = "bcrypt";
+
+    static final String ARGON2 = "argon2";
+
+    private static final String SAMPLE_PASSWORD = "calibration-Passw0rd!";
+
+    private static final int SAMPLES = 3;
+
+    private final AuthProperties.PasswordHashing properties;
+
+    public PasswordHashCalibrator(AuthProperties.PasswordHashing properties) {
+        this.properties = properties;
+    }
+
+    public PasswordEncoder createPasswordEncoder() {
+        String idForEncode = properties.getAlgorithm().toLowerCase();
+        if (!BCRYPT.equals(idForEncode) && !ARGON2.equals(idForEncode)) {
+            throw new IllegalArgumentException("Unsupported password hashing algorithm: " + properties.getAlgorithm());
+        }
+        Map<String, PasswordEncoder> encoders = new HashMap<>();
+        encoders.put(BCRYPT, BCRYPT.equals(idForEncode) ? calibratedBcrypt() : new BCryptPasswordEncoder());
+        encoders.put(ARGON2, ARGON2.equals(idForEncode) ? calibratedArgon2() : defaultArgon2());
+
+        DelegatingPasswordEncoder passwordEncoder = new DelegatingPasswordEncoder(idForEncode, encoders);
+        // hashes written before the {id} prefix was introduced are plain BCrypt
+        passwordEncoder.setDefaultPasswordEncoderForMatches(new BCryptPasswordEncoder());
+        return passwordEncoder;
+    }
+
+    private BCryptPasswordEncoder calibratedBcrypt() {
+        AuthProperties.Bcrypt bcrypt = properties.getBcrypt();
+        if (bcrypt.getStrength() > 0) {
+            LOG.info("Using configured BCrypt strength {}", bcrypt.getStrength());
+            return new BCryptPasswordEncoder(bcrypt.getStrength());
+        }
+        int strength = bcrypt.getMinStrength();
+        double baseMillis = measure(new BCryptPasswordEncoder(strength));
+        // each BCrypt cost step doubles the work
+        while (strength < bcrypt.getMaxStrength() && baseMillis * 2 <= properties.getTargetMillis()) {
+            strength++;
+            baseMillis *= 2;
+        }
+        LOG.info("Calibrated BCrypt strength {} (~{} ms, target {} ms)", strength, Math.round(baseMillis), properties.getTargetMillis());
+        return new BCryptPasswordEncoder(strength);
+    }
+
+    private Argon2PasswordEncoder calibratedArgon2() {
+        AuthProperties.Argon2 argon2 = properties.getArgon2();
+        if (argon2.getIterations() > 0) {
+            LOG.info("Using configured Argon2id iterations {}", argon2.getIterations());
+            return argon2(argon2.getIterations());
+        }
+        double singleIterationMillis = measure(argon2(1));
+        int iterations = (int) Math.max(1, Math.min(argon2.getMaxIterations(), Math.floor(properties.getTargetMillis() / singleIterationMillis)));
+        LOG.info(
+            "Calibrated Argon2id with {} KiB, parallelism {}, {} iterations (~{} ms, target {} ms)",
+            argon2.getMemoryKib(),
+            argon2.getParallelism(),
+            iterations,
+            Math.round(singleIterationMillis * iterations),
+            properties.getTargetMillis()
+        );
+        return argon2(iterations);
+    }
+
+    private Argon2PasswordEncoder defaultArgon2() {
+        return argon2(Math.max(1, properties.getArgon2().getIterations()));
+    }
+
+    private Argon2PasswordEncoder argon2(int iterations) {
+        AuthProperties.Argon2 argon2 = properties.getArgon2();
+        return new Argon2PasswordEncoder(
+            argon2.getSaltLength(),
+            argon2.getHashLength(),
+            argon2.getParallelism(),
+            argon2.getMemoryKib(),
+            iterations
+        );
+    }
+
+    /**
+     * Median wall time of a few hashes, after one warm-up run.
+     */
+    private static double measure(PasswordEncoder encoder) {
+        encoder.encode(SAMPLE_PASSWORD);
+        double[] samples = new double[SAMPLES];
+        for (int i = 0; i < SAMPLES; i++) {
+            long start = System.nanoTime();
+            encoder.encode(SAMPLE_PASSWORD);
+            samples[i] = (System.nanoTime() - start) / 1_000_000d;
+        }
+        Arrays.sort(samples);
+        return samples[SAMPLES / 2];
+    }
+}
@@ -0,0 +1,168 @@
+package com.traders.auth.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.traders.auth.management.jfr.RedisCallEvent;
+import com.traders.auth.properties.AuthProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.redisson.api.RScript;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.StringCodec;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Token buckets shared by every node through Redis, with a per-node pre-filter.
+ * <p>
+ * The Redis bucket is authoritative and updated by a single Lua script, so concurrent nodes never over-admit. Each
+ * node also keeps a local bucket of the same size and remembers when Redis last said "wait": a burst against one key
+ * is rejected from memory until then, without a round trip. If Redis is unreachable the local bucket alone decides,
+ * which is counted in {@code auth.throttling.failed-open}.
+ */
+@Component
+public class RateLimiter {
+
+    private static final Logger LOG = LoggerFactory.getLogger(RateLimiter.class);
+
+    private static final String KEY_PREFIX = "auth:throttle:";
+
+    /**
+     * Refills the bucket for the time elapsed since the last call and takes one token.
+     *
+     * @return {@code 0} if a token was taken, otherwise the milliseconds until one is available.
+     */
+    private static final String TAKE_TOKEN_SCRIPT = """
+        local time = redis.call('TIME')
+        local now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000)
+        local capacity = tonumber(ARGV[1])
+        local period = tonumber(ARGV[2])
+        local state = redis.call('HMGET', KEYS[1], 'tokens', 'ts')
+        local tokens = tonumber(state[1]) or capacity
+        local ts = tonumber(state[2]) or now
+        tokens = math.min(capacity, tokens + math.max(0, now - ts) * capacity / period)
+        local retry = 0
+        if tokens >= 1 then
+            tokens = tokens - 1
+        else
+            retry = math.ceil((1 - tokens) * period / capacity)
+        end
+        redis.call('HSET', KEYS[1], 'tokens', tostring(tokens), 'ts', tostring(now))
+        redis.call('PEXPIRE', KEYS[1], period)
+        return retry
+        """;
+
+    private final RedissonClient redissonClient;
+
+    private final Cache<String, LocalBucket> localBuckets;
+
+    private final MeterRegistry registry;
+
+    public RateLimiter(RedissonClient redissonClient, AuthProperties authProperties, MeterRegistry registry) {
+        this.redissonClient = redissonClient;
+        this.registry = registry;
+        this.localBuckets = Caffeine.newBuilder()
+            .maximumSize(authProperties.getThrottling().getLocalMaxBuckets())
+            .expireAfterAccess(Duration.ofHours(1))
+            .build();
+    }
+
+    /**
+     * Takes one token from the bucket.
+     *
+     * @param key the bucket, e.g. {@code ip:10.0.0.1}.
+     * @param bucket capacity and refill period of the bucket.
+     * @return {@code 0} if the call is allowed, otherwise the milliseconds to wait before retrying.
+     */
+    public long tryAcquire(String key, AuthProperties.Bucket bucket) {
+        LocalBucket local = localBuckets.get(key, k -> new LocalBucket(bucket.getCapacity()));
+        long localWait = local.tryAcquire(bucket);
+        if (localWait > 0) {
+            count(key, "local");
+            return localWait;
+        }
+        long wait;
+        try {
+            Long result = RedisCallEvent.time(
+                "throttle",
+                () -> redissonClient
+                    .getScript(StringCodec.INSTANCE)
+                    .<Long>eval(
+                        RScript.Mode.READ_WRITE,
+                        TAKE_TOKEN_SCRIPT,
+                        RScript.ReturnType.INTEGER,
+                        List.<Object>of(KEY_PREFIX + key),
+                        String.valueOf(bucket.getCapacity()),
+                        String.valueOf(bucket.getPeriod().toMillis())
+                    )
+            );
+            wait = result == null ? 0 : result;
+        } catch (RuntimeException e) {
+            failedOpenCounter(registry, kind(key)).increment();
+            LOG.warn("Could not reach the shared rate limiter, using the local bucket only: {}", e.getMessage());
+            return 0;
+        }
+        if (wait > 0) {
+            local.blockFor(wait);
+            count(key, "shared");
+        }
+        return wait;
+    }
+
+    private void count(String key, String tier) {
+        registry.counter("auth.throttling.rejected", "bucket", kind(key), "tier", tier).increment();
+    }
+
+    private static String kind(String key) {
+        return key.substring(0, Math.max(0, key.indexOf(':')));
+    }
+
+    /**
+     * Counts the checks of a kind of bucket that let a call through because Redis could not be asked.
+     */
+    static Counter failedOpenCounter(MeterRegistry registry, String kind) {
+        return Counter.builder("auth.throttling.failed-open")
+            .description("Throttling checks decided without Redis, which could not be reached")
+            .tag("bucket", kind)
+            .register(registry);
+    }
+
+    /**
+     * Per-node token bucket, plus the time until which the shared bucket is known to be empty.
+     */
+    private static final class LocalBucket {
+
+        private double tokens;
+
+        private long refilledAt = System.nanoTime();
+
+        private long blockedUntil = System.nanoTime();
+
+        LocalBucket(long capacity) {
+            this.tokens = capacity;
+        }
+
+        synchronized long tryAcquire(AuthProperties.Bucket bucket) {
+            long now = System.nanoTime();
+            if (blockedUntil - now > 0) {
+                return Math.max(1, Duration.ofNanos(blockedUntil - now).toMillis());
+            }
+            double perNano = (double) bucket.getCapacity() / bucket.getPeriod().toNanos();
+            tokens = Math.min(bucket.getCapacity(), tokens + (now - refilledAt) * perNano);
+            refilledAt = now;
+            if (tokens >= 1) {
+                tokens--;
+                return 0;
+            }
+            return Math.max(1, (long) Math.ceil((1 - tokens) / perNano / 1_000_000));
+        }
+
+        synchronized void blockFor(long millis) {
+            blockedUntil = System.nanoTime() + Duration.ofMillis(millis).toNanos();
+        }
+    }
+}
@@ -0,0 +1,220 @@
+package com.traders.auth.security;
+
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
+import com.traders.auth.properties.AuthProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import jakarta.annotation.PostConstruct;
+import org.redisson.api.RMap;
+import org.redisson.api.RMapCache;
+import org.redisson.api.RTopic;
+import org.redisson.api.RedissonClient;
+import org.redisson.api.listener.BaseStatusListener;
+import org.redisson.client.codec.LongCodec;
+import org.redisson.client.codec.StringCodec;
+import org.redisson.codec.CompositeCodec;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.oauth2.core.OAuth2Error;
+import org.springframework.security.oauth2.core.OAuth2ErrorCodes;
+import org.springframework.security.oauth2.core.OAuth2TokenValidator;
+import org.springframework.security.oauth2.core.OAuth2TokenValidatorResult;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cluster-wide revocation of issued JWTs, checked locally on every request.
+ * <p>
+ * Two kinds of revocation exist: a single token by its {@code jti} (logout), and every token of a user issued before
+ * a given generation (password change, deactivation, deletion). Tokens carry the user's generation in the
+ * {@value #GENERATION_CLAIM} claim. Redis holds the authoritative state and every change is broadcast on a topic; each
+ * node mirrors it in memory, with a Bloom filter in front of the revoked {@code jti}s so that the common case costs no
+ * map lookup and no network call. The full state is reloaded whenever the topic subscription is (re)established.
+ */
+@Component
+public class TokenRevocationService implements OAuth2TokenValidator<Jwt> {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TokenRevocationService.class);
+
+    public static final String GENERATION_CLAIM = "gen";
+
+    private static final String GENERATIONS_MAP = "auth:revocation:generations";
+
+    private static final String TOKENS_MAP = "auth:revocation:tokens";
+
+    private static final String EVENTS_TOPIC = "auth:revocation:events";
+
+    private static final OAuth2Error REVOKED = new OAuth2Error(OAuth2ErrorCodes.INVALID_TOKEN, "The token has been revoked", null);
+
+    private final RMap<String, Long> sharedGenerations;
+
+    private final RMapCache<String, Long> sharedTokens;
+
+    private final RTopic events;
+
+    private final AuthProperties.Revocation properties;
+
+    private final Map<String, Long> generations = new ConcurrentHashMap<>();
+
+    // jti -> expiry in epoch seconds
+    private final Map<String, Long> revokedTokens = new ConcurrentHashMap<>();
+
+    private volatile BloomFilter<CharSequence> revokedTokenFilter;
+
+    private final Counter rejected;
+
+    public TokenRevocationService(RedissonClient redissonClient, AuthProperties authProperties, MeterRegistry registry) {
+        CompositeCodec codec = new CompositeCodec(StringCodec.INSTANCE, LongCodec.INSTANCE);
+        this.sharedGenerations = redissonClient.getMap(GENERATIONS_MAP, codec);
+        this.sharedTokens = redissonClient.getMapCache(TOKENS_MAP, codec);
+        this.events = redissonClient.getTopic(EVENTS_TOPIC, StringCodec.INSTANCE);
+        this.properties = authProperties.getRevocation();
+        this.revokedTokenFilter = newFilter();
+        this.rejected = Counter.builder("auth.tokens.revoked.rejected").register(registry);
+        registry.gaugeMapSize("auth.tokens.revoked", Tags.empty(), revokedTokens);
+        registry.gaugeMapSize("auth.tokens.revoked.users", Tags.empty(), generations);
+    }
+
+    @PostConstruct
+    public void init() {
+        events.addListener(String.class, (channel, message) -> onEvent(message));
+        events.addListener(new BaseStatusListener() {
+            @Override
+            public void onSubscribe(String channel) {
+                // events published while we were disconnected are lost, start again from the shared state
+                reload();
+            }
+        });
+        reload();
+    }
+
+    /**
+     * Generation to embed in a new token of the user.
+     */
+    public long currentGeneration(String login) {
+        return generations.getOrDefault(login, 0L);
+    }
+
+    /**
+     * Revokes a single token until it expires.
+     */
+    public void revokeToken(String jti, Instant expiresAt) {
+        long ttl = expiresAt.getEpochSecond() - Instant.now().getEpochSecond();
+        if (jti == null || ttl <= 0) {
+            return;
+        }
+        sharedTokens.fastPut(jti, expiresAt.getEpochSecond(), ttl, TimeUnit.SECONDS);
+        applyToken(jti, expiresAt.getEpochSecond());
+        events.publish("jti:" + expiresAt.getEpochSecond() + ":" + jti);
+    }
+
+    /**
+     * Revokes every token issued so far to the user, after the current transaction commits if there is one.
+     */
+    public void revokeUser(String login) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    bumpGeneration(login);
+                }
+            });
+        } else {
+            bumpGeneration(login);
+        }
+    }
+
+    @Override
+    public OAuth2TokenValidatorResult validate(Jwt token) {
+        String jti = token.getId();
+        if (jti != null && revokedTokenFilter.mightContain(jti) && revokedTokens.containsKey(jti)) {
+            rejected.increment();
+            return OAuth2TokenValidatorResult.failure(REVOKED);
+        }
+        Long current = token.getSubject() == null ? null : generations.get(token.getSubject());
+        if (current != null) {
+            Object claim = token.getClaim(GENERATION_CLAIM);
+            long generation = claim instanceof Number number ? number.longValue() : 0L;
+            if (generation < current) {
+                rejected.increment();
+                return OAuth2TokenValidatorResult.failure(REVOKED);
+            }
+        }
+        return OAuth2TokenValidatorResult.success();
+    }
+
+    /**
+     * Drops expired token revocations and rebuilds the Bloom filter without them.
+     */
+    @Scheduled(fixedDelayString = "${auth.revocation.purge-interval:PT1M}")
+    public synchronized void purge() {
+        long now = Instant.now().getEpochSecond();
+        revokedTokens.values().removeIf(expiry -> expiry <= now);
+        BloomFilter<CharSequence> filter = newFilter();
+        revokedTokens.keySet().forEach(filter::put);
+        revokedTokenFilter = filter;
+    }
+
+    private void bumpGeneration(String login) {
+        try {
+            long generation = sharedGenerations.addAndGet(login, 1L);
+            applyGeneration(login, generation);
+            events.publish("gen:" + generation + ":" + login);
+            LOG.debug("Revoked tokens of user {} up to generation {}", login, generation);
+        } catch (RuntimeException e) {
+            LOG.error("Could not revoke tokens of user {}: {}", login, e.getMessage());
+        }
+    }
+
+    private void onEvent(String message) {
+        String[] parts = message.split(":", 3);
+        if (parts.length != 3) {
+            LOG.warn("Ignoring malformed revocation event {}", message);
+            return;
+        }
+        long value = Long.parseLong(parts[1]);
+        if ("gen".equals(parts[0])) {
+            applyGeneration(parts[2], value);
+        } else if ("jti".equals(parts[0])) {
+            applyToken(parts[2], value);
+        }
+    }
+
+    private void applyGeneration(String login, long generation) {
+        generations.merge(login, generation, Math::max);
+    }
+
+    private synchronized void applyToken(String jti, long expiry) {
+        revokedTokens.put(jti, expiry);
+        revokedTokenFilter.put(jti);
+    }
+
+    private synchronized void reload() {
+        try {
+            sharedGenerations.readAllMap().forEach(this::applyGeneration);
+            sharedTokens.readAllMap().forEach(this::applyToken);
+            LOG.debug("Loaded {} revoked users and {} revoked tokens", generations.size(), revokedTokens.size());
+        } catch (RuntimeException e) {
+            LOG.error("Could not load token revocations: {}", e.getMessage());
+        }
+    }
+
+    private BloomFilter<CharSequence> newFilter() {
+        return BloomFilter.create(
+            Funnels.stringFunnel(StandardCharsets.UTF_8),
+            properties.getExpectedRevokedTokens(),
+            properties.getFalsePositiveProbability()
+        );
+    }
+}
@@ -1,7 +1,5 @@
 package com.traders.auth.security;
 
-import com.traders.auth.domain.Authority;
-import com.traders.auth.domain.User;
 import com.traders.auth.exception.UserNotActivatedException;
 import com.traders.auth.repository.UserRepository;
 import com.traders.common.utils.EncryptionUtil;
@@ -11,62 +9,150 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Component;
-import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
 import java.util.Locale;
+import java.util.Optional;
 
 /**
  * Authenticate a user from the database.
+ * <p>
+ * Lookups go through the {@link CredentialCache}, so repeated logins of the same user do not hit the database.
+ * <p>
+ * Also acts as the {@link UserDetailsPasswordService}, so Spring Security rewrites a password hash with the current
+ * algorithm and cost right after a successful login that used an outdated one.
  */
 @Component("userDetailsService")
-public class UserAuthenticationService implements UserDetailsService {
+public class UserAuthenticationService implements UserDetailsService, UserDetailsPasswordService {
 
     private static final Logger LOG = LoggerFactory.getLogger(UserAuthenticationService.class);
 
     private final UserRepository userRepository;
 
-    public UserAuthenticationService(UserRepository userRepository) {
+    private final CredentialCache credentialCache;
+
+    private final LoginAttemptService loginAttemptService;
+
+    public UserAuthenticationService(UserRepository userRepository, CredentialCache credentialCache, LoginAttemptService loginAttemptService) {
         this.userRepository = userRepository;
+        this.credentialCache = credentialCache;
+        this.loginAttemptService = loginAttemptService;
     }
 
+    /**
+     * Loads the user for a password check. Each call takes an attempt from the account's bucket, and an account locked
+     * after repeated failures comes back as locked, so neither case costs a password hash. Both are kept per user id,
+     * whether the login or the email was given.
+     */
     @Override
-    @Transactional(readOnly = true)
     public UserDetails loadUserByUsername(final String login) {
         LOG.debug("Authenticating {}", login);
+        CustomUserDetails user;
+        try {
+            user = loadActiveUser(login);
+        } catch (UsernameNotFoundException e) {
+            // probing for accounts takes attempts too
+            loginAttemptService.checkAttempt(LoginAttemptService.unknownAccount(login));
+            throw e;
+        }
+        String account = LoginAttemptService.account(user.getId());
+        loginAttemptService.checkAttempt(account);
+        if (loginAttemptService.isLocked(account)) {
+            return user.locked();
+        }
+        return user;
+    }
 
+    /**
+     * Loads an activated user without any throttling, for flows that do not verify a password.
+     *
+     * @param login the login or email of the user.
+     * @return the user details.
+     */
+    public CustomUserDetails loadActiveUser(final String login) {
         if (new EmailValidator().isValid(login, null)) {
-            return userRepository
-                .findOneWithAuthoritiesByEmailIgnoreCase(login)
-                .map(user -> createSpringSecurityUser(login, user))
+            Optional<CredentialSnapshot> credentials = LoginTrace.time(LoginTrace.Phase.LOOKUP, () -> findCredentialsByEmail(login));
+            return credentials
+                .map(snapshot -> createSpringSecurityUser(login, snapshot))
                 .orElseThrow(() -> new UsernameNotFoundException("User with email " + login + " not found in the database"));
         }
 
         String lowercaseLogin = login.toLowerCase(Locale.ENGLISH);
-        return userRepository
-            .findOneWithAuthoritiesByLogin(lowercaseLogin)
-            .map(user -> createSpringSecurityUser(lowercaseLogin, user))
+        return LoginTrace.time(LoginTrace.Phase.LOOKUP, () -> findCredentials(lowercaseLogin))
+            .map(credentials -> createSpringSecurityUser(lowercaseLogin, credentials))
             .orElseThrow(() -> new UsernameNotFoundException("User " + lowercaseLogin + " not found in the database"));
     }
-    @SneakyThrows
-    private CustomUserDetails createSpringSecurityUser(String lowercaseLogin, User user) {
-        if (!user.isActivated()) {
+
+    /**
+     * Cached credentials of the user with the given login.
+     *
+     * @param login the login of the user.
+     * @return the credentials, or empty if there is no such user.
+     */
+    public Optional<CredentialSnapshot> findCredentials(String login) {
+        String lowercaseLogin = login.toLowerCase(Locale.ENGLISH);
+        return credentialCache.get(
+            CredentialCache.loginKey(lowercaseLogin),
+            () -> userRepository.findOneWithAuthoritiesByLogin(lowercaseLogin).map(CredentialSnapshot::of)
+        );
+    }
+
+    private Optional<CredentialSnapshot> findCredentialsByEmail(String email) {
+        return credentialCache.get(CredentialCache.emailKey(email), () -> userRepository.findOneWithAuthoritiesByEmailIgnoreCase(email).map(CredentialSnapshot::of));
+    }
+
+    /**
+     * Id of the user with the given login or email, activated or not.
+     *
+     * @param login the login or email of the user.
+     * @return the id, or empty if there is no such user.
+     */
+    public Optional<Long> findUserId(String login) {
+        Optional<CredentialSnapshot> credentials = new EmailValidator().isValid(login, null) ? findCredentialsByEmail(login) : findCredentials(login);
+        return credentials.map(CredentialSnapshot::id);
+    }
+
+    @Override
+    public UserDetails updatePassword(UserDetails user, String newPassword) {
+        CustomUserDetails userDetails = (CustomUserDetails) user;
+        // only over the hash just verified: a password changed meanwhile must not be overwritten with the old one
+        if (userRepository.replacePassword(userDetails.getId(), userDetails.getPassword(), newPassword) == 0) {
+            LOG.debug("Password of user {} changed while logging in, hash not upgraded", user.getUsername());
+            return userDetails;
+        }
+        credentialCache.invalidate(user.getUsername(), findCredentials(user.getUsername()).map(CredentialSnapshot::email).orElse(null));
+        LOG.debug("Upgraded password hash for user {}", user.getUsername());
+        return userDetails.withPassword(newPassword);
+    }
+
+    CustomUserDetails createSpringSecurityUser(String lowercaseLogin, CredentialSnapshot credentials) {
+        if (!credentials.activated()) {
             throw new UserNotActivatedException("User " + lowercaseLogin + " was not activated");
         }
-        if(user.getDeleteFlag() == 1){
+        if(credentials.deleteFlag() == 1){
             throw new UserNotActivatedException("User "+ lowercaseLogin +" not found in the database");
         }
 
-        List<SimpleGrantedAuthority> grantedAuthorities = user
-            .getAuthorities()
-            .stream()
-            .map(Authority::getName)
-            .map(SimpleGrantedAuthority::new)
-            .toList();
-        var userDetails = new org.springframework.security.core.userdetails.User(user.getLogin(), user.getPassword(), grantedAuthorities);
-        return new CustomUserDetails(user.getId(),EncryptionUtil.encrypt(user.getId().toString()),userDetails);
+        List<SimpleGrantedAuthority> grantedAuthorities = LoginTrace.time(
+            LoginTrace.Phase.AUTHORITIES,
+            () -> credentials.authorities().stream().map(SimpleGrantedAuthority::new).toList()
+        );
+        var userDetails = new org.springframework.security.core.userdetails.User(credentials.login(), credentials.passwordHash(), grantedAuthorities);
+        return new CustomUserDetails(
+            credentials.id(),
+            LoginTrace.time(LoginTrace.Phase.ENCRYPTION, () -> encryptUserId(credentials.id())),
+            userDetails,
+            credentials.email(),
+            credentials.fcmToken()
+        );
+    }
+
+    @SneakyThrows
+    private static String encryptUserId(Long id) {
+        return EncryptionUtil.encrypt(id.toString());
     }
 }
@@ -0,0 +1,312 @@
+package com.traders.auth.service;
+
+import com.traders.auth.domain.Authority;
+import com.traders.auth.domain.DownlineAggregate;
+import com.traders.auth.domain.User;
+import com.traders.auth.properties.AuthProperties;
+import com.traders.auth.repository.DownlineAggregateDeltaRepository;
+import com.traders.auth.repository.DownlineAggregateRepository;
+import com.traders.auth.service.dto.DownlineSummaryDTO;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.redisson.api.RLock;
+import org.redisson.api.RedissonClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-user totals over the downline: users, active users, wallet balance and users per authority.
+ * <p>
+ * Changes to users, wallets and the hierarchy call the {@code record} methods in their own transaction, which insert
+ * one {@code downline_aggregate_delta} row per ancestor and metric. Every second, one node folds the pending deltas
+ * into the {@code downline_aggregate} rows, so summaries lag by up to the fold interval but cost a primary key lookup
+ * whatever the size of the downline.
+ * <p>
+ * A nightly rebuild recomputes every aggregate from the users, authorities and wallets, corrects the rows that drifted
+ * and counts them in {@code auth.downline.aggregate.drift}.
+ */
+@Service
+public class DownlineAggregateService {
+
+    private static final Logger LOG = LoggerFactory.getLogger(DownlineAggregateService.class);
+
+    public static final String USERS = "users";
+
+    public static final String ACTIVE_USERS = "active_users";
+
+    public static final String BALANCE = "balance";
+
+    public static final String AUTHORITY_PREFIX = "authority:";
+
+    /**
+     * Scale of the balance aggregates, whose wallet amounts are in minor units.
+     */
+    public static final int SCALE = 2;
+
+    private static final String LOCK = "auth:downline-aggregates:lock";
+
+    private final DownlineAggregateRepository aggregateRepository;
+
+    private final DownlineAggregateDeltaRepository deltaRepository;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final TransactionTemplate snapshotTransactionTemplate;
+
+    private final RLock lock;
+
+    private final AuthProperties.DownlineAggregates properties;
+
+    private final Counter drift;
+
+    public DownlineAggregateService(
+        DownlineAggregateRepository aggregateRepository,
+        DownlineAggregateDeltaRepository deltaRepository,
+        TransactionTemplate transactionTemplate,
+        RedissonClient redissonClient,
+        AuthProperties authProperties,
+        MeterRegistry registry
+    ) {
+        this.aggregateRepository = aggregateRepository;
+        this.deltaRepository = deltaRepository;
+        this.transactionTemplate = transactionTemplate;
+        // the rebuild compares figures read at different times, they must all come from one snapshot
+        this.snapshotTransactionTemplate = new TransactionTemplate(transactionTemplate.getTransactionManager());
+        this.snapshotTransactionTemplate.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        this.lock = redissonClient.getLock(LOCK);
+        this.properties = authProperties.getDownlineAggregates();
+        this.drift = Counter.builder("auth.downline.aggregate.drift")
+            .description("Downline aggregate rows the rebuild found out of step and corrected")
+            .register(registry);
+    }
+
+    /**
+     * Adds a new user, already linked under its parent, to the aggregates of its ancestors.
+     */
+    public void recordUserAdded(User user) {
+        Map<String, BigDecimal> deltas = new HashMap<>();
+        deltas.put(USERS, BigDecimal.ONE);
+        if (isActive(user)) {
+            deltas.put(ACTIVE_USERS, BigDecimal.ONE);
+        }
+        for (Authority authority : user.getAuthorities()) {
+            deltas.put(AUTHORITY_PREFIX + authority.getName(), BigDecimal.ONE);
+        }
+        record(user.getId(), deltas, 1);
+    }
+
+    /**
+     * Adds the user and its whole downline to the aggregates of the user's current ancestors; after it was moved under
+     * a new parent.
+     */
+    public void recordSubtreeAttached(Long userId) {
+        record(userId, subtreeTotals(userId), 1);
+    }
+
+    /**
+     * Takes the user and its whole downline out of the aggregates of the user's current ancestors; before it is moved
+     * or deleted.
+     */
+    public void recordSubtreeDetached(Long userId) {
+        record(userId, subtreeTotals(userId), -1);
+    }
+
+    public void recordUserChanged(Long userId, boolean wasActive, boolean isActive, Collection<String> oldAuthorities, Collection<String> newAuthorities) {
+        Map<String, BigDecimal> deltas = new HashMap<>();
+        if (wasActive != isActive) {
+            deltas.put(ACTIVE_USERS, isActive ? BigDecimal.ONE : BigDecimal.ONE.negate());
+        }
+        for (String authority : oldAuthorities) {
+            if (!newAuthorities.contains(authority)) {
+                deltas.put(AUTHORITY_PREFIX + authority, BigDecimal.ONE.negate());
+            }
+        }
+        for (String authority : newAuthorities) {
+            if (!oldAuthorities.contains(authority)) {
+                deltas.put(AUTHORITY_PREFIX + authority, BigDecimal.ONE);
+            }
+        }
+        record(userId, deltas, 1);
+    }
+
+    public void recordBalanceChanged(Long userId, BigDecimal delta) {
+        record(userId, Map.of(BALANCE, delta), 1);
+    }
+
+    public static boolean isActive(User user) {
+        return user.isActivated() && user.getDeleteFlag() == 0;
+    }
+
+    private void record(Long userId, Map<String, BigDecimal> deltas, int sign) {
+        deltas.forEach((metric, delta) -> {
+            if (delta.signum() != 0) {
+                deltaRepository.insertForAncestors(userId, metric, sign < 0 ? delta.negate() : delta);
+            }
+        });
+    }
+
+    private Map<String, BigDecimal> subtreeTotals(Long userId) {
+        Map<String, BigDecimal> totals = new HashMap<>();
+        totals.put(USERS, BigDecimal.valueOf(aggregateRepository.countSubtreeUsers(userId)));
+        totals.put(ACTIVE_USERS, BigDecimal.valueOf(aggregateRepository.countSubtreeActiveUsers(userId)));
+        totals.put(BALANCE, balance(aggregateRepository.sumSubtreeBalance(userId)));
+        for (Object[] row : aggregateRepository.countSubtreeUsersByAuthority(userId)) {
+            totals.put(AUTHORITY_PREFIX + row[0], BigDecimal.valueOf(((Number) row[1]).longValue()));
+        }
+        return totals;
+    }
+
+    // wallet balances are in minor units
+    private static BigDecimal balance(Number balanceMinor) {
+        return BigDecimal.valueOf(balanceMinor == null ? 0 : balanceMinor.longValue(), SCALE);
+    }
+
+    /**
+     * The aggregates of the user's downline as of the last fold.
+     */
+    public DownlineSummaryDTO summary(Long userId) {
+        long users = 0;
+        long activeUsers = 0;
+        BigDecimal totalBalance = BigDecimal.ZERO.setScale(SCALE);
+        Map<String, Long> usersByAuthority = new TreeMap<>();
+        for (DownlineAggregate aggregate : aggregateRepository.findByAncestorId(userId)) {
+            String metric = aggregate.getMetric();
+            if (metric.equals(USERS)) {
+                users = aggregate.getAmount().longValue();
+            } else if (metric.equals(ACTIVE_USERS)) {
+                activeUsers = aggregate.getAmount().longValue();
+            } else if (metric.equals(BALANCE)) {
+                totalBalance = aggregate.getAmount();
+            } else if (metric.startsWith(AUTHORITY_PREFIX) && aggregate.getAmount().signum() > 0) {
+                usersByAuthority.put(metric.substring(AUTHORITY_PREFIX.length()), aggregate.getAmount().longValue());
+            }
+        }
+        return new DownlineSummaryDTO(userId, users, activeUsers, totalBalance, usersByAuthority);
+    }
+
+    @Scheduled(fixedDelayString = "${auth.downline-aggregates.fold-interval:PT1S}")
+    public void fold() {
+        if (!lock.tryLock()) {
+            return;
+        }
+        try {
+            int folded;
+            do {
+                folded = transactionTemplate.execute(status -> foldBatch());
+            } while (folded == properties.getFoldBatchSize());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private int foldBatch() {
+        // ids rather than a range: deltas committed late with a lower id must not be deleted unread
+        List<Long> ids = deltaRepository.findIds(Limit.of(properties.getFoldBatchSize()));
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        for (Object[] row : deltaRepository.sumByAncestorAndMetric(ids)) {
+            Long ancestorId = (Long) row[0];
+            String metric = (String) row[1];
+            BigDecimal delta = (BigDecimal) row[2];
+            if (aggregateRepository.addToAmount(ancestorId, metric, delta) == 0) {
+                aggregateRepository.save(new DownlineAggregate(ancestorId, metric, delta));
+            }
+        }
+        deltaRepository.deleteAllByIdInBatch(ids);
+        return ids.size();
+    }
+
+    /**
+     * Recomputes every aggregate and corrects the rows that are out of step, taking the deltas still pending into
+     * account.
+     *
+     * @return the number of rows corrected.
+     */
+    @Scheduled(cron = "${auth.downline-aggregates.rebuild-cron:0 30 3 * * ?}")
+    public long rebuild() {
+        if (!tryLockForRebuild()) {
+            LOG.warn("Skipping the downline aggregate rebuild, the lock was not free within {}", properties.getRebuildLockWait());
+            return 0;
+        }
+        try {
+            long start = System.nanoTime();
+            long corrected = snapshotTransactionTemplate.execute(status -> correct());
+            drift.increment(corrected);
+            if (corrected > 0) {
+                LOG.warn("Downline aggregate rebuild corrected {} rows in {} ms", corrected, (System.nanoTime() - start) / 1_000_000);
+            } else {
+                LOG.info("Downline aggregates consistent, checked in {} ms", (System.nanoTime() - start) / 1_000_000);
+            }
+            return corrected;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // the fold holds the lock for a moment every second, so waiting for it rather than trying once
+    private boolean tryLockForRebuild() {
+        try {
+            return lock.tryLock(properties.getRebuildLockWait().toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private long correct() {
+        Map<DownlineAggregate.Key, BigDecimal> expected = new LinkedHashMap<>();
+        aggregateRepository.countDownlineUsers().forEach(row -> expected.put(key(row[0], USERS), count(row[1])));
+        aggregateRepository.countDownlineActiveUsers().forEach(row -> expected.put(key(row[0], ACTIVE_USERS), count(row[1])));
+        aggregateRepository.sumDownlineBalances().forEach(row -> expected.put(key(row[0], BALANCE), balance((Number) row[1])));
+        aggregateRepository.countDownlineUsersByAuthority().forEach(row -> expected.put(key(row[0], AUTHORITY_PREFIX + row[1]), count(row[2])));
+        // pending deltas are already part of the users and wallets read above, and still to be folded
+        for (Object[] row : deltaRepository.sumPending()) {
+            expected.merge(key(row[0], (String) row[1]), ((BigDecimal) row[2]).negate(), BigDecimal::add);
+        }
+
+        long corrected = 0;
+        Set<DownlineAggregate.Key> seen = new HashSet<>();
+        for (DownlineAggregate aggregate : aggregateRepository.findAll()) {
+            DownlineAggregate.Key key = new DownlineAggregate.Key(aggregate.getAncestorId(), aggregate.getMetric());
+            seen.add(key);
+            BigDecimal target = expected.getOrDefault(key, BigDecimal.ZERO);
+            if (aggregate.getAmount().compareTo(target) != 0) {
+                LOG.debug("Downline aggregate {} of user {} is {}, expected {}", key.getMetric(), key.getAncestorId(), aggregate.getAmount(), target);
+                aggregate.setAmount(target);
+                corrected++;
+            }
+        }
+        for (Map.Entry<DownlineAggregate.Key, BigDecimal> entry : expected.entrySet()) {
+            if (!seen.contains(entry.getKey()) && entry.getValue().signum() != 0) {
+                aggregateRepository.save(new DownlineAggregate(entry.getKey().getAncestorId(), entry.getKey().getMetric(), entry.getValue()));
+                corrected++;
+            }
+        }
+        return corrected;
+    }
+
+    private static DownlineAggregate.Key key(Object ancestorId, String metric) {
+        return new DownlineAggregate.Key((Long) ancestorId, metric);
+    }
+
+    private static BigDecimal count(Object count) {
+        return BigDecimal.valueOf(((Number) count).longValue());
+    }
+}
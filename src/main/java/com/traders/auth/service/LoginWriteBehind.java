@@ -0,0 +1,202 @@
+package com.traders.auth.service;
+
+import com.traders.auth.domain.User;
+import com.traders.auth.properties.AuthProperties;
+import com.traders.auth.security.CredentialCache;
+import com.traders.auth.security.CustomUserDetails;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.Cache;
+import jakarta.persistence.EntityManagerFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Collects the row updates a login causes (FCM token, last login time) and writes them behind the request.
+ * <p>
+ * Updates are coalesced per user, so a user logging in several times between two flushes costs one row update, and
+ * an FCM token equal to the one loaded during authentication is not written at all. Pending updates are flushed as
+ * JDBC batches on a timer and on shutdown; a node crash loses at most one interval of last-login times. The written
+ * users are evicted from the second-level cache, which does not see JDBC writes.
+ * <p>
+ * An update stays pending until it is written and the cached credentials are invalidated, so that the FCM token of a
+ * login is never compared with a snapshot older than the last write. A batch that fails stays pending, under any newer
+ * login of the same users, and is retried with the next flush; updates still failing after {@code max-attempts}
+ * flushes are dropped and counted.
+ */
+@Component
+public class LoginWriteBehind {
+
+    private static final Logger LOG = LoggerFactory.getLogger(LoginWriteBehind.class);
+
+    private static final String UPDATE_FCM_TOKEN_AND_LAST_LOGIN = "UPDATE user SET fcm_token = ?, last_login_at = ? WHERE id = ?";
+
+    private static final String UPDATE_LAST_LOGIN = "UPDATE user SET last_login_at = ? WHERE id = ?";
+
+    private final Map<Long, PendingLogin> pending = new ConcurrentHashMap<>();
+
+    private final Lock flushing = new ReentrantLock();
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final CredentialCache credentialCache;
+
+    private final Cache secondLevelCache;
+
+    private final AuthProperties.LoginWriteBehind properties;
+
+    private final Counter unchangedFcmTokens;
+
+    private final Counter dropped;
+
+    private final Timer flushTime;
+
+    public LoginWriteBehind(
+        JdbcTemplate jdbcTemplate,
+        TransactionTemplate transactionTemplate,
+        CredentialCache credentialCache,
+        EntityManagerFactory entityManagerFactory,
+        AuthProperties authProperties,
+        MeterRegistry registry
+    ) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.credentialCache = credentialCache;
+        this.secondLevelCache = entityManagerFactory.getCache();
+        this.properties = authProperties.getLoginWriteBehind();
+        this.unchangedFcmTokens = Counter.builder("auth.login.write-behind.fcm.unchanged").register(registry);
+        this.dropped = Counter.builder("auth.login.write-behind.dropped")
+            .description("Login updates given up on after failing max-attempts flushes")
+            .register(registry);
+        this.flushTime = Timer.builder("auth.login.write-behind.flush").register(registry);
+        registry.gaugeMapSize("auth.login.write-behind.pending", List.of(), pending);
+    }
+
+    /**
+     * Records a successful login.
+     *
+     * @param user the authenticated user, as loaded for this login.
+     * @param fcmToken the FCM token sent with the login, or {@code null} to keep the stored one.
+     */
+    public void recordLogin(CustomUserDetails user, String fcmToken) {
+        Instant now = Instant.now();
+        pending.compute(user.getId(), (id, previous) -> {
+            // compare against what the database will hold once pending writes are flushed
+            String stored = previous != null && previous.fcmToken() != null ? previous.fcmToken() : user.getFcmToken();
+            String newToken = fcmToken == null || fcmToken.equals(stored) ? null : fcmToken;
+            if (fcmToken != null && newToken == null) {
+                unchangedFcmTokens.increment();
+            }
+            if (previous == null) {
+                return new PendingLogin(user.getUsername(), user.getEmail(), newToken, now, 0);
+            }
+            return new PendingLogin(previous.login(), previous.email(), newToken != null ? newToken : previous.fcmToken(), now, previous.attempts());
+        });
+        if (!properties.isEnabled()) {
+            flush();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${auth.login-write-behind.flush-interval:PT1S}")
+    public void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        flushing.lock();
+        try {
+            flushPending();
+        } finally {
+            flushing.unlock();
+        }
+    }
+
+    private void flushPending() {
+        // the updates stay pending until written and their cached credentials invalidated: until then a login
+        // compares its FCM token against them, as the snapshot it loaded may still carry the token they replace
+        Map<Long, PendingLogin> flushed = new HashMap<>(pending);
+        if (flushed.isEmpty()) {
+            return;
+        }
+        List<Object[]> tokenUpdates = new ArrayList<>();
+        List<Object[]> loginUpdates = new ArrayList<>();
+        List<PendingLogin> changedTokens = new ArrayList<>();
+        flushed.forEach((id, login) -> {
+            Timestamp lastLoginAt = Timestamp.from(login.lastLoginAt());
+            if (login.fcmToken() != null) {
+                tokenUpdates.add(new Object[] { login.fcmToken(), lastLoginAt, id });
+                changedTokens.add(login);
+            } else {
+                loginUpdates.add(new Object[] { lastLoginAt, id });
+            }
+        });
+        flushTime.record(() -> {
+            try {
+                // the pool hands out connections with auto-commit off
+                transactionTemplate.executeWithoutResult(status -> {
+                    batchUpdate(UPDATE_FCM_TOKEN_AND_LAST_LOGIN, tokenUpdates);
+                    batchUpdate(UPDATE_LAST_LOGIN, loginUpdates);
+                });
+                flushed.keySet().forEach(id -> secondLevelCache.evict(User.class, id));
+                // cached credentials still carry the previous FCM token
+                changedTokens.forEach(login -> credentialCache.invalidate(login.login(), login.email()));
+                // a login recorded meanwhile replaced its entry, which is written with the next flush
+                flushed.forEach(pending::remove);
+            } catch (RuntimeException e) {
+                LOG.error("Could not write {} login updates: {}", flushed.size(), e.getMessage());
+                retry(flushed.keySet());
+            }
+        });
+    }
+
+    private void retry(Collection<Long> failed) {
+        int givenUp = 0;
+        for (Long id : failed) {
+            // a login recorded since is newer and still carries any token change, it takes over the attempts
+            PendingLogin retry = pending.computeIfPresent(id, (key, login) ->
+                login.attempts() + 1 >= properties.getMaxAttempts()
+                    ? null
+                    : new PendingLogin(login.login(), login.email(), login.fcmToken(), login.lastLoginAt(), login.attempts() + 1)
+            );
+            if (retry == null) {
+                givenUp++;
+            }
+        }
+        if (givenUp > 0) {
+            dropped.increment(givenUp);
+            LOG.error("Dropped {} login updates after {} failed attempts", givenUp, properties.getMaxAttempts());
+        }
+    }
+
+    private void batchUpdate(String sql, List<Object[]> arguments) {
+        int batchSize = properties.getMaxBatchSize();
+        for (int from = 0; from < arguments.size(); from += batchSize) {
+            jdbcTemplate.batchUpdate(sql, arguments.subList(from, Math.min(from + batchSize, arguments.size())));
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    private record PendingLogin(String login, String email, String fcmToken, Instant lastLoginAt, int attempts) {}
+}
@@ -0,0 +1,194 @@
+package com.traders.auth.service;
+
+import com.traders.auth.domain.OutboxEvent;
+import com.traders.auth.domain.User;
+import com.traders.auth.properties.AuthProperties;
+import com.traders.auth.repository.OutboxEventRepository;
+import com.traders.auth.repository.UserRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Transactional outbox: side effects of a change are written as {@link OutboxEvent}s in the transaction of the
+ * change, and carried out after it commits by a dispatcher polling on every node.
+ * <p>
+ * A poll claims the due events with {@code SELECT ... FOR UPDATE SKIP LOCKED}, so nodes never claim the same events,
+ * and pushes them back by the claim timeout, so that the events of a node dying mid-batch come round again. The events
+ * of each type are then carried out together in one transaction that also deletes them. If that fails, they are
+ * retried one by one to isolate the failing event, which is rescheduled with an exponential backoff and marked
+ * {@link OutboxEvent.Status#FAILED} after the last attempt.
+ * <p>
+ * Delivery is at least once: every handler must tolerate running again for an event it already carried out, including
+ * on another node at the same time once a batch outlives the claim timeout. A failure showing that the other node got
+ * there first, such as a second wallet for the user, counts as done.
+ */
+@Service
+public class OutboxService {
+
+    private static final Logger LOG = LoggerFactory.getLogger(OutboxService.class);
+
+    private final OutboxEventRepository outboxEventRepository;
+
+    private final UserRepository userRepository;
+
+    private final WalletService walletService;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final AuthProperties.Outbox properties;
+
+    private final Map<OutboxEvent.Type, Counter> done = new EnumMap<>(OutboxEvent.Type.class);
+
+    private final Map<OutboxEvent.Type, Counter> retried = new EnumMap<>(OutboxEvent.Type.class);
+
+    private final Map<OutboxEvent.Type, Counter> failed = new EnumMap<>(OutboxEvent.Type.class);
+
+    public OutboxService(
+        OutboxEventRepository outboxEventRepository,
+        UserRepository userRepository,
+        WalletService walletService,
+        TransactionTemplate transactionTemplate,
+        AuthProperties authProperties,
+        MeterRegistry registry
+    ) {
+        this.outboxEventRepository = outboxEventRepository;
+        this.userRepository = userRepository;
+        this.walletService = walletService;
+        this.transactionTemplate = transactionTemplate;
+        this.properties = authProperties.getOutbox();
+        for (OutboxEvent.Type type : OutboxEvent.Type.values()) {
+            done.put(type, eventCounter(registry, type, "done"));
+            retried.put(type, eventCounter(registry, type, "retried"));
+            failed.put(type, eventCounter(registry, type, "failed"));
+        }
+    }
+
+    private static Counter eventCounter(MeterRegistry registry, OutboxEvent.Type type, String result) {
+        return Counter.builder("auth.outbox.events")
+            .description("Outbox events carried out, rescheduled after an error, or given up on")
+            .tag("type", type.name().toLowerCase(Locale.ENGLISH))
+            .tag("result", result)
+            .register(registry);
+    }
+
+    /**
+     * Records a side effect to carry out once the current transaction commits; must be called inside it.
+     */
+    public void enqueue(OutboxEvent.Type type, Long aggregateId) {
+        outboxEventRepository.save(OutboxEvent.of(type, aggregateId, Instant.now()));
+    }
+
+    /**
+     * Claims and carries out one batch; a backlog is worked off a batch per poll, leaving the scheduler's thread to the
+     * other jobs in between.
+     */
+    @Scheduled(fixedDelayString = "${auth.outbox.poll-interval:PT1S}")
+    public void dispatch() {
+        claim()
+            .stream()
+            .collect(Collectors.groupingBy(OutboxEvent::getType, LinkedHashMap::new, Collectors.toList()))
+            .forEach(this::carryOut);
+    }
+
+    private List<OutboxEvent> claim() {
+        return transactionTemplate.execute(status -> {
+            Instant now = Instant.now();
+            List<OutboxEvent> events = outboxEventRepository.findByStatusAndAvailableAtLessThanEqualOrderById(
+                OutboxEvent.Status.PENDING,
+                now,
+                Limit.of(properties.getBatchSize())
+            );
+            events.forEach(event -> event.setAvailableAt(now.plus(properties.getClaimTimeout())));
+            return events;
+        });
+    }
+
+    private void carryOut(OutboxEvent.Type type, List<OutboxEvent> events) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> handle(type, events));
+            done.get(type).increment(events.size());
+        } catch (RuntimeException batchFailure) {
+            if (events.size() == 1) {
+                settleFailure(events.get(0), batchFailure);
+                return;
+            }
+            LOG.debug("Batch of {} {} events failed, retrying them one by one: {}", events.size(), type, batchFailure.getMessage());
+            for (OutboxEvent event : events) {
+                try {
+                    transactionTemplate.executeWithoutResult(status -> handle(type, List.of(event)));
+                    done.get(type).increment();
+                } catch (RuntimeException e) {
+                    settleFailure(event, e);
+                }
+            }
+        }
+    }
+
+    private void settleFailure(OutboxEvent event, RuntimeException failure) {
+        if (!carriedOutElsewhere(event.getType(), failure)) {
+            recordFailure(event, failure);
+            return;
+        }
+        transactionTemplate.executeWithoutResult(status -> outboxEventRepository.deleteAllByIdInBatch(List.of(event.getId())));
+        done.get(event.getType()).increment();
+        LOG.debug("Outbox event {} ({} of {}) was carried out by another node", event.getId(), event.getType(), event.getAggregateId());
+    }
+
+    // another node claimed the event again while this one held it past the claim timeout, and got there first
+    private static boolean carriedOutElsewhere(OutboxEvent.Type type, RuntimeException failure) {
+        return switch (type) {
+            case USER_WALLET -> WalletService.isDuplicateWallet(failure);
+        };
+    }
+
+    private void handle(OutboxEvent.Type type, List<OutboxEvent> events) {
+        // users deleted in the meantime have nothing left to do
+        List<User> users = userRepository.findAllById(events.stream().map(OutboxEvent::getAggregateId).toList());
+        switch (type) {
+            case USER_WALLET -> walletService.createUserWallets(users);
+        }
+        outboxEventRepository.deleteAllByIdInBatch(events.stream().map(OutboxEvent::getId).toList());
+    }
+
+    private void recordFailure(OutboxEvent event, RuntimeException failure) {
+        String error = failure.getClass().getSimpleName() + ": " + failure.getMessage();
+        transactionTemplate.executeWithoutResult(status ->
+            outboxEventRepository
+                .findById(event.getId())
+                .ifPresent(current -> {
+                    int attempts = current.getAttempts() + 1;
+                    current.setAttempts(attempts);
+                    current.setLastError(error.length() > 512 ? error.substring(0, 512) : error);
+                    if (attempts >= properties.getMaxAttempts()) {
+                        current.setStatus(OutboxEvent.Status.FAILED);
+                        failed.get(current.getType()).increment();
+                        LOG.error("Giving up on outbox event {} ({} of {}) after {} attempts: {}", current.getId(), current.getType(), current.getAggregateId(), attempts, error);
+                    } else {
+                        current.setAvailableAt(Instant.now().plus(retryDelay(attempts)));
+                        retried.get(current.getType()).increment();
+                        LOG.warn("Outbox event {} ({} of {}) failed, attempt {}: {}", current.getId(), current.getType(), current.getAggregateId(), attempts, error);
+                    }
+                })
+        );
+    }
+
+    private Duration retryDelay(int attempts) {
+        Duration delay = properties.getRetryDelay().multipliedBy(1L << Math.min(attempts - 1, 20));
+        return delay.compareTo(properties.getMaxRetryDelay()) > 0 ? properties.getMaxRetryDelay() : delay;
+    }
+}
@@ -0,0 +1,165 @@
+package com.traders.auth.service;
+
+import com.traders.auth.management.jfr.RedisCallEvent;
+import com.traders.auth.properties.AuthProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.redisson.api.BatchOptions;
+import org.redisson.api.RBatch;
+import org.redisson.api.RedissonClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Coalesces Redis map-cache writes from concurrent requests into pipelined {@link RBatch}es.
+ * <p>
+ * A single flusher thread collects writes until {@code max-batch-size} entries are pending or {@code flush-interval}
+ * has passed since the first one, then sends them in one round trip. Depending on {@code durability} the caller either
+ * returns immediately or waits until its batch has been acknowledged. When the queue is full the write is done inline,
+ * so back pressure never drops a write. Pending writes are flushed on shutdown, and writes made after it are done
+ * inline.
+ * <p>
+ * Batched writes go to {@code getMapCache(cacheName)} with the client's default codec, the same map and encoding as the
+ * inline write and as the common {@code RedisService} custom caches, so readers of those caches see them unchanged.
+ */
+@Component
+public class RedisBatchWriter {
+
+    private static final Logger LOG = LoggerFactory.getLogger(RedisBatchWriter.class);
+
+    private final RedissonClient redissonClient;
+
+    private final AuthProperties.RedisBatch properties;
+
+    private final BlockingQueue<PendingWrite> queue;
+
+    private final Thread flusher;
+
+    private volatile boolean running = true;
+
+    private final DistributionSummary batchSize;
+
+    private final Timer flushTime;
+
+    private final Counter failures;
+
+    private final Counter inlineWrites;
+
+    public RedisBatchWriter(RedissonClient redissonClient, AuthProperties authProperties, MeterRegistry registry) {
+        this.redissonClient = redissonClient;
+        this.properties = authProperties.getRedisBatch();
+        this.queue = new LinkedBlockingQueue<>(properties.getQueueCapacity());
+        this.batchSize = DistributionSummary.builder("auth.redis.batch.size").publishPercentileHistogram().register(registry);
+        this.flushTime = Timer.builder("auth.redis.batch.flush").publishPercentileHistogram().register(registry);
+        this.failures = Counter.builder("auth.redis.batch.failures").register(registry);
+        this.inlineWrites = Counter.builder("auth.redis.batch.inline").register(registry);
+        registry.gaugeCollectionSize("auth.redis.batch.queue", List.of(), queue);
+        this.flusher = new Thread(this::run, "redis-batch-writer");
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    /**
+     * Queues {@code cacheName[key] = value} with the given time to live.
+     */
+    public void saveToCustomCacheWithTTL(String cacheName, String key, Object value, long ttl, TimeUnit unit) {
+        PendingWrite write = new PendingWrite(cacheName, key, value, ttl, unit, new CompletableFuture<>());
+        // a write queued while shutdown drains the queue might be missed by it, so one that is still queued is taken back
+        if (!properties.isEnabled() || !running || !queue.offer(write) || (!running && queue.remove(write))) {
+            writeInline(write);
+            return;
+        }
+        if (properties.getDurability() == AuthProperties.RedisBatch.Durability.AWAIT_FLUSH) {
+            try {
+                write.done().get(properties.getAwaitTimeout().toMillis(), TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException | TimeoutException e) {
+                LOG.warn("Redis write to {} not acknowledged: {}", cacheName, e.toString());
+            }
+        }
+    }
+
+    private void writeInline(PendingWrite write) {
+        inlineWrites.increment();
+        RedisCallEvent.time(
+            "map-cache.put",
+            () -> redissonClient.getMapCache(write.cacheName()).fastPut(write.key(), write.value(), write.ttl(), write.unit())
+        );
+    }
+
+    private void run() {
+        List<PendingWrite> batch = new ArrayList<>(properties.getMaxBatchSize());
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingWrite first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + properties.getFlushInterval().toNanos();
+                while (batch.size() < properties.getMaxBatchSize()) {
+                    long remaining = deadline - System.nanoTime();
+                    PendingWrite next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                flush(batch);
+            } catch (InterruptedException e) {
+                // stop waiting for new writes, but still drain what is queued
+                running = false;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void flush(List<PendingWrite> batch) {
+        batchSize.record(batch.size());
+        long start = System.nanoTime();
+        try {
+            RBatch pipeline = redissonClient.createBatch(BatchOptions.defaults());
+            for (PendingWrite write : batch) {
+                pipeline.getMapCache(write.cacheName()).fastPutAsync(write.key(), write.value(), write.ttl(), write.unit());
+            }
+            RedisCallEvent.time("batch", batch.size(), pipeline::execute);
+            batch.forEach(write -> write.done().complete(null));
+        } catch (RuntimeException e) {
+            failures.increment(batch.size());
+            LOG.error("Could not flush {} Redis writes: {}", batch.size(), e.getMessage());
+            batch.forEach(write -> write.done().completeExceptionally(e));
+        } finally {
+            flushTime.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        running = false;
+        flusher.join(properties.getShutdownTimeout().toMillis());
+        // whatever the flusher did not get to, or was offered as it stopped, is flushed here
+        List<PendingWrite> left = new ArrayList<>();
+        queue.drainTo(left);
+        if (!left.isEmpty()) {
+            LOG.info("Flushing {} Redis writes still queued at shutdown", left.size());
+            flush(left);
+        }
+    }
+
+    private record PendingWrite(String cacheName, String key, Object value, long ttl, TimeUnit unit, CompletableFuture<Void> done) {}
+}
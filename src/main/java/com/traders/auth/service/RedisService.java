@@ -1,12 +1,123 @@
 package com.traders.auth.service;
 
+import com.traders.auth.management.jfr.RedisCallEvent;
 import com.traders.common.properties.ConfigProperties;
+import org.redisson.api.RScript;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.StringCodec;
 import org.springframework.context.annotation.Configuration;
 
+import java.time.Duration;
+import java.util.List;
+
 @Configuration
 public class RedisService extends com.traders.common.service.RedisService {
 
+    /**
+     * Consumes a refresh token: the token is deleted, a used marker is left behind, and the family must still point at
+     * it. Presenting a used token deletes the family, which invalidates the token that replaced it.
+     */
+    private static final String CONSUME_REFRESH_TOKEN_SCRIPT = """
+        local record = redis.call('GET', KEYS[1])
+        if not record then
+            local used = redis.call('GET', KEYS[2])
+            if used then
+                redis.call('DEL', KEYS[3])
+                return {'reused', used}
+            end
+            return {'unknown'}
+        end
+        redis.call('DEL', KEYS[1])
+        if redis.call('GET', KEYS[3]) ~= ARGV[1] then
+            return {'revoked', record}
+        end
+        redis.call('SET', KEYS[2], record, 'PX', ARGV[2])
+        return {'ok', record}
+        """;
+
+    /**
+     * Stores a refresh token as the current token of its family. When it replaces a previous token, the family must
+     * still point at that token, so a family revoked in between stays revoked.
+     */
+    private static final String STORE_REFRESH_TOKEN_SCRIPT = """
+        if ARGV[4] ~= '' and redis.call('GET', KEYS[2]) ~= ARGV[4] then
+            return 0
+        end
+        redis.call('SET', KEYS[1], ARGV[2], 'PX', ARGV[3])
+        redis.call('SET', KEYS[2], ARGV[1], 'PX', ARGV[3])
+        return 1
+        """;
+
+    private final RedissonClient redissonClient;
+
     public RedisService(javax.cache.CacheManager cacheManager, org.redisson.api.RedissonClient redissonClient, ConfigProperties configProperties) {
         super(cacheManager, redissonClient, configProperties);
+        this.redissonClient = redissonClient;
+    }
+
+    /**
+     * Stores a refresh token and makes it the current token of its family, in one round trip.
+     *
+     * @param previousHash the token being replaced, or {@code null} when a new family starts.
+     * @return {@code false} if the family was revoked after the previous token was consumed.
+     */
+    public boolean storeRefreshToken(String familyId, String tokenHash, String previousHash, String record, Duration ttl) {
+        Long stored = RedisCallEvent.time(
+            "refresh.store",
+            () -> redissonClient
+                .getScript(StringCodec.INSTANCE)
+                .<Long>eval(
+                    RScript.Mode.READ_WRITE,
+                    STORE_REFRESH_TOKEN_SCRIPT,
+                    RScript.ReturnType.INTEGER,
+                    List.<Object>of(refreshTokenKey(familyId, tokenHash), refreshFamilyKey(familyId)),
+                    tokenHash,
+                    record,
+                    String.valueOf(ttl.toMillis()),
+                    previousHash == null ? "" : previousHash
+                )
+        );
+        return stored != null && stored == 1L;
+    }
+
+    /**
+     * Atomically consumes a refresh token, see {@link #CONSUME_REFRESH_TOKEN_SCRIPT}.
+     *
+     * @return the outcome followed by the stored record, if any.
+     */
+    public List<String> consumeRefreshToken(String familyId, String tokenHash, Duration usedMarkerTtl) {
+        return RedisCallEvent.time(
+            "refresh.consume",
+            () -> redissonClient
+                .getScript(StringCodec.INSTANCE)
+                .<List<String>>eval(
+                    RScript.Mode.READ_WRITE,
+                    CONSUME_REFRESH_TOKEN_SCRIPT,
+                    RScript.ReturnType.MULTI,
+                    List.<Object>of(refreshTokenKey(familyId, tokenHash), refreshUsedKey(familyId, tokenHash), refreshFamilyKey(familyId)),
+                    tokenHash,
+                    String.valueOf(usedMarkerTtl.toMillis())
+                )
+        );
+    }
+
+    /**
+     * Revokes every refresh token of a family by dropping its current-token pointer.
+     */
+    public void revokeRefreshTokenFamily(String familyId) {
+        redissonClient.getBucket(refreshFamilyKey(familyId), StringCodec.INSTANCE).delete();
+    }
+
+    // keys of one family share a hash tag so the scripts also run on a Redis cluster
+    private static String refreshTokenKey(String familyId, String tokenHash) {
+        return "auth:refresh:{" + familyId + "}:token:" + tokenHash;
+    }
+
+    private static String refreshUsedKey(String familyId, String tokenHash) {
+        return "auth:refresh:{" + familyId + "}:used:" + tokenHash;
+    }
+
+    private static String refreshFamilyKey(String familyId) {
+        return "auth:refresh:{" + familyId + "}:current";
     }
 }
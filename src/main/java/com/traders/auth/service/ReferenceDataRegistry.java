@@ -0,0 +1,137 @@
+package com.traders.auth.service;
+
+import com.traders.auth.domain.Authority;
+import com.traders.auth.domain.User;
+import com.traders.auth.repository.AuthorityRepository;
+import com.traders.auth.repository.UserRepository;
+import jakarta.annotation.PostConstruct;
+import org.redisson.api.RTopic;
+import org.redisson.api.RedissonClient;
+import org.redisson.api.listener.BaseStatusListener;
+import org.redisson.client.codec.StringCodec;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * In-memory view of the reference data that registrations and admin updates need: the {@link Authority} rows and the
+ * root account ({@code parent_account = 1}) new users are registered under.
+ * <p>
+ * Loaded at start-up and replaced as a whole, never modified in place. Changes to the authorities must call
+ * {@link #refresh()}: once the transaction commits, every node reloads through a Redis topic.
+ */
+@Component
+public class ReferenceDataRegistry {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ReferenceDataRegistry.class);
+
+    private static final String REFRESH_TOPIC = "auth:reference-data:refresh";
+
+    private static final int ROOT_PARENT_ACCOUNT = 1;
+
+    private final AuthorityRepository authorityRepository;
+
+    private final UserRepository userRepository;
+
+    private final RTopic refreshTopic;
+
+    private volatile Snapshot snapshot = new Snapshot(Map.of(), null);
+
+    public ReferenceDataRegistry(AuthorityRepository authorityRepository, UserRepository userRepository, RedissonClient redissonClient) {
+        this.authorityRepository = authorityRepository;
+        this.userRepository = userRepository;
+        this.refreshTopic = redissonClient.getTopic(REFRESH_TOPIC, StringCodec.INSTANCE);
+    }
+
+    @PostConstruct
+    public void init() {
+        refreshTopic.addListener(String.class, (channel, message) -> reload());
+        refreshTopic.addListener(new BaseStatusListener() {
+            @Override
+            public void onSubscribe(String channel) {
+                // refreshes published while we were disconnected are lost
+                reload();
+            }
+        });
+        reload();
+    }
+
+    public Optional<Authority> authority(String name) {
+        return Optional.ofNullable(snapshot.authorities().get(name));
+    }
+
+    /**
+     * The known authorities among the names, unknown ones are skipped.
+     */
+    public Set<Authority> authorities(Collection<String> names) {
+        Map<String, Authority> authorities = snapshot.authorities();
+        return names.stream().map(authorities::get).filter(Objects::nonNull).collect(Collectors.toSet());
+    }
+
+    public List<String> authorityNames() {
+        return snapshot.authorities().keySet().stream().sorted().toList();
+    }
+
+    /**
+     * Id of the root account new users are registered under. Looked up again if it was not there at the last load.
+     */
+    public Optional<Long> parentAccountId() {
+        Long parentAccountId = snapshot.parentAccountId();
+        if (parentAccountId == null) {
+            parentAccountId = reload().parentAccountId();
+        }
+        return Optional.ofNullable(parentAccountId);
+    }
+
+    /**
+     * Reloads every node once the current transaction commits, or right away outside of one.
+     */
+    public void refresh() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    publishRefresh();
+                }
+            });
+        } else {
+            publishRefresh();
+        }
+    }
+
+    private void publishRefresh() {
+        reload();
+        try {
+            refreshTopic.publish("refresh");
+        } catch (RuntimeException e) {
+            LOG.warn("Could not notify other nodes of changed reference data: {}", e.getMessage());
+        }
+    }
+
+    private synchronized Snapshot reload() {
+        Map<String, Authority> authorities = authorityRepository
+            .findAll()
+            .stream()
+            .collect(Collectors.toUnmodifiableMap(Authority::getName, Function.identity()));
+        Long parentAccountId = userRepository.findOneByParentAccount(ROOT_PARENT_ACCOUNT).map(User::getId).orElse(null);
+        if (parentAccountId == null) {
+            LOG.warn("No root account (parent_account = {}) to register users under", ROOT_PARENT_ACCOUNT);
+        }
+        snapshot = new Snapshot(authorities, parentAccountId);
+        LOG.debug("Loaded {} authorities and root account {}", authorities.size(), parentAccountId);
+        return snapshot;
+    }
+
+    private record Snapshot(Map<String, Authority> authorities, Long parentAccountId) {}
+}
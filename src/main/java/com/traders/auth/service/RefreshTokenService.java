@@ -0,0 +1,160 @@
+package com.traders.auth.service;
+
+import com.google.common.hash.Hashing;
+import com.google.common.io.BaseEncoding;
+import com.traders.auth.properties.AuthProperties;
+import com.traders.auth.security.TokenRevocationService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Issues and rotates single-use refresh tokens.
+ * <p>
+ * A token is {@code <family>.<secret>}; only its SHA-256 is stored in Redis, under keys scoped to the family. Every
+ * refresh consumes the presented token and issues its successor in the same family. Presenting a token that was
+ * already consumed means it was copied, so the whole family is revoked and the client has to log in again. A family
+ * also ends when the user's tokens are revoked through the {@link TokenRevocationService}.
+ */
+@Service
+public class RefreshTokenService {
+
+    private static final Logger LOG = LoggerFactory.getLogger(RefreshTokenService.class);
+
+    private static final BaseEncoding TOKEN_ENCODING = BaseEncoding.base64Url().omitPadding();
+
+    private final SecureRandom secureRandom = new SecureRandom();
+
+    private final RedisService redisService;
+
+    private final AuthProperties.RefreshToken properties;
+
+    private final TokenRevocationService tokenRevocationService;
+
+    private final MeterRegistry meterRegistry;
+
+    public RefreshTokenService(
+        RedisService redisService,
+        AuthProperties authProperties,
+        TokenRevocationService tokenRevocationService,
+        MeterRegistry meterRegistry
+    ) {
+        this.redisService = redisService;
+        this.tokenRevocationService = tokenRevocationService;
+        this.properties = authProperties.getRefreshToken();
+        this.meterRegistry = meterRegistry;
+    }
+
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    /**
+     * Lifetime of access tokens issued alongside a refresh token.
+     */
+    public Duration getAccessTokenValidity() {
+        return properties.getAccessTokenValidity();
+    }
+
+    /**
+     * Starts a new token family after a password login.
+     */
+    public String issue(String login, boolean rememberMe) {
+        String familyId = randomToken(16);
+        String token = familyId + "." + randomToken(32);
+        String record = encodeRecord(login, rememberMe, tokenRevocationService.currentGeneration(login));
+        redisService.storeRefreshToken(familyId, hash(token), null, record, validity(rememberMe));
+        count("issued");
+        return token;
+    }
+
+    /**
+     * Consumes a refresh token and issues its successor.
+     *
+     * @throws BadCredentialsException if the token is unknown, expired, revoked or was already used.
+     */
+    public Refreshed rotate(String token) {
+        int separator = token == null ? -1 : token.indexOf('.');
+        if (separator <= 0) {
+            throw invalid("malformed");
+        }
+        String familyId = token.substring(0, separator);
+        String tokenHash = hash(token);
+        // the used marker only has to outlive the longest token it could be confused with
+        List<String> result = redisService.consumeRefreshToken(familyId, tokenHash, properties.getRememberMeValidity());
+        String outcome = result.isEmpty() ? "unknown" : result.get(0);
+        switch (outcome) {
+            case "ok" -> {
+                String record = result.get(1);
+                String[] fields = record.split(":", 3);
+                boolean rememberMe = "1".equals(fields[0]);
+                String login = fields[2];
+                if (Long.parseLong(fields[1]) < tokenRevocationService.currentGeneration(login)) {
+                    throw invalid("revoked");
+                }
+                String next = familyId + "." + randomToken(32);
+                if (!redisService.storeRefreshToken(familyId, hash(next), tokenHash, record, validity(rememberMe))) {
+                    throw invalid("revoked");
+                }
+                count("rotated");
+                return new Refreshed(login, rememberMe, next);
+            }
+            case "reused" -> {
+                LOG.warn("Refresh token reused for user {}, revoked its token family", result.get(1).split(":", 3)[2]);
+                throw invalid("reused");
+            }
+            default -> throw invalid(outcome);
+        }
+    }
+
+    /**
+     * Revokes every token of the family the given refresh token belongs to.
+     */
+    public void revoke(String token) {
+        int separator = token == null ? -1 : token.indexOf('.');
+        if (separator > 0) {
+            redisService.revokeRefreshTokenFamily(token.substring(0, separator));
+            count("revoked");
+        }
+    }
+
+    private Duration validity(boolean rememberMe) {
+        return rememberMe ? properties.getRememberMeValidity() : properties.getValidity();
+    }
+
+    private BadCredentialsException invalid(String outcome) {
+        count(outcome);
+        return new BadCredentialsException("Invalid refresh token");
+    }
+
+    private void count(String outcome) {
+        meterRegistry.counter("auth.refresh.tokens", "outcome", outcome).increment();
+    }
+
+    private String randomToken(int bytes) {
+        byte[] random = new byte[bytes];
+        secureRandom.nextBytes(random);
+        return TOKEN_ENCODING.encode(random);
+    }
+
+    private static String hash(String token) {
+        return Hashing.sha256().hashString(token, StandardCharsets.US_ASCII).toString();
+    }
+
+    // <rememberMe>:<generation>:<login>
+    private static String encodeRecord(String login, boolean rememberMe, long generation) {
+        return (rememberMe ? "1:" : "0:") + generation + ":" + login;
+    }
+
+    /**
+     * Result of a successful rotation.
+     */
+    public record Refreshed(String login, boolean rememberMe, String refreshToken) {}
+}
@@ -0,0 +1,142 @@
+package com.traders.auth.service;
+
+import com.traders.auth.domain.User;
+import com.traders.auth.exception.BadRequestAlertException;
+import com.traders.auth.properties.AuthProperties;
+import com.traders.auth.repository.UserHierarchyRepository;
+import com.traders.auth.service.dto.DownlineLevelDTO;
+import com.traders.auth.service.dto.DownlineUserDTO;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+/**
+ * Keeps the {@code user_hierarchy} closure table in step with {@code user.parent_user_id}, and answers downline
+ * queries from it with one indexed query each.
+ * <p>
+ * The write methods must run in the transaction that changes the users, so that the closure never disagrees with the
+ * parent links. They also record the matching changes to the {@link DownlineAggregateService downline aggregates}.
+ */
+@Service
+@Transactional
+public class UserHierarchyService {
+
+    private static final Logger LOG = LoggerFactory.getLogger(UserHierarchyService.class);
+
+    // ids per DELETE when a moved subtree is unlinked from its old ancestors
+    private static final int DELETE_CHUNK_SIZE = 1000;
+
+    private final UserHierarchyRepository userHierarchyRepository;
+
+    private final DownlineAggregateService downlineAggregateService;
+
+    private final AuthProperties.Hierarchy properties;
+
+    public UserHierarchyService(
+        UserHierarchyRepository userHierarchyRepository,
+        DownlineAggregateService downlineAggregateService,
+        AuthProperties authProperties
+    ) {
+        this.userHierarchyRepository = userHierarchyRepository;
+        this.downlineAggregateService = downlineAggregateService;
+        this.properties = authProperties.getHierarchy();
+    }
+
+    /**
+     * Adds a new user under its parent, if it has one.
+     */
+    public void addUser(User user) {
+        // the user row has to be there before the rows referencing it
+        userHierarchyRepository.flush();
+        Long parentId = user.getParentUser() == null ? null : user.getParentUser().getId();
+        if (parentId != null) {
+            userHierarchyRepository.lockPath(parentId);
+        }
+        userHierarchyRepository.insertUser(user.getId(), parentId);
+        downlineAggregateService.recordUserAdded(user);
+    }
+
+    /**
+     * Moves the user, with its whole downline, under a new parent.
+     *
+     * @throws BadRequestAlertException {@code 400 (Bad Request)} if the new parent is the user or one of its downline.
+     */
+    public void moveUser(User user, User newParent) {
+        // users added below the subtree copy its links under a shared lock on its root
+        userHierarchyRepository.lockSubtreeRoot(user.getId());
+        userHierarchyRepository.lockPath(newParent.getId());
+        if (userHierarchyRepository.existsByAncestorIdAndDescendantId(user.getId(), newParent.getId())) {
+            throw new BadRequestAlertException("A user cannot be moved under its own downline", "userManagement", "hierarchycycle");
+        }
+        downlineAggregateService.recordSubtreeDetached(user.getId());
+        List<Long> oldAncestors = userHierarchyRepository.findAncestorIds(user.getId());
+        if (!oldAncestors.isEmpty()) {
+            List<Long> subtree = userHierarchyRepository.findSubtreeIds(user.getId());
+            for (int from = 0; from < subtree.size(); from += DELETE_CHUNK_SIZE) {
+                userHierarchyRepository.deleteLinks(subtree.subList(from, Math.min(from + DELETE_CHUNK_SIZE, subtree.size())), oldAncestors);
+            }
+        }
+        int links = userHierarchyRepository.insertSubtreeUnder(user.getId(), newParent.getId());
+        downlineAggregateService.recordSubtreeAttached(user.getId());
+        user.setParentUser(newParent);
+        LOG.debug("Moved user {} under {}, {} ancestor links added", user.getLogin(), newParent.getLogin(), links);
+    }
+
+    /**
+     * Removes a user that is about to be deleted.
+     *
+     * @throws BadRequestAlertException {@code 400 (Bad Request)} if the user has a downline, which would be left linked
+     * to the user's ancestors under a parent that no longer exists.
+     */
+    public void removeUser(Long userId) {
+        // users being added below wait for the delete, see moveUser
+        userHierarchyRepository.lockSubtreeRoot(userId);
+        if (hasDownline(userId)) {
+            throw new BadRequestAlertException("A user with a downline cannot be deleted", "userManagement", "hasdownline");
+        }
+        downlineAggregateService.recordSubtreeDetached(userId);
+        userHierarchyRepository.deleteUser(userId);
+    }
+
+    @Transactional(readOnly = true)
+    public boolean hasDownline(Long userId) {
+        return userHierarchyRepository.existsByAncestorIdAndDepthGreaterThan(userId, 0);
+    }
+
+    /**
+     * A page of the users below {@code ancestorId}, ordered by id.
+     *
+     * @param maxDepth levels to include, {@code null} for all.
+     * @param afterId id of the last user of the previous page, {@code null} for the first page.
+     * @param size users per page, {@code null} for the default; capped at {@code auth.hierarchy.max-downline-page-size}.
+     */
+    @Transactional(readOnly = true)
+    public List<DownlineUserDTO> downline(Long ancestorId, Integer maxDepth, Long afterId, Integer size) {
+        return userHierarchyRepository.findDownline(ancestorId, depthLimit(maxDepth), afterId == null ? 0 : afterId, Limit.of(downlinePageSize(size)));
+    }
+
+    /**
+     * The number of users {@link #downline} returns per page for the requested {@code size}.
+     */
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public int downlinePageSize(Integer size) {
+        return size == null || size < 1 ? properties.getDownlinePageSize() : Math.min(size, properties.getMaxDownlinePageSize());
+    }
+
+    /**
+     * Users below {@code ancestorId} per level, down to {@code maxDepth} levels or all of them if {@code null}.
+     */
+    @Transactional(readOnly = true)
+    public List<DownlineLevelDTO> downlineLevels(Long ancestorId, Integer maxDepth) {
+        return userHierarchyRepository.countDownlineByDepth(ancestorId, depthLimit(maxDepth));
+    }
+
+    private static int depthLimit(Integer maxDepth) {
+        return maxDepth == null || maxDepth < 1 ? Integer.MAX_VALUE : maxDepth;
+    }
+}
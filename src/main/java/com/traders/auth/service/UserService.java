@@ -4,9 +4,11 @@ import com.google.common.base.Strings;
 import com.traders.auth.exception.*;
 import com.traders.common.appconfig.util.RandomUtil;
 import com.traders.auth.domain.Authority;
+import com.traders.auth.domain.OutboxEvent;
 import com.traders.auth.domain.User;
-import com.traders.auth.repository.AuthorityRepository;
 import com.traders.auth.repository.UserRepository;
+import com.traders.auth.security.CredentialCache;
+import com.traders.auth.security.TokenRevocationService;
 import com.traders.auth.service.dto.AdminUserDTO;
 import com.traders.auth.service.dto.UserDTO;
 import com.traders.common.constants.AppConstants;
@@ -19,7 +21,9 @@ import org.springframework.data.domain.Pageable;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
@@ -31,6 +35,9 @@ import java.util.stream.Collectors;
 
 /**
  * Service class for managing users.
+ * <p>
+ * Methods that hash or verify a password are not transactional: the hashing runs first, and the database work
+ * follows in a short transaction of its own, so that no pooled connection is held while a password is hashed.
  */
 @Service
 @Transactional
@@ -42,17 +49,37 @@ public class UserService {
 
     private final PasswordEncoder passwordEncoder;
 
-    private final AuthorityRepository authorityRepository;
-    private final WalletService walletService;
+    private final ReferenceDataRegistry referenceDataRegistry;
+    private final OutboxService outboxService;
+
+    private final CredentialCache credentialCache;
+
+    private final TokenRevocationService tokenRevocationService;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final UserHierarchyService userHierarchyService;
+
+    private final DownlineAggregateService downlineAggregateService;
 
     public UserService(UserRepository userRepository,
                        PasswordEncoder passwordEncoder,
-                       AuthorityRepository authorityRepository,
-                       WalletService walletService) {
+                       ReferenceDataRegistry referenceDataRegistry,
+                       OutboxService outboxService,
+                       CredentialCache credentialCache,
+                       TokenRevocationService tokenRevocationService,
+                       TransactionTemplate transactionTemplate,
+                       UserHierarchyService userHierarchyService,
+                       DownlineAggregateService downlineAggregateService) {
         this.userRepository = userRepository;
         this.passwordEncoder = passwordEncoder;
-        this.authorityRepository = authorityRepository;
-        this.walletService = walletService;
+        this.referenceDataRegistry = referenceDataRegistry;
+        this.outboxService = outboxService;
+        this.credentialCache = credentialCache;
+        this.tokenRevocationService = tokenRevocationService;
+        this.transactionTemplate = transactionTemplate;
+        this.userHierarchyService = userHierarchyService;
+        this.downlineAggregateService = downlineAggregateService;
     }
 
     public Optional<User> activateRegistration(String key) {
@@ -61,24 +88,42 @@ public class UserService {
                 .findOneByActivationKey(key)
                 .map(user -> {
                     // activate given user for the registration key.
+                    boolean wasActive = DownlineAggregateService.isActive(user);
                     user.setActivated(true);
                     user.setActivationKey(null);
+                    Set<String> authorities = authorityNames(user);
+                    downlineAggregateService.recordUserChanged(user.getId(), wasActive, DownlineAggregateService.isActive(user), authorities, authorities);
+                    credentialCache.invalidate(user);
                     LOG.debug("Activated user: {}", user);
                     return user;
                 });
     }
 
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public Optional<User> completePasswordReset(String newPassword, String key) {
         LOG.debug("Reset user password for reset key {}", key);
+        // only pay for the hash with a key that can succeed, then check it again while writing
+        if (findValidResetKey(key).isEmpty()) {
+            return Optional.empty();
+        }
+        String encryptedPassword = passwordEncoder.encode(newPassword);
+        return transactionTemplate.execute(status ->
+                findValidResetKey(key)
+                        .map(user -> {
+                            user.setPassword(encryptedPassword);
+                            user.setResetKey(null);
+                            user.setResetDate(null);
+                            credentialCache.invalidate(user);
+                            tokenRevocationService.revokeUser(user.getLogin());
+                            return user;
+                        })
+        );
+    }
+
+    private Optional<User> findValidResetKey(String key) {
         return userRepository
                 .findOneByResetKey(key)
-                .filter(user -> user.getResetDate().isAfter(Instant.now().minus(1, ChronoUnit.DAYS)))
-                .map(user -> {
-                    user.setPassword(passwordEncoder.encode(newPassword));
-                    user.setResetKey(null);
-                    user.setResetDate(null);
-                    return user;
-                });
+                .filter(user -> user.getResetDate().isAfter(Instant.now().minus(1, ChronoUnit.DAYS)));
     }
 
     public Optional<User> requestPasswordReset(String mail) {
@@ -92,7 +137,13 @@ public class UserService {
                 });
     }
 
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public User registerUser(AdminUserDTO userDTO, String password) {
+        String encryptedPassword = passwordEncoder.encode(password);
+        return transactionTemplate.execute(status -> registerUserWithHash(userDTO, encryptedPassword));
+    }
+
+    private User registerUserWithHash(AdminUserDTO userDTO, String encryptedPassword) {
         userRepository
                 .findOneByLogin(userDTO.getLogin().toLowerCase())
                 .ifPresent(existingUser -> {
@@ -116,10 +167,10 @@ public class UserService {
                         throw new ContactNoAlreadyUsedException();
                     }
                 });
-        User parentUser = userRepository.findOneByParentAccount(1).
-                orElseThrow(ParentUserNotDefinedException::new);
+        User parentUser = referenceDataRegistry.parentAccountId()
+                .map(userRepository::getReferenceById)
+                .orElseThrow(ParentUserNotDefinedException::new);
         User newUser = new User();
-        String encryptedPassword = passwordEncoder.encode(password);
         newUser.setLogin(userDTO.getLogin().toLowerCase());
         newUser.setPassword(encryptedPassword);
         newUser.setFirstName(userDTO.getFirstName());
@@ -132,25 +183,35 @@ public class UserService {
         newUser.setActivationKey(RandomUtil.generateActivationKey());
         newUser.setParentUser(parentUser);
         Set<Authority> authorities = new HashSet<>();
-        authorityRepository.findById(AuthoritiesConstants.USER).ifPresent(authorities::add);
+        referenceDataRegistry.authority(AuthoritiesConstants.USER).ifPresent(authorities::add);
         newUser.setAuthorities(authorities);
 
         User registeredUser = userRepository.save(newUser);
-        walletService.createUserWallet(registeredUser);
+        userHierarchyService.addUser(registeredUser);
+        // the wallet follows once the user row is committed
+        outboxService.enqueue(OutboxEvent.Type.USER_WALLET, registeredUser.getId());
         LOG.debug("Created Information for User: {}", newUser);
         return registeredUser;
     }
 
     private boolean removeNonActivatedUser(User existingUser) {
-        if (existingUser.isActivated()) {
+        if (existingUser.isActivated() || userHierarchyService.hasDownline(existingUser.getId())) {
             return false;
         }
+        userHierarchyService.removeUser(existingUser.getId());
         userRepository.delete(existingUser);
         userRepository.flush();
+        credentialCache.invalidate(existingUser);
         return true;
     }
 
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public User createUser(AdminUserDTO userDTO) {
+        String encryptedPassword = passwordEncoder.encode(RandomUtil.generatePassword());
+        return transactionTemplate.execute(status -> createUserWithHash(userDTO, encryptedPassword));
+    }
+
+    private User createUserWithHash(AdminUserDTO userDTO, String encryptedPassword) {
         User user = new User();
         user.setLogin(userDTO.getLogin().toLowerCase());
         user.setFirstName(userDTO.getFirstName());
@@ -158,22 +219,15 @@ public class UserService {
         if (userDTO.getEmail() != null) {
             user.setEmail(userDTO.getEmail().toLowerCase());
         }
-        String encryptedPassword = passwordEncoder.encode(RandomUtil.generatePassword());
         user.setPassword(encryptedPassword);
         user.setResetKey(RandomUtil.generateResetKey());
         user.setResetDate(Instant.now());
         user.setActivated(true);
         if (userDTO.getAuthorities() != null) {
-            Set<Authority> authorities = userDTO
-                    .getAuthorities()
-                    .stream()
-                    .map(authorityRepository::findById)
-                    .filter(Optional::isPresent)
-                    .map(Optional::get)
-                    .collect(Collectors.toSet());
-            user.setAuthorities(authorities);
+            user.setAuthorities(referenceDataRegistry.authorities(userDTO.getAuthorities()));
         }
         userRepository.save(user);
+        userHierarchyService.addUser(user);
         LOG.debug("Created Information for User: {}", user);
         return user;
     }
@@ -189,6 +243,13 @@ public class UserService {
                 .filter(Optional::isPresent)
                 .map(Optional::get)
                 .map(user -> {
+                    // drop the entries cached under the current login and email before they change
+                    credentialCache.invalidate(user);
+                    boolean wasActive = DownlineAggregateService.isActive(user);
+                    Set<String> oldAuthorities = authorityNames(user);
+                    if (!userDTO.isActivated() || !user.getLogin().equalsIgnoreCase(userDTO.getLogin())) {
+                        tokenRevocationService.revokeUser(user.getLogin());
+                    }
                     user.setLogin(userDTO.getLogin().toLowerCase());
                     user.setFirstName(userDTO.getFirstName());
                     user.setLastName(userDTO.getLastName());
@@ -198,13 +259,8 @@ public class UserService {
                     user.setActivated(userDTO.isActivated());
                     Set<Authority> managedAuthorities = user.getAuthorities();
                     managedAuthorities.clear();
-                    userDTO
-                            .getAuthorities()
-                            .stream()
-                            .map(authorityRepository::findById)
-                            .filter(Optional::isPresent)
-                            .map(Optional::get)
-                            .forEach(managedAuthorities::add);
+                    managedAuthorities.addAll(referenceDataRegistry.authorities(userDTO.getAuthorities()));
+                    downlineAggregateService.recordUserChanged(user.getId(), wasActive, DownlineAggregateService.isActive(user), oldAuthorities, authorityNames(user));
                     userRepository.save(user);
                     LOG.debug("Changed Information for User: {}", user);
                     return user;
@@ -216,11 +272,31 @@ public class UserService {
         userRepository
                 .findOneByLogin(login)
                 .ifPresent(user -> {
+                    userHierarchyService.removeUser(user.getId());
                     userRepository.delete(user);
+                    credentialCache.invalidate(user);
+                    tokenRevocationService.revokeUser(user.getLogin());
                     LOG.debug("Deleted User: {}", user);
                 });
     }
 
+    /**
+     * Moves a user, with its whole downline, under another parent.
+     *
+     * @param login the login of the user to move.
+     * @param parentLogin the login of the new parent.
+     * @return the moved user, or empty if either user does not exist.
+     */
+    public Optional<User> changeParentUser(String login, String parentLogin) {
+        return userRepository
+                .findOneByLogin(login)
+                .flatMap(user -> userRepository.findOneByLogin(parentLogin).map(parent -> {
+                    userHierarchyService.moveUser(user, parent);
+                    LOG.debug("Moved User {} under {}", login, parentLogin);
+                    return user;
+                }));
+    }
+
     /**
      * Update basic information (first name, last name, email, language) for the current user.
      *
@@ -234,6 +310,7 @@ public class UserService {
         SecurityUtils.getCurrentUserLogin()
                 .flatMap(userRepository::findOneByLogin)
                 .ifPresent(user -> {
+                    credentialCache.invalidate(user);
                     user.setFirstName(firstName);
                     user.setLastName(lastName);
                     if (email != null) {
@@ -244,7 +321,11 @@ public class UserService {
                 });
     }
 
-    @Transactional
+    /**
+     * Verifies and hashes outside of any transaction; the short transaction that follows locks the user's row and only
+     * replaces the hash if it is still the one verified against.
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public void changePassword(String currentClearTextPassword, String newPassword) {
         SecurityUtils.getCurrentUserLogin()
                 .flatMap(userRepository::findOneByLogin)
@@ -254,13 +335,18 @@ public class UserService {
                         throw new InvalidPasswordException("Current password doesn't match.");
                     }
                     String encryptedPassword = passwordEncoder.encode(newPassword);
-                    user.setPassword(encryptedPassword);
-                    userRepository.save(user);
+                    transactionTemplate.executeWithoutResult(status -> {
+                        if (userRepository.replacePassword(user.getId(), currentEncryptedPassword, encryptedPassword) == 0) {
+                            throw new InvalidPasswordException("Current password doesn't match.");
+                        }
+                        credentialCache.invalidate(user);
+                        tokenRevocationService.revokeUser(user.getLogin());
+                    });
                     LOG.debug("Changed password for User: {}", user);
                 });
     }
 
-    @Transactional
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public void changeTransactionPassword(String currentClearTextPassword, String newPassword) {
         SecurityUtils.getCurrentUserLogin()
                 .flatMap(userRepository::findOneByLogin)
@@ -270,8 +356,12 @@ public class UserService {
                         throw new InvalidPasswordException("Current password doesn't match.");
                     }
                     String encryptedPassword = passwordEncoder.encode(newPassword);
-                    user.setTransactionPassword(encryptedPassword);
-                    userRepository.save(user);
+                    transactionTemplate.executeWithoutResult(status -> {
+                        if (userRepository.replaceTransactionPassword(user.getId(), currentTransactionPassword, encryptedPassword) == 0) {
+                            throw new InvalidPasswordException("Current password doesn't match.");
+                        }
+                        credentialCache.invalidate(user);
+                    });
                     LOG.debug("Changed password for User: {}", user);
                 });
     }
@@ -306,17 +396,26 @@ public class UserService {
         userRepository
                 .findAllByActivatedIsFalseAndActivationKeyIsNotNullAndCreatedDateBefore(Instant.now().minus(3, ChronoUnit.DAYS))
                 .forEach(user -> {
+                    if (userHierarchyService.hasDownline(user.getId())) {
+                        LOG.warn("Not deleting not activated user {}, it has a downline", user.getLogin());
+                        return;
+                    }
                     LOG.debug("Deleting not activated user {}", user.getLogin());
+                    userHierarchyService.removeUser(user.getId());
                     userRepository.delete(user);
+                    credentialCache.invalidate(user);
                 });
     }
 
+    private static Set<String> authorityNames(User user) {
+        return user.getAuthorities().stream().map(Authority::getName).collect(Collectors.toSet());
+    }
+
     /**
      * Gets a list of all the authorities.
      * @return a list of all the authorities.
      */
-    @Transactional(readOnly = true)
     public List<String> getAuthorities() {
-        return authorityRepository.findAll().stream().map(Authority::getName).toList();
+        return referenceDataRegistry.authorityNames();
     }
 }
@@ -2,24 +2,222 @@ package com.traders.auth.service;
 
 import com.traders.auth.domain.User;
 import com.traders.auth.domain.Wallet;
+import com.traders.auth.exception.BadRequestAlertException;
+import com.traders.auth.properties.AuthProperties;
 import com.traders.auth.repository.WalletRepository;
+import com.traders.auth.service.dto.WalletDTO;
 import com.traders.common.utils.DateTimeUtil;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.hibernate.exception.ConstraintViolationException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Wallets and the operations on their balance: credit, debit, hold and release, in minor units (cents).
+ * <p>
+ * Each operation is one conditional {@code UPDATE} (see {@link WalletRepository}), so the database alone keeps
+ * concurrent operations from losing one another, on one node or many. On top of that, the operations of a node on the
+ * same wallet are serialized by a striped lock taken before the transaction starts: a hot wallet then queues its
+ * operations in memory, without a connection each, instead of piling them up on the row lock. A lock not acquired
+ * within {@code auth.wallet-operations.lock-timeout} is given up on and the operation goes ahead without it.
+ * <p>
+ * Operations given an expected version only apply at that version and fail with
+ * {@link OptimisticLockingFailureException} otherwise; without one they apply to whatever the balance is.
+ */
 @Service
 public class WalletService {
 
+    private static final Logger LOG = LoggerFactory.getLogger(WalletService.class);
+
+    private static final String ENTITY_NAME = "wallet";
+
+    public enum Operation {
+        CREDIT,
+        DEBIT,
+        HOLD,
+        RELEASE
+    }
+
     private final WalletRepository walletRepository;
 
-    public WalletService(WalletRepository walletRepository) {
+    private final DownlineAggregateService downlineAggregateService;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final ReentrantLock[] locks;
+
+    private final long lockTimeoutNanos;
+
+    private final Map<Operation, Counter> done = new EnumMap<>(Operation.class);
+
+    private final Map<Operation, Counter> rejected = new EnumMap<>(Operation.class);
+
+    private final Counter lockTimeouts;
+
+    public WalletService(
+        WalletRepository walletRepository,
+        DownlineAggregateService downlineAggregateService,
+        TransactionTemplate transactionTemplate,
+        AuthProperties authProperties,
+        MeterRegistry registry
+    ) {
         this.walletRepository = walletRepository;
+        this.downlineAggregateService = downlineAggregateService;
+        this.transactionTemplate = transactionTemplate;
+        AuthProperties.WalletOperations properties = authProperties.getWalletOperations();
+        this.locks = new ReentrantLock[Math.max(1, properties.getLockStripes())];
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new ReentrantLock();
+        }
+        this.lockTimeoutNanos = properties.getLockTimeout().toNanos();
+        for (Operation operation : Operation.values()) {
+            done.put(operation, operationCounter(registry, operation, "done"));
+            rejected.put(operation, operationCounter(registry, operation, "rejected"));
+        }
+        this.lockTimeouts = Counter.builder("auth.wallet.lock.timeouts")
+            .description("Wallet operations that went ahead without their wallet's lock")
+            .register(registry);
+    }
+
+    private static Counter operationCounter(MeterRegistry registry, Operation operation, String result) {
+        return Counter.builder("auth.wallet.operations")
+            .description("Wallet operations applied, or rejected for want of funds or at another version")
+            .tag("operation", operation.name().toLowerCase(Locale.ENGLISH))
+            .tag("result", result)
+            .register(registry);
     }
 
-    public void createUserWallet(User savedUser) {
+    /**
+     * Creates the wallets of the users that do not have one yet, so that a retried batch does not create them twice.
+     * Two nodes carrying out the same batch at once can still both get past the check: the second insert then fails
+     * on {@link Wallet#USER_UNIQUE_CONSTRAINT}, see {@link #isDuplicateWallet}.
+     */
+    public void createUserWallets(Collection<User> users) {
+        Set<Long> withWallet = walletRepository.findUserIdsWithWallet(users.stream().map(User::getId).toList());
+        List<Wallet> wallets = new ArrayList<>(users.size());
+        for (User user : users) {
+            if (!withWallet.contains(user.getId())) {
+                wallets.add(newWallet(user));
+            }
+        }
+        walletRepository.saveAll(wallets);
+    }
+
+    /**
+     * Whether the failure is the insert of a wallet for a user who already has one.
+     */
+    public static boolean isDuplicateWallet(Throwable failure) {
+        for (Throwable cause = failure; cause != null; cause = cause.getCause()) {
+            if (
+                cause instanceof ConstraintViolationException violation &&
+                violation.getConstraintName() != null &&
+                violation.getConstraintName().toLowerCase(Locale.ROOT).contains(Wallet.USER_UNIQUE_CONSTRAINT)
+            ) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Wallet newWallet(User user) {
         Wallet wallet = new Wallet();
         wallet.setCreatedAt(DateTimeUtil.getCurrentDateTime());
-        wallet.setUser(savedUser);
-        wallet.setBalance(0.0);
-        walletRepository.save(wallet);
+        wallet.setUser(user);
+        return wallet;
+    }
+
+    public Optional<WalletDTO> getWallet(Long walletId) {
+        return walletRepository.findStateByWalletId(walletId);
+    }
+
+    /**
+     * Applies the operation to the wallet; must not be called inside a transaction, which would hold the wallet's lock
+     * and its row lock past the operation.
+     *
+     * @param amountMinor the amount in minor units, positive.
+     * @param expectedVersion the version to apply at, or {@code null} to apply at any.
+     * @return the wallet after the operation, or empty if it does not exist.
+     * @throws BadRequestAlertException if the amount is not positive, is not available to debit or hold, or is more than
+     * is held on release.
+     * @throws OptimisticLockingFailureException if the wallet is not at the expected version.
+     */
+    public Optional<WalletDTO> apply(Long walletId, Operation operation, long amountMinor, Long expectedVersion) {
+        if (amountMinor <= 0) {
+            throw new BadRequestAlertException("Amount must be positive", ENTITY_NAME, "invalidamount");
+        }
+        ReentrantLock lock = locks[Math.floorMod(Long.hashCode(walletId * 0x9E3779B97F4A7C15L), locks.length)];
+        boolean locked = tryLock(lock, walletId);
+        try {
+            return transactionTemplate.execute(status -> applyInTransaction(walletId, operation, amountMinor, expectedVersion));
+        } finally {
+            if (locked) {
+                lock.unlock();
+            }
+        }
+    }
+
+    private boolean tryLock(ReentrantLock lock, Long walletId) {
+        try {
+            if (lock.tryLock(lockTimeoutNanos, TimeUnit.NANOSECONDS)) {
+                return true;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // the update is safe without the lock, which only spares the row lock a queue
+        lockTimeouts.increment();
+        LOG.debug("Going ahead without the lock of wallet {}", walletId);
+        return false;
+    }
+
+    private Optional<WalletDTO> applyInTransaction(Long walletId, Operation operation, long amountMinor, Long expectedVersion) {
+        int updated = switch (operation) {
+            case CREDIT -> walletRepository.credit(walletId, amountMinor, expectedVersion);
+            case DEBIT -> walletRepository.debit(walletId, amountMinor, expectedVersion);
+            case HOLD -> walletRepository.hold(walletId, amountMinor, expectedVersion);
+            case RELEASE -> walletRepository.release(walletId, amountMinor, expectedVersion);
+        };
+        Optional<WalletDTO> wallet = walletRepository.findStateByWalletId(walletId);
+        if (updated == 0) {
+            wallet.ifPresent(current -> reject(current, operation, amountMinor, expectedVersion));
+            return wallet;
+        }
+        WalletDTO current = wallet.orElseThrow();
+        if (operation == Operation.CREDIT || operation == Operation.DEBIT) {
+            long delta = operation == Operation.CREDIT ? amountMinor : -amountMinor;
+            downlineAggregateService.recordBalanceChanged(current.userId(), BigDecimal.valueOf(delta, DownlineAggregateService.SCALE));
+        }
+        done.get(operation).increment();
+        return wallet;
+    }
+
+    // the wallet is read after the update failed, so it may have moved on since; a later version is reported as such
+    private void reject(WalletDTO current, Operation operation, long amountMinor, Long expectedVersion) {
+        rejected.get(operation).increment();
+        if (expectedVersion != null && current.version() != expectedVersion) {
+            throw new OptimisticLockingFailureException(
+                "Wallet " + current.walletId() + " is at version " + current.version() + ", not " + expectedVersion
+            );
+        }
+        if (operation == Operation.RELEASE) {
+            throw new BadRequestAlertException("Only " + current.heldMinor() + " is held, cannot release " + amountMinor, ENTITY_NAME, "insufficientheld");
+        }
+        throw new BadRequestAlertException("Only " + current.availableMinor() + " is available, cannot " + operation.name().toLowerCase(Locale.ENGLISH) + " " + amountMinor, ENTITY_NAME, "insufficientfunds");
     }
 }
@@ -0,0 +1,8 @@
+package com.traders.auth.service.dto;
+
+import java.io.Serializable;
+
+/**
+ * Number of users at one level of a downline.
+ */
+public record DownlineLevelDTO(int depth, long users) implements Serializable {}
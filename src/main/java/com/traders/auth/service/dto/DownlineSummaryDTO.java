@@ -0,0 +1,20 @@
+package com.traders.auth.service.dto;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.util.Map;
+
+/**
+ * Totals over the whole downline of a user, the user itself excluded.
+ *
+ * @param activeUsers users that are activated and not deleted.
+ * @param totalBalance sum of the wallet balances.
+ * @param usersByAuthority users holding each authority.
+ */
+public record DownlineSummaryDTO(
+    Long userId,
+    long users,
+    long activeUsers,
+    BigDecimal totalBalance,
+    Map<String, Long> usersByAuthority
+) implements Serializable {}
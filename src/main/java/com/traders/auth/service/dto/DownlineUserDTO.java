@@ -0,0 +1,20 @@
+package com.traders.auth.service.dto;
+
+import java.io.Serializable;
+
+/**
+ * A user below another one in the account hierarchy.
+ *
+ * @param parentId the user's direct parent.
+ * @param depth levels below the user whose downline was asked for, {@code 1} for direct children.
+ */
+public record DownlineUserDTO(
+    Long id,
+    String login,
+    String firstName,
+    String lastName,
+    String email,
+    boolean activated,
+    Long parentId,
+    int depth
+) implements Serializable {}
@@ -0,0 +1,23 @@
+package com.traders.auth.service.dto;
+
+import java.io.Serializable;
+
+/**
+ * A wallet as of a given version, amounts in minor units (cents).
+ *
+ * @param heldMinor part of the balance reserved by holds.
+ * @param availableMinor what can be debited or held: the balance less what is held.
+ * @param version bumped by every operation, to pass as the expected version of the next one.
+ */
+public record WalletDTO(
+    Long walletId,
+    Long userId,
+    long balanceMinor,
+    long heldMinor,
+    long availableMinor,
+    long version
+) implements Serializable {
+    public WalletDTO(Long walletId, Long userId, long balanceMinor, long heldMinor, long version) {
+        this(walletId, userId, balanceMinor, heldMinor, balanceMinor - heldMinor, version);
+    }
+}
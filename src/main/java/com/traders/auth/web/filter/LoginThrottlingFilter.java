@@ -0,0 +1,60 @@
+package com.traders.auth.web.filter;
+
+import com.traders.auth.properties.AuthProperties;
+import com.traders.auth.security.RateLimiter;
+import com.traders.common.utils.IPAddressSupplier;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.Set;
+
+/**
+ * Limits the credential endpoints per client IP before the request reaches Spring Security, so that a rejected
+ * request costs a bucket lookup and never a password hash. Each endpoint has buckets of its own, so that using up one
+ * (e.g. failed logins) does not lock a client out of the others (e.g. the step-up re-check).
+ */
+public class LoginThrottlingFilter extends OncePerRequestFilter {
+
+    private final RateLimiter rateLimiter;
+
+    private final AuthProperties.Throttling properties;
+
+    private final Set<String> paths;
+
+    public LoginThrottlingFilter(RateLimiter rateLimiter, AuthProperties authProperties) {
+        this.rateLimiter = rateLimiter;
+        this.properties = authProperties.getThrottling();
+        this.paths = Set.copyOf(properties.getPaths());
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !properties.isEnabled() || !HttpMethod.POST.matches(request.getMethod()) || !paths.contains(path(request));
+    }
+
+    private static String path(HttpServletRequest request) {
+        return request.getRequestURI().substring(request.getContextPath().length());
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+        throws ServletException, IOException {
+        long wait = rateLimiter.tryAcquire("ip:" + path(request) + ":" + IPAddressSupplier.getIpAddress(request), properties.getIp());
+        if (wait > 0) {
+            response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+            response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(Math.max(1, (wait + 999) / 1000)));
+            response.setContentType(MediaType.APPLICATION_PROBLEM_JSON_VALUE);
+            response.getWriter().write("{\"title\":\"Too Many Requests\",\"status\":429,\"message\":\"error.http.429\"}");
+            return;
+        }
+        filterChain.doFilter(request, response);
+    }
+}
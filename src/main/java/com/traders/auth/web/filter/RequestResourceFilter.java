@@ -0,0 +1,82 @@
+package com.traders.auth.web.filter;
+
+import com.traders.auth.management.allocation.RouteResourceMetrics;
+import com.traders.auth.properties.AuthProperties;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Measures the bytes a request allocates and the CPU time it uses on its thread, from the first filter to the written
+ * response, and hands them to {@link RouteResourceMetrics} under the route's uri template.
+ * <p>
+ * Both are read from the current thread's counters, which is exact as long as the request stays on its thread; work it
+ * hands to other threads (the async login write-behind, the password hashing pool) is not counted.
+ */
+public class RequestResourceFilter extends OncePerRequestFilter {
+
+    private static final Logger LOG = LoggerFactory.getLogger(RequestResourceFilter.class);
+
+    /**
+     * Route of requests no handler was matched for, e.g. rejected by Spring Security.
+     */
+    private static final String UNMATCHED = "UNMATCHED";
+
+    private final com.sun.management.ThreadMXBean threads;
+
+    private final RouteResourceMetrics metrics;
+
+    private final AuthProperties.RequestAccounting properties;
+
+    private final boolean allocationSupported;
+
+    private final boolean cpuSupported;
+
+    public RequestResourceFilter(RouteResourceMetrics metrics, AuthProperties authProperties) {
+        this.threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        this.metrics = metrics;
+        this.properties = authProperties.getRequestAccounting();
+        this.allocationSupported = threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled();
+        this.cpuSupported = threads.isCurrentThreadCpuTimeSupported() && threads.isThreadCpuTimeEnabled();
+        if (!allocationSupported || !cpuSupported) {
+            LOG.warn("This JVM does not measure per-thread allocation ({}) or CPU time ({})", allocationSupported, cpuSupported);
+        }
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        if (!properties.isEnabled()) {
+            return true;
+        }
+        double rate = properties.getSampleRate();
+        return rate < 1 && ThreadLocalRandom.current().nextDouble() >= rate;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+        throws ServletException, IOException {
+        long allocatedBefore = allocationSupported ? threads.getCurrentThreadAllocatedBytes() : -1;
+        long cpuBefore = cpuSupported ? threads.getCurrentThreadCpuTime() : -1;
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            long allocated = allocationSupported ? threads.getCurrentThreadAllocatedBytes() - allocatedBefore : -1;
+            long cpu = cpuSupported ? threads.getCurrentThreadCpuTime() - cpuBefore : -1;
+            metrics.record(request.getMethod(), route(request), allocated, cpu);
+        }
+    }
+
+    private static String route(HttpServletRequest request) {
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        return pattern == null ? UNMATCHED : pattern.toString();
+    }
+}
@@ -1,14 +1,26 @@
 package com.traders.auth.web.rest;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.google.common.base.Strings;
-import com.traders.auth.domain.User;
 import com.traders.auth.repository.UserRepository;
+import com.traders.auth.security.CredentialCache;
+import com.traders.auth.security.CredentialSnapshot;
 import com.traders.auth.security.CustomUserDetails;
-import com.traders.auth.service.RedisService;
+import com.traders.auth.security.JwtKeyManager;
+import com.traders.auth.security.LoginMetrics;
+import com.traders.auth.security.LoginTrace;
+import com.traders.auth.security.StepUpAssertionService;
+import com.traders.auth.security.TokenRevocationService;
+import com.traders.auth.security.UserAuthenticationService;
+import com.traders.auth.service.LoginWriteBehind;
+import com.traders.auth.service.RedisBatchWriter;
+import com.traders.auth.service.RefreshTokenService;
 import com.traders.auth.web.rest.model.LoginVM;
 import com.traders.auth.web.rest.model.PasswordRecord;
+import com.traders.auth.web.rest.model.RefreshTokenRecord;
 import com.traders.common.security.SecurityUtils;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -21,19 +33,24 @@ import org.springframework.security.authentication.UsernamePasswordAuthenticatio
 import org.springframework.security.config.annotation.authentication.builders.AuthenticationManagerBuilder;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.oauth2.jose.jws.SignatureAlgorithm;
 import org.springframework.security.oauth2.jwt.JwsHeader;
+import org.springframework.security.oauth2.jwt.Jwt;
 import org.springframework.security.oauth2.jwt.JwtClaimsSet;
 import org.springframework.security.oauth2.jwt.JwtEncoder;
 import org.springframework.security.oauth2.jwt.JwtEncoderParameters;
 import org.springframework.web.bind.annotation.*;
 
 import java.security.Principal;
+import java.time.Duration;
 import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.ZoneOffset;
-import java.time.temporal.ChronoUnit;
+import java.util.Collection;
+import java.util.UUID;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
@@ -53,21 +70,62 @@ public class AuthenticateController {
 
     @Value("${config.security.authentication.jwt.token-validity-in-seconds-for-remember-me:0}")
     private long tokenValidityInSecondsForRememberMe;
-    private final RedisService redisService;
+    private final RedisBatchWriter redisBatchWriter;
     private final AuthenticationManagerBuilder authenticationManagerBuilder;
     private final UserRepository userRepository;
     private final PasswordEncoder passwordEncoder;
+    private final UserAuthenticationService userAuthenticationService;
+    private final CredentialCache credentialCache;
+    private final JwtKeyManager jwtKeyManager;
+    private final RefreshTokenService refreshTokenService;
+    private final TokenRevocationService tokenRevocationService;
+    private final LoginWriteBehind loginWriteBehind;
+    private final StepUpAssertionService stepUpAssertionService;
+    private final LoginMetrics loginMetrics;
 
-    public AuthenticateController(JwtEncoder jwtEncoder, RedisService redisService, AuthenticationManagerBuilder authenticationManagerBuilder, UserRepository userRepository, PasswordEncoder passwordEncoder) {
+    public AuthenticateController(JwtEncoder jwtEncoder, RedisBatchWriter redisBatchWriter, AuthenticationManagerBuilder authenticationManagerBuilder, UserRepository userRepository, PasswordEncoder passwordEncoder, UserAuthenticationService userAuthenticationService, CredentialCache credentialCache, JwtKeyManager jwtKeyManager, RefreshTokenService refreshTokenService, TokenRevocationService tokenRevocationService, LoginWriteBehind loginWriteBehind, StepUpAssertionService stepUpAssertionService, LoginMetrics loginMetrics) {
         this.jwtEncoder = jwtEncoder;
-        this.redisService = redisService;
+        this.redisBatchWriter = redisBatchWriter;
         this.authenticationManagerBuilder = authenticationManagerBuilder;
         this.userRepository = userRepository;
         this.passwordEncoder = passwordEncoder;
+        this.userAuthenticationService = userAuthenticationService;
+        this.credentialCache = credentialCache;
+        this.jwtKeyManager = jwtKeyManager;
+        this.refreshTokenService = refreshTokenService;
+        this.tokenRevocationService = tokenRevocationService;
+        this.loginWriteBehind = loginWriteBehind;
+        this.stepUpAssertionService = stepUpAssertionService;
+        this.loginMetrics = loginMetrics;
     }
 
+    /**
+     * {@code POST /authenticate} : authenticate a user with login or email and password.
+     * <p>
+     * Each phase of the login is timed into {@code auth.login.phase}; sampled requests also get the breakdown in a
+     * {@code Server-Timing} header, whatever the outcome.
+     */
     @PostMapping("/authenticate")
-    public ResponseEntity<JWTToken> authorize(@Valid @RequestBody LoginVM loginVM) {
+    public ResponseEntity<JWTToken> authorize(@Valid @RequestBody LoginVM loginVM, HttpServletResponse response) {
+        LoginMetrics.Outcome outcome = LoginMetrics.Outcome.ERROR;
+        LoginTrace trace = LoginTrace.start(loginVM.getUsername());
+        try {
+            ResponseEntity<JWTToken> token = authenticate(loginVM);
+            outcome = LoginMetrics.Outcome.SUCCESS;
+            return token;
+        } catch (RuntimeException e) {
+            outcome = LoginMetrics.Outcome.of(e);
+            throw e;
+        } finally {
+            trace.close();
+            loginMetrics.record(trace, outcome);
+            if (loginMetrics.sampleServerTiming()) {
+                response.setHeader(LoginMetrics.SERVER_TIMING_HEADER, LoginMetrics.serverTiming(trace));
+            }
+        }
+    }
+
+    private ResponseEntity<JWTToken> authenticate(LoginVM loginVM) {
         UsernamePasswordAuthenticationToken authenticationToken = new UsernamePasswordAuthenticationToken(
             loginVM.getUsername(),
             loginVM.getPassword()
@@ -76,43 +134,133 @@ public class AuthenticateController {
         Authentication authentication = authenticationManagerBuilder.getObject().authenticate(authenticationToken);
         SecurityContextHolder.getContext().setAuthentication(authentication);
 
-        if(!Strings.isNullOrEmpty(loginVM.getFcmToken())) {
-            CustomUserDetails userDetails= (CustomUserDetails) authentication.getPrincipal();
-            Long userId = userDetails.getId();
-            userRepository.updateFcmToken(userId, loginVM.getFcmToken());
+        LoginTrace.time(
+            LoginTrace.Phase.FCM,
+            () -> loginWriteBehind.recordLogin((CustomUserDetails) authentication.getPrincipal(), Strings.emptyToNull(loginVM.getFcmToken()))
+        );
+        String jwt;
+        String refreshToken = null;
+        if (refreshTokenService.isEnabled()) {
+            jwt = this.createToken(authentication, refreshTokenService.getAccessTokenValidity());
+            refreshToken = refreshTokenService.issue(authentication.getName(), loginVM.isRememberMe());
+        } else {
+            jwt = this.createToken(authentication, loginVM.isRememberMe());
         }
-        String jwt = this.createToken(authentication, loginVM.isRememberMe());
         HttpHeaders httpHeaders = new HttpHeaders();
         httpHeaders.setBearerAuth(jwt);
-        return new ResponseEntity<>(new JWTToken(jwt), httpHeaders, HttpStatus.OK);
+        return new ResponseEntity<>(new JWTToken(jwt, refreshToken), httpHeaders, HttpStatus.OK);
     }
 
+    /**
+     * {@code POST /authenticate/refresh} : exchange a refresh token for a new access token and a new refresh token.
+     * <p>
+     * No password is verified here: the presented refresh token is consumed and the user is read from the credential
+     * cache, so that an expired access token is renewed without another password hash.
+     *
+     * @param refreshTokenRecord the refresh token returned by the previous login or refresh.
+     * @return the new token pair, or {@code 401} if the refresh token is invalid or was already used.
+     */
+    @PostMapping("/authenticate/refresh")
+    public ResponseEntity<JWTToken> refresh(@RequestBody RefreshTokenRecord refreshTokenRecord) {
+        RefreshTokenService.Refreshed refreshed = refreshTokenService.rotate(refreshTokenRecord.refreshToken());
+        CustomUserDetails userDetails = userAuthenticationService.loadActiveUser(refreshed.login());
+        String jwt = this.createToken(
+            userDetails.getUsername(),
+            userDetails.getUserId(),
+            userDetails.getAuthorities(),
+            refreshTokenService.getAccessTokenValidity()
+        );
+        HttpHeaders httpHeaders = new HttpHeaders();
+        httpHeaders.setBearerAuth(jwt);
+        return new ResponseEntity<>(new JWTToken(jwt, refreshed.refreshToken()), httpHeaders, HttpStatus.OK);
+    }
+
+    /**
+     * {@code POST /authenticate/logout} : revoke the current access token on every node, and the refresh token family
+     * if one is given.
+     *
+     * @param jwt the access token of the current request.
+     * @param refreshTokenRecord the refresh token to revoke, optional.
+     */
+    @PostMapping("/authenticate/logout")
+    public ResponseEntity<Void> logout(@AuthenticationPrincipal Jwt jwt, @RequestBody(required = false) RefreshTokenRecord refreshTokenRecord) {
+        if (jwt != null && jwt.getExpiresAt() != null) {
+            tokenRevocationService.revokeToken(jwt.getId(), jwt.getExpiresAt());
+        }
+        if (refreshTokenRecord != null) {
+            refreshTokenService.revoke(refreshTokenRecord.refreshToken());
+        }
+        return ResponseEntity.noContent().build();
+    }
+
+    /**
+     * {@code POST /client/authenticate} : re-enter the password of the current user.
+     * <p>
+     * A success returns a step-up assertion in the {@value StepUpAssertionService#HEADER} header. While it is valid,
+     * presenting it again is accepted without checking the password.
+     */
     @PostMapping("/client/authenticate")
-    public ResponseEntity<Boolean> authorize(@RequestBody PasswordRecord passwordRecord) {
-        User user = SecurityUtils.getCurrentUserLogin()
-                .flatMap(userRepository::findOneByLogin).get();
+    public ResponseEntity<Boolean> authorize(
+        @RequestBody PasswordRecord passwordRecord,
+        @AuthenticationPrincipal Jwt accessToken,
+        @RequestHeader(value = StepUpAssertionService.HEADER, required = false) String stepUpAssertion
+    ) {
+        if (stepUpAssertionService.isValid(stepUpAssertion, accessToken, StepUpAssertionService.SCOPE_CLIENT)) {
+            return ResponseEntity.ok(true);
+        }
+        String login = SecurityUtils.getCurrentUserLogin().orElseThrow();
 
         UsernamePasswordAuthenticationToken authenticationToken = new UsernamePasswordAuthenticationToken(
-                user.getLogin(),
+                login,
                 passwordRecord.password()
         );
 
         Authentication authentication = authenticationManagerBuilder.getObject().authenticate(authenticationToken);
         SecurityContextHolder.getContext().setAuthentication(authentication);
-        return ResponseEntity.ok(true);
+        return stepUpResponse(accessToken, StepUpAssertionService.SCOPE_CLIENT, true);
     }
 
+    /**
+     * {@code POST /authenticate/transaction-password} : check the transaction password of the current user.
+     * <p>
+     * A success returns a step-up assertion in the {@value StepUpAssertionService#HEADER} header. While it is valid,
+     * presenting it again is accepted without checking the password.
+     */
     @PostMapping("/authenticate/transaction-password")
-    public ResponseEntity<Boolean> verifyTransactionPassword(@RequestBody PasswordRecord passwordRecord) {
-        User user = SecurityUtils.getCurrentUserLogin()
-                .flatMap(userRepository::findOneByLogin).get();
+    public ResponseEntity<Boolean> verifyTransactionPassword(
+        @RequestBody PasswordRecord passwordRecord,
+        @AuthenticationPrincipal Jwt accessToken,
+        @RequestHeader(value = StepUpAssertionService.HEADER, required = false) String stepUpAssertion
+    ) {
+        if (stepUpAssertionService.isValid(stepUpAssertion, accessToken, StepUpAssertionService.SCOPE_TRANSACTION)) {
+            return ResponseEntity.ok(true);
+        }
+        CredentialSnapshot user = SecurityUtils.getCurrentUserLogin()
+                .flatMap(userAuthenticationService::findCredentials).orElseThrow();
 
         boolean isValid = passwordEncoder.matches(
                 passwordRecord.password(),
-                user.getTransactionPassword()
+                user.transactionPasswordHash()
         );
+        if (
+            isValid &&
+            passwordEncoder.upgradeEncoding(user.transactionPasswordHash()) &&
+            userRepository.replaceTransactionPassword(user.id(), user.transactionPasswordHash(), passwordEncoder.encode(passwordRecord.password())) > 0
+        ) {
+            credentialCache.invalidate(user.login(), user.email());
+            LOG.debug("Upgraded transaction password hash for user {}", user.login());
+        }
 
-        return ResponseEntity.ok(isValid);
+        return stepUpResponse(accessToken, StepUpAssertionService.SCOPE_TRANSACTION, isValid);
+    }
+
+    private ResponseEntity<Boolean> stepUpResponse(Jwt accessToken, String scope, boolean verified) {
+        if (!verified) {
+            return ResponseEntity.ok(false);
+        }
+        HttpHeaders httpHeaders = new HttpHeaders();
+        stepUpAssertionService.mint(accessToken, scope).ifPresent(assertion -> httpHeaders.set(StepUpAssertionService.HEADER, assertion));
+        return new ResponseEntity<>(true, httpHeaders, HttpStatus.OK);
     }
 
 
@@ -129,30 +277,37 @@ public class AuthenticateController {
     }
 
     public String createToken(Authentication authentication, boolean rememberMe) {
-        String authorities = authentication.getAuthorities().stream().map(GrantedAuthority::getAuthority).collect(Collectors.joining(" "));
+        return createToken(
+            authentication,
+            Duration.ofSeconds(rememberMe ? this.tokenValidityInSecondsForRememberMe : this.tokenValidityInSeconds)
+        );
+    }
+
+    private String createToken(Authentication authentication, Duration validity) {
         CustomUserDetails userDetails= (CustomUserDetails) authentication.getPrincipal();
-        String userId = userDetails.getUserId();
+        return createToken(authentication.getName(), userDetails.getUserId(), authentication.getAuthorities(), validity);
+    }
+
+    private String createToken(String login, String userId, Collection<? extends GrantedAuthority> grantedAuthorities, Duration tokenValidity) {
+        String authorities = grantedAuthorities.stream().map(GrantedAuthority::getAuthority).collect(Collectors.joining(" "));
         Instant now = Instant.now();
-        Instant validity;
-        if (rememberMe) {
-            validity = now.plus(this.tokenValidityInSecondsForRememberMe, ChronoUnit.SECONDS);
-        } else {
-            validity = now.plus(this.tokenValidityInSeconds, ChronoUnit.SECONDS);
-        }
+        Instant validity = now.plus(tokenValidity);
         long instant = LocalDateTime.now().atZone(ZoneOffset.UTC).toInstant().toEpochMilli();
 
         // @formatter:off
         JwtClaimsSet claims = JwtClaimsSet.builder()
+            .id(UUID.randomUUID().toString())
             .issuedAt(now)
             .expiresAt(validity)
-            .subject(authentication.getName())
+            .subject(login)
             .claim(SecurityUtils.AUTHORITIES_KEY, authorities)
             .claim("userId", userId)
             .claim("creationTimeStamp", instant)
+            .claim(TokenRevocationService.GENERATION_CLAIM, tokenRevocationService.currentGeneration(login))
             .build();
-        redisService.saveToCustomCacheWithTTL("tokenManager",userId,instant,24,TimeUnit.HOURS);
-        JwsHeader jwsHeader = JwsHeader.with(SecurityUtils.JWT_ALGORITHM).build();
-        return this.jwtEncoder.encode(JwtEncoderParameters.from(jwsHeader, claims)).getTokenValue();
+        LoginTrace.time(LoginTrace.Phase.REDIS, () -> redisBatchWriter.saveToCustomCacheWithTTL("tokenManager",userId,instant,24,TimeUnit.HOURS));
+        JwsHeader jwsHeader = JwsHeader.with(SignatureAlgorithm.ES256).keyId(jwtKeyManager.activeKey().getKeyID()).build();
+        return LoginTrace.time(LoginTrace.Phase.JWT, () -> this.jwtEncoder.encode(JwtEncoderParameters.from(jwsHeader, claims)).getTokenValue());
     }
 
     /**
@@ -162,8 +317,11 @@ public class AuthenticateController {
 
         private String idToken;
 
-        JWTToken(String idToken) {
+        private String refreshToken;
+
+        JWTToken(String idToken, String refreshToken) {
             this.idToken = idToken;
+            this.refreshToken = refreshToken;
         }
 
         @JsonProperty("id_token")
@@ -174,6 +332,16 @@ public class AuthenticateController {
         void setIdToken(String idToken) {
             this.idToken = idToken;
         }
+
+        @JsonProperty("refresh_token")
+        @JsonInclude(JsonInclude.Include.NON_NULL)
+        String getRefreshToken() {
+            return refreshToken;
+        }
+
+        void setRefreshToken(String refreshToken) {
+            this.refreshToken = refreshToken;
+        }
     }
 
     @GetMapping("/greet")
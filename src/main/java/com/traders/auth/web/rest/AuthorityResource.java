@@ -5,6 +5,7 @@ import com.traders.common.appconfig.util.ResponseUtil;
 import com.traders.auth.domain.Authority;
 import com.traders.auth.exception.BadRequestAlertException;
 import com.traders.auth.repository.AuthorityRepository;
+import com.traders.auth.service.ReferenceDataRegistry;
 import jakarta.validation.Valid;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -35,8 +36,11 @@ public class AuthorityResource {
 
     private final AuthorityRepository authorityRepository;
 
-    public AuthorityResource(AuthorityRepository authorityRepository) {
+    private final ReferenceDataRegistry referenceDataRegistry;
+
+    public AuthorityResource(AuthorityRepository authorityRepository, ReferenceDataRegistry referenceDataRegistry) {
         this.authorityRepository = authorityRepository;
+        this.referenceDataRegistry = referenceDataRegistry;
     }
 
     /**
@@ -54,6 +58,7 @@ public class AuthorityResource {
             throw new BadRequestAlertException("authority already exists", ENTITY_NAME, "idexists");
         }
         authority = authorityRepository.save(authority);
+        referenceDataRegistry.refresh();
         return ResponseEntity.created(new URI("/api/authorities/" + authority.getName()))
             .headers(HeaderUtil.createEntityCreationAlert(applicationName, false, ENTITY_NAME, authority.getName()))
             .body(authority);
@@ -96,6 +101,7 @@ public class AuthorityResource {
     public ResponseEntity<Void> deleteAuthority(@PathVariable("id") String id) {
         LOG.debug("REST request to delete Authority : {}", id);
         authorityRepository.deleteById(id);
+        referenceDataRegistry.refresh();
         return ResponseEntity.noContent().headers(HeaderUtil.createEntityDeletionAlert(applicationName, false, ENTITY_NAME, id)).build();
     }
 }
@@ -0,0 +1,38 @@
+package com.traders.auth.web.rest;
+
+import com.traders.auth.properties.AuthProperties;
+import com.traders.auth.security.JwtKeyManager;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+
+/**
+ * Publishes the public JWT signing keys so other services can verify tokens without calling back.
+ */
+@RestController
+public class JwksResource {
+
+    private final JwtKeyManager jwtKeyManager;
+
+    private final AuthProperties authProperties;
+
+    public JwksResource(JwtKeyManager jwtKeyManager, AuthProperties authProperties) {
+        this.jwtKeyManager = jwtKeyManager;
+        this.authProperties = authProperties;
+    }
+
+    /**
+     * {@code GET /.well-known/jwks.json} : the currently published signing keys, including the next key to be used.
+     *
+     * @return the JSON Web Key Set, cacheable for {@code auth.jwt.jwks-max-age}.
+     */
+    @GetMapping("/.well-known/jwks.json")
+    public ResponseEntity<Map<String, Object>> getJwks() {
+        return ResponseEntity.ok()
+            .cacheControl(CacheControl.maxAge(authProperties.getJwt().getJwksMaxAge()).cachePublic())
+            .body(jwtKeyManager.publicJwkSet());
+    }
+}
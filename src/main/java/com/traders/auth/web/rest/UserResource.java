@@ -9,8 +9,13 @@ import com.traders.auth.exception.EmailAlreadyUsedException;
 import com.traders.auth.exception.LoginAlreadyUsedException;
 import com.traders.auth.repository.UserRepository;
 import com.traders.auth.service.MailService;
+import com.traders.auth.service.DownlineAggregateService;
+import com.traders.auth.service.UserHierarchyService;
 import com.traders.auth.service.UserService;
 import com.traders.auth.service.dto.AdminUserDTO;
+import com.traders.auth.service.dto.DownlineLevelDTO;
+import com.traders.auth.service.dto.DownlineSummaryDTO;
+import com.traders.auth.service.dto.DownlineUserDTO;
 import com.traders.common.constants.AppConstants;
 import com.traders.common.constants.AuthoritiesConstants;
 import jakarta.validation.Valid;
@@ -89,10 +94,22 @@ public class UserResource {
 
     private final MailService mailService;
 
-    public UserResource(UserService userService, UserRepository userRepository, MailService mailService) {
+    private final UserHierarchyService userHierarchyService;
+
+    private final DownlineAggregateService downlineAggregateService;
+
+    public UserResource(
+        UserService userService,
+        UserRepository userRepository,
+        MailService mailService,
+        UserHierarchyService userHierarchyService,
+        DownlineAggregateService downlineAggregateService
+    ) {
         this.userService = userService;
         this.userRepository = userRepository;
         this.mailService = mailService;
+        this.userHierarchyService = userHierarchyService;
+        this.downlineAggregateService = downlineAggregateService;
     }
 
     /**
@@ -202,6 +219,7 @@ public class UserResource {
      *
      * @param login the login of the user to delete.
      * @return the {@link ResponseEntity} with status {@code 204 (NO_CONTENT)}.
+     * @throws BadRequestAlertException {@code 400 (Bad Request)} if the user has a downline; move it first.
      */
     @DeleteMapping("/users/{login}")
     @PreAuthorize("hasAuthority(\"" + AuthoritiesConstants.ADMIN + "\")")
@@ -212,4 +230,101 @@ public class UserResource {
             .headers(HeaderUtil.createAlert(applicationName, "A user is deleted with identifier " + login, login))
             .build();
     }
+
+    /**
+     * {@code GET /admin/users/:login/downline} : get a page of the users below the "login" user, ordered by id.
+     * <p>
+     * Pages are keyed on the last id: the {@code Link} header points to the next page when this one is full, and the
+     * first page carries the size of the whole downline within {@code maxDepth} in {@code X-Total-Count}.
+     *
+     * @param login the login of the user whose downline to get.
+     * @param maxDepth levels to include, all of them if absent.
+     * @param after id of the last user of the previous page, absent for the first page.
+     * @param size users per page.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the users, or with status {@code 404 (Not Found)}.
+     */
+    @GetMapping("/users/{login}/downline")
+    @PreAuthorize("hasAuthority(\"" + AuthoritiesConstants.ADMIN + "\")")
+    public ResponseEntity<List<DownlineUserDTO>> getDownline(
+        @PathVariable("login") @Pattern(regexp = AppConstants.LOGIN_REGEX) String login,
+        @RequestParam(name = "maxDepth", required = false) Integer maxDepth,
+        @RequestParam(name = "after", required = false) Long after,
+        @RequestParam(name = "size", required = false) Integer size
+    ) {
+        LOG.debug("REST request to get the downline of User : {}", login);
+        return userRepository
+            .findOneByLogin(login)
+            .map(user -> {
+                List<DownlineUserDTO> page = userHierarchyService.downline(user.getId(), maxDepth, after, size);
+                HttpHeaders headers = new HttpHeaders();
+                if (after == null) {
+                    long total = userHierarchyService.downlineLevels(user.getId(), maxDepth).stream().mapToLong(DownlineLevelDTO::users).sum();
+                    headers.add("X-Total-Count", Long.toString(total));
+                }
+                if (page.size() == userHierarchyService.downlinePageSize(size)) {
+                    String next = ServletUriComponentsBuilder.fromCurrentRequest()
+                        .replaceQueryParam("after", page.get(page.size() - 1).id())
+                        .toUriString();
+                    headers.add(HttpHeaders.LINK, "<" + next + ">; rel=\"next\"");
+                }
+                return new ResponseEntity<>(page, headers, HttpStatus.OK);
+            })
+            .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    /**
+     * {@code GET /admin/users/:login/downline/levels} : get the number of users at each level below the "login" user.
+     *
+     * @param login the login of the user whose downline to count.
+     * @param maxDepth levels to include, all of them if absent.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the counts per level, or with status {@code 404 (Not Found)}.
+     */
+    @GetMapping("/users/{login}/downline/levels")
+    @PreAuthorize("hasAuthority(\"" + AuthoritiesConstants.ADMIN + "\")")
+    public ResponseEntity<List<DownlineLevelDTO>> getDownlineLevels(
+        @PathVariable("login") @Pattern(regexp = AppConstants.LOGIN_REGEX) String login,
+        @RequestParam(name = "maxDepth", required = false) Integer maxDepth
+    ) {
+        LOG.debug("REST request to count the downline of User : {}", login);
+        return ResponseUtil.wrapOrNotFound(userRepository.findOneByLogin(login).map(user -> userHierarchyService.downlineLevels(user.getId(), maxDepth)));
+    }
+
+    /**
+     * {@code GET /admin/users/:login/downline/summary} : get the user count, active user count, total wallet balance and
+     * users per authority of the downline of the "login" user, as of at most {@code auth.downline-aggregates.fold-interval} ago.
+     *
+     * @param login the login of the user whose downline to sum up.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the totals, or with status {@code 404 (Not Found)}.
+     */
+    @GetMapping("/users/{login}/downline/summary")
+    @PreAuthorize("hasAuthority(\"" + AuthoritiesConstants.ADMIN + "\")")
+    public ResponseEntity<DownlineSummaryDTO> getDownlineSummary(@PathVariable("login") @Pattern(regexp = AppConstants.LOGIN_REGEX) String login) {
+        LOG.debug("REST request to sum up the downline of User : {}", login);
+        return ResponseUtil.wrapOrNotFound(userRepository.findOneByLogin(login).map(user -> downlineAggregateService.summary(user.getId())));
+    }
+
+    /**
+     * {@code PUT /admin/users/:login/parent/:parentLogin} : move the "login" user, with its downline, under the "parentLogin" user.
+     *
+     * @param login the login of the user to move.
+     * @param parentLogin the login of the new parent.
+     * @return the {@link ResponseEntity} with status {@code 204 (NO_CONTENT)}, or with status {@code 404 (Not Found)} if either user does not exist.
+     * @throws BadRequestAlertException {@code 400 (Bad Request)} if the new parent is the user or one of its downline.
+     */
+    @PutMapping("/users/{login}/parent/{parentLogin}")
+    @PreAuthorize("hasAuthority(\"" + AuthoritiesConstants.ADMIN + "\")")
+    public ResponseEntity<Void> changeParentUser(
+        @PathVariable("login") @Pattern(regexp = AppConstants.LOGIN_REGEX) String login,
+        @PathVariable("parentLogin") @Pattern(regexp = AppConstants.LOGIN_REGEX) String parentLogin
+    ) {
+        LOG.debug("REST request to move User {} under {}", login, parentLogin);
+        return userService
+            .changeParentUser(login, parentLogin)
+            .<ResponseEntity<Void>>map(user ->
+                ResponseEntity.noContent()
+                    .headers(HeaderUtil.createAlert(applicationName, "A user is moved with identifier " + login, login))
+                    .build()
+            )
+            .orElseGet(() -> ResponseEntity.notFound().build());
+    }
 }
@@ -0,0 +1,67 @@
+package com.traders.auth.web.rest;
+
+import com.traders.common.appconfig.util.ResponseUtil;
+import com.traders.auth.exception.BadRequestAlertException;
+import com.traders.auth.service.WalletService;
+import com.traders.auth.service.dto.WalletDTO;
+import com.traders.auth.web.rest.model.WalletOperationRecord;
+import com.traders.common.constants.AuthoritiesConstants;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Locale;
+
+/**
+ * REST controller for the balance of wallets, amounts in minor units (cents).
+ */
+@RestController
+@RequestMapping("/api/admin")
+public class WalletResource {
+
+    private static final Logger LOG = LoggerFactory.getLogger(WalletResource.class);
+
+    private final WalletService walletService;
+
+    public WalletResource(WalletService walletService) {
+        this.walletService = walletService;
+    }
+
+    /**
+     * {@code GET /admin/wallets/:walletId} : get the balance, held amount and version of the wallet.
+     *
+     * @param walletId the id of the wallet.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the wallet, or with status {@code 404 (Not Found)}.
+     */
+    @GetMapping("/wallets/{walletId}")
+    @PreAuthorize("hasAuthority(\"" + AuthoritiesConstants.ADMIN + "\")")
+    public ResponseEntity<WalletDTO> getWallet(@PathVariable("walletId") Long walletId) {
+        LOG.debug("REST request to get Wallet : {}", walletId);
+        return ResponseUtil.wrapOrNotFound(walletService.getWallet(walletId));
+    }
+
+    /**
+     * {@code POST /admin/wallets/:walletId/:operation} : credit, debit, hold or release an amount, at the expected
+     * version if one is given.
+     *
+     * @param walletId the id of the wallet.
+     * @param operation {@code credit}, {@code debit}, {@code hold} or {@code release}.
+     * @param request the amount and the expected version.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the wallet after the operation, or with status {@code 404 (Not Found)}.
+     * @throws BadRequestAlertException {@code 400 (Bad Request)} if the amount is not positive or not available.
+     * Responds {@code 409 (Conflict)} if the wallet is not at the expected version.
+     */
+    @PostMapping("/wallets/{walletId}/{operation:credit|debit|hold|release}")
+    @PreAuthorize("hasAuthority(\"" + AuthoritiesConstants.ADMIN + "\")")
+    public ResponseEntity<WalletDTO> applyOperation(
+        @PathVariable("walletId") Long walletId,
+        @PathVariable("operation") String operation,
+        @RequestBody WalletOperationRecord request
+    ) {
+        LOG.debug("REST request to {} {} on Wallet : {}", operation, request.amountMinor(), walletId);
+        WalletService.Operation walletOperation = WalletService.Operation.valueOf(operation.toUpperCase(Locale.ENGLISH));
+        return ResponseUtil.wrapOrNotFound(walletService.apply(walletId, walletOperation, request.amountMinor(), request.expectedVersion()));
+    }
+}
@@ -1,6 +1,8 @@
 package com.traders.auth.web.rest.errors;
 
 import com.traders.auth.exception.InvalidPasswordException;
+import com.traders.auth.exception.LoginThrottledException;
+import com.traders.auth.exception.PasswordHashingRejectedException;
 import com.traders.common.appconfig.rest.ProblemDetailWithCause;
 import com.traders.common.appconfig.util.HeaderUtil;
 import com.traders.auth.exception.BadRequestAlertException;
@@ -18,6 +20,7 @@ import org.springframework.http.converter.HttpMessageConversionException;
 import org.springframework.lang.Nullable;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.LockedException;
 import org.springframework.web.ErrorResponse;
 import org.springframework.web.ErrorResponseException;
 import org.springframework.web.bind.MethodArgumentNotValidException;
@@ -69,6 +72,17 @@ public class ExceptionTranslator extends ResponseEntityExceptionHandler {
         return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(problemDetail);
     }
 
+    @ExceptionHandler(PasswordHashingRejectedException.class)
+    public ResponseEntity<Object> handlePasswordHashingRejected(PasswordHashingRejectedException ex){
+        ProblemDetail problemDetail = ProblemDetail.forStatus(HttpStatus.SERVICE_UNAVAILABLE);
+        problemDetail.setTitle("Service Unavailable");
+        problemDetail.setDetail(ex.getMessage());
+
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(ex.getRetryAfterSeconds()))
+                .body(problemDetail);
+    }
+
     @Nullable
     @Override
     protected ResponseEntity<Object> handleExceptionInternal(
@@ -206,6 +220,7 @@ public class ExceptionTranslator extends ResponseEntityExceptionHandler {
         if (err instanceof AccessDeniedException) return HttpStatus.FORBIDDEN;
         if (err instanceof ConcurrencyFailureException) return HttpStatus.CONFLICT;
         if (err instanceof BadCredentialsException) return HttpStatus.UNAUTHORIZED;
+        if (err instanceof LockedException) return HttpStatus.LOCKED;
         return null;
     }
 
@@ -215,6 +230,12 @@ public class ExceptionTranslator extends ResponseEntityExceptionHandler {
     }
 
     private HttpHeaders buildHeaders(Throwable err) {
+        // thrown while loading the user, so it arrives wrapped by the authentication provider
+        if (err.getCause() instanceof LoginThrottledException throttled) {
+            HttpHeaders headers = new HttpHeaders();
+            headers.set(HttpHeaders.RETRY_AFTER, String.valueOf(throttled.getRetryAfterSeconds()));
+            return headers;
+        }
         return err instanceof BadRequestAlertException badRequestAlertException
             ? HeaderUtil.createFailureAlert(
                 applicationName,
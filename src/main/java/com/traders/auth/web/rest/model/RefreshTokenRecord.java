@@ -0,0 +1,8 @@
+package com.traders.auth.web.rest.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+public record RefreshTokenRecord(
+        @JsonProperty("refresh_token") String refreshToken
+) {
+}
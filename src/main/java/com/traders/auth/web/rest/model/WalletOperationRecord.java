@@ -0,0 +1,11 @@
+package com.traders.auth.web.rest.model;
+
+/**
+ * @param amountMinor the amount in minor units (cents).
+ * @param expectedVersion the wallet version the operation only applies at, if any.
+ */
+public record WalletOperationRecord(
+        long amountMinor,
+        Long expectedVersion
+) {
+}
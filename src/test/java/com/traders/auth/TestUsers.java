@@ -0,0 +1,49 @@
+package com.traders.auth;
+
+import com.traders.auth.domain.Authority;
+import com.traders.auth.domain.User;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Users for the tests running against the database: activated, with an email made from the login and a password
+ * hash of the stored length.
+ */
+public final class TestUsers {
+
+    public static final String PASSWORD_HASH = "$2a$10$" + "a".repeat(53);
+
+    private static final AtomicInteger SEQUENCE = new AtomicInteger();
+
+    private TestUsers() {}
+
+    /**
+     * A login no other test user has, for tests whose users outlive them in the shared in-memory database or in a
+     * cache.
+     */
+    public static String uniqueLogin(String prefix) {
+        return prefix + SEQUENCE.incrementAndGet();
+    }
+
+    /**
+     * A new user, not persisted yet.
+     */
+    public static User user(String login, User parent, Authority... authorities) {
+        User user = new User();
+        user.setLogin(login);
+        user.setEmail(login + "@localhost.test");
+        user.setPassword(PASSWORD_HASH);
+        user.setActivated(true);
+        user.setCreatedBy("system");
+        user.setParentUser(parent);
+        user.setAuthorities(new HashSet<>(Set.of(authorities)));
+        return user;
+    }
+
+    public static User persist(TestEntityManager entityManager, String login, User parent, Authority... authorities) {
+        return entityManager.persist(user(login, parent, authorities));
+    }
+}
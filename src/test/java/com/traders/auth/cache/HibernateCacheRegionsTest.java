@@ -0,0 +1,99 @@
+package com.traders.auth.cache;
+
+import com.traders.auth.domain.User;
+import com.traders.auth.properties.AuthProperties;
+import com.traders.auth.repository.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.hibernate.cache.cfg.spi.CollectionDataCachingConfig;
+import org.hibernate.cache.cfg.spi.DomainDataRegionConfig;
+import org.hibernate.cache.cfg.spi.EntityDataCachingConfig;
+import org.hibernate.cache.spi.RegionFactory;
+import org.hibernate.cache.spi.access.AccessType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.redisson.api.RedissonClient;
+
+import javax.cache.Cache;
+import javax.cache.CacheManager;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Which second-level cache regions get a near cache: every region below asks for one, only those whose entries may be
+ * served stale get it.
+ */
+class HibernateCacheRegionsTest {
+
+    private static final String USER_REGION = User.class.getName();
+
+    private static final String AUTHORITIES_REGION = User.class.getName() + ".authorities";
+
+    private HibernateCacheRegions regions;
+
+    @BeforeEach
+    void setUp() {
+        AuthProperties authProperties = new AuthProperties();
+        authProperties.getHibernateCache().getDefaults().setNearCacheMaxSize(100);
+        regions = new HibernateCacheRegions(mock(CacheManager.class), mock(RedissonClient.class), authProperties, new SimpleMeterRegistry());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Cache<Object, Object> sharedCache() {
+        return mock(Cache.class);
+    }
+
+    private static DomainDataRegionConfig regionConfig(AccessType entityAccess, AccessType collectionAccess) {
+        EntityDataCachingConfig entity = mock(EntityDataCachingConfig.class);
+        when(entity.getAccessType()).thenReturn(entityAccess);
+        CollectionDataCachingConfig collection = mock(CollectionDataCachingConfig.class);
+        when(collection.getAccessType()).thenReturn(collectionAccess);
+        DomainDataRegionConfig config = mock(DomainDataRegionConfig.class);
+        when(config.getEntityCaching()).thenReturn(List.of(entity));
+        when(config.getNaturalIdCaching()).thenReturn(List.of());
+        when(config.getCollectionCaching()).thenReturn(List.of(collection));
+        return config;
+    }
+
+    @Test
+    void onlyRegionsWhollyReadOnlyCountAsReadOnly() {
+        assertThat(RedissonJCacheRegionFactory.isReadOnly(regionConfig(AccessType.READ_ONLY, AccessType.READ_ONLY))).isTrue();
+        assertThat(RedissonJCacheRegionFactory.isReadOnly(regionConfig(AccessType.READ_WRITE, AccessType.READ_ONLY))).isFalse();
+        assertThat(RedissonJCacheRegionFactory.isReadOnly(regionConfig(AccessType.READ_ONLY, AccessType.NONSTRICT_READ_WRITE))).isFalse();
+    }
+
+    @Test
+    void credentialRegionsGetNoNearCache() {
+        regions.sharedOnly(USER_REGION);
+        regions.sharedOnly(AUTHORITIES_REGION);
+        Cache<Object, Object> users = sharedCache();
+        Cache<Object, Object> authorities = sharedCache();
+
+        assertThat(regions.withNearCache(USER_REGION, users)).isSameAs(users);
+        assertThat(regions.withNearCache(AUTHORITIES_REGION, authorities)).isSameAs(authorities);
+    }
+
+    @Test
+    void updateTimestampsGetNoNearCache() {
+        Cache<Object, Object> timestamps = sharedCache();
+
+        assertThat(regions.withNearCache(RegionFactory.DEFAULT_UPDATE_TIMESTAMPS_REGION_UNQUALIFIED_NAME, timestamps)).isSameAs(timestamps);
+    }
+
+    @Test
+    void queryResultsAreNearCached() {
+        Cache<Object, Object> shared = sharedCache();
+        when(shared.get("alice")).thenReturn(List.of(1L));
+
+        Cache<Object, Object> cache = regions.withNearCache(UserRepository.USERS_BY_LOGIN_CACHE, shared);
+        cache.get("alice");
+        cache.get("alice");
+
+        assertThat(cache).isInstanceOf(NearCache.class);
+        verify(shared, times(1)).get("alice");
+    }
+}
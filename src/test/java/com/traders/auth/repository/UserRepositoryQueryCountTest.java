@@ -0,0 +1,89 @@
+package com.traders.auth.repository;
+
+import com.traders.auth.TestUsers;
+import com.traders.auth.domain.Authority;
+import com.traders.auth.domain.User;
+import com.traders.auth.security.CredentialSnapshot;
+import org.hibernate.Hibernate;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.test.context.ActiveProfiles;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * SQL statements run by the {@link UserRepository} lookups, with the second-level and query caches off.
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("testdev")
+class UserRepositoryQueryCountTest {
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    private Statistics statistics;
+
+    private Long clientId;
+
+    @BeforeEach
+    void setUp() {
+        Authority authority = entityManager.persist(new Authority().name("ROLE_USER"));
+        User root = TestUsers.persist(entityManager, "root", null, authority);
+        User broker = TestUsers.persist(entityManager, "broker", root, authority);
+        clientId = TestUsers.persist(entityManager, "client", broker, authority).getId();
+        entityManager.flush();
+        entityManager.clear();
+        statistics = entityManager.getEntityManager().getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @Test
+    void loginByLoginRunsOneStatement() {
+        User user = userRepository.findOneWithAuthoritiesByLogin("client").orElseThrow();
+
+        CredentialSnapshot credentials = CredentialSnapshot.of(user);
+
+        assertThat(credentials.authorities()).containsExactly("ROLE_USER");
+        assertThat(Hibernate.isInitialized(user.getParentUser())).isFalse();
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+
+    @Test
+    void loginByEmailRunsOneStatement() {
+        User user = userRepository.findOneWithAuthoritiesByEmailIgnoreCase("CLIENT@localhost.test").orElseThrow();
+
+        CredentialSnapshot credentials = CredentialSnapshot.of(user);
+
+        assertThat(credentials.login()).isEqualTo("client");
+        assertThat(Hibernate.isInitialized(user.getParentUser())).isFalse();
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+
+    @Test
+    void findOneByLoginLeavesTheParentUnloaded() {
+        User user = userRepository.findOneByLogin("client").orElseThrow();
+
+        assertThat(Hibernate.isInitialized(user.getParentUser())).isFalse();
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+
+    @Test
+    void parentUserGraphLoadsOnlyTheParent() {
+        User user = userRepository.findOneWithParentUserById(clientId).orElseThrow();
+
+        assertThat(Hibernate.isInitialized(user.getParentUser())).isTrue();
+        assertThat(user.getParentUser().getLogin()).isEqualTo("broker");
+        assertThat(Hibernate.isInitialized(user.getParentUser().getParentUser())).isFalse();
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+}
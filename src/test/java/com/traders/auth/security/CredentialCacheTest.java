@@ -0,0 +1,130 @@
+package com.traders.auth.security;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.traders.auth.properties.AuthProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.redisson.api.RMapCache;
+import org.redisson.api.RTopic;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.Codec;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Lookups interleaved with invalidations, against an in-memory stand-in for the shared Redis map.
+ */
+class CredentialCacheTest {
+
+    private static final String KEY = CredentialCache.loginKey("alice");
+
+    private final Map<String, String> redis = new ConcurrentHashMap<>();
+
+    private final AtomicInteger loads = new AtomicInteger();
+
+    private volatile Runnable onSharedRead = () -> {};
+
+    private CredentialCache cache;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        RMapCache<String, String> shared = mock(RMapCache.class);
+        when(shared.get(any())).thenAnswer(invocation -> {
+            String value = redis.get((String) invocation.getArgument(0));
+            onSharedRead.run();
+            return value;
+        });
+        when(shared.fastPutIfAbsent(anyString(), anyString(), anyLong(), any(TimeUnit.class))).thenAnswer(invocation ->
+            redis.putIfAbsent(invocation.getArgument(0), invocation.getArgument(1)) == null
+        );
+        doAnswer(invocation -> {
+            redis.putAll(invocation.getArgument(0));
+            return null;
+        })
+            .when(shared)
+            .putAll(anyMap(), anyLong(), any(TimeUnit.class));
+        RedissonClient redissonClient = mock(RedissonClient.class);
+        when(redissonClient.<String, String>getMapCache(eq("auth:credentials"), any(Codec.class))).thenReturn(shared);
+        when(redissonClient.getTopic(anyString(), any(Codec.class))).thenReturn(mock(RTopic.class));
+        cache = new CredentialCache(redissonClient, new ObjectMapper(), new AuthProperties(), new SimpleMeterRegistry());
+    }
+
+    private static CredentialSnapshot snapshot(String passwordHash) {
+        return new CredentialSnapshot(1L, "alice", "alice@localhost.test", passwordHash, null, true, 0, List.of("ROLE_USER"), null);
+    }
+
+    private Optional<CredentialSnapshot> get(String passwordHash) {
+        return cache.get(KEY, () -> {
+            loads.incrementAndGet();
+            return Optional.of(snapshot(passwordHash));
+        });
+    }
+
+    @Test
+    void loadedSnapshotIsCached() {
+        get("hash");
+        Optional<CredentialSnapshot> cached = get("other");
+
+        assertThat(cached).map(CredentialSnapshot::passwordHash).contains("hash");
+        assertThat(loads).hasValue(1);
+    }
+
+    @Test
+    void loadOverlappingAnInvalidationIsNotCached() {
+        // the lookup read the old row, then the password change committed and invalidated before it finished
+        Optional<CredentialSnapshot> inFlight = cache.get(KEY, () -> {
+            loads.incrementAndGet();
+            cache.invalidate("alice", "alice@localhost.test");
+            return Optional.of(snapshot("old-hash"));
+        });
+
+        assertThat(inFlight).map(CredentialSnapshot::passwordHash).contains("old-hash");
+        assertThat(redis).containsEntry(KEY, CredentialCache.TOMBSTONE);
+        assertThat(get("new-hash")).map(CredentialSnapshot::passwordHash).contains("new-hash");
+        assertThat(loads).hasValue(2);
+    }
+
+    @Test
+    void sharedHitOverlappingAnInvalidationIsNotKeptLocally() throws Exception {
+        // another node cached the old snapshot, this one reads it just as the invalidation comes in
+        redis.put(KEY, new ObjectMapper().writeValueAsString(snapshot("old-hash")));
+        onSharedRead = () -> {
+            onSharedRead = () -> {};
+            cache.invalidate("alice", "alice@localhost.test");
+        };
+
+        assertThat(get("unused")).map(CredentialSnapshot::passwordHash).contains("old-hash");
+        assertThat(get("new-hash")).map(CredentialSnapshot::passwordHash).contains("new-hash");
+        assertThat(loads).hasValue(1);
+    }
+
+    @Test
+    void invalidatedEntryIsLoadedAgainAfterTheTombstone() {
+        get("old-hash");
+        cache.invalidate("alice", "alice@localhost.test");
+
+        assertThat(get("new-hash")).map(CredentialSnapshot::passwordHash).contains("new-hash");
+        // the tombstone expired
+        redis.remove(KEY);
+        get("new-hash");
+        assertThat(get("unused")).map(CredentialSnapshot::passwordHash).contains("new-hash");
+        assertThat(loads).hasValue(3);
+    }
+}
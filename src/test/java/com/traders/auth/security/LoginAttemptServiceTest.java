@@ -0,0 +1,94 @@
+package com.traders.auth.security;
+
+import com.traders.auth.exception.LoginThrottledException;
+import com.traders.auth.properties.AuthProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.redisson.api.RScript;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.Codec;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.authentication.event.AuthenticationFailureBadCredentialsEvent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Attempts and failures by login and by email, which must count against the one account they name.
+ */
+class LoginAttemptServiceTest {
+
+    private final List<List<Object>> scriptKeys = new ArrayList<>();
+
+    private LoginAttemptService loginAttemptService;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        RScript script = mock(RScript.class);
+        when(script.eval(any(RScript.Mode.class), anyString(), any(RScript.ReturnType.class), anyList(), any(Object[].class))).thenAnswer(invocation -> {
+            scriptKeys.add(invocation.getArgument(3));
+            return 0L;
+        });
+        RedissonClient redissonClient = mock(RedissonClient.class);
+        when(redissonClient.getScript(any(Codec.class))).thenReturn(script);
+        UserAuthenticationService userAuthenticationService = mock(UserAuthenticationService.class);
+        when(userAuthenticationService.findUserId(anyString())).thenReturn(Optional.empty());
+        when(userAuthenticationService.findUserId(eq("alice"))).thenReturn(Optional.of(42L));
+        when(userAuthenticationService.findUserId(eq("Alice@Localhost.test"))).thenReturn(Optional.of(42L));
+        ObjectProvider<UserAuthenticationService> provider = mock(ObjectProvider.class);
+        when(provider.getObject()).thenReturn(userAuthenticationService);
+        AuthProperties authProperties = new AuthProperties();
+        authProperties.getThrottling().getAccount().setCapacity(2);
+        RateLimiter rateLimiter = new RateLimiter(redissonClient, authProperties, new SimpleMeterRegistry());
+        loginAttemptService = new LoginAttemptService(redissonClient, rateLimiter, provider, authProperties, new SimpleMeterRegistry());
+    }
+
+    private void fail(String login) {
+        loginAttemptService.onFailure(
+            new AuthenticationFailureBadCredentialsEvent(new UsernamePasswordAuthenticationToken(login, "wrong"), new BadCredentialsException("Bad credentials"))
+        );
+    }
+
+    @Test
+    void failuresByLoginAndByEmailLockTheSameAccount() {
+        fail("alice");
+        fail("Alice@Localhost.test");
+
+        assertThat(scriptKeys).hasSize(2);
+        assertThat(scriptKeys.get(0)).isEqualTo(scriptKeys.get(1));
+        assertThat(scriptKeys.get(0)).allSatisfy(key -> assertThat((String) key).contains("{user:42}"));
+    }
+
+    @Test
+    void unknownIdentifiersAreNormalized() {
+        fail("Nobody");
+        fail("nobody");
+
+        assertThat(scriptKeys.get(0)).isEqualTo(scriptKeys.get(1));
+        assertThat(scriptKeys.get(0)).allSatisfy(key -> assertThat((String) key).contains("{unknown:nobody}"));
+    }
+
+    @Test
+    void attemptsOfOneAccountShareABucket() {
+        String account = LoginAttemptService.account(42L);
+        loginAttemptService.checkAttempt(account);
+        loginAttemptService.checkAttempt(account);
+
+        assertThatThrownBy(() -> loginAttemptService.checkAttempt(account)).isInstanceOf(LoginThrottledException.class);
+        loginAttemptService.checkAttempt(LoginAttemptService.account(43L));
+    }
+}
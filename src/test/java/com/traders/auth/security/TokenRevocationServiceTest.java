@@ -0,0 +1,148 @@
+package com.traders.auth.security;
+
+import com.traders.auth.properties.AuthProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.redisson.api.RMap;
+import org.redisson.api.RMapCache;
+import org.redisson.api.RTopic;
+import org.redisson.api.RedissonClient;
+import org.redisson.api.listener.MessageListener;
+import org.redisson.client.codec.Codec;
+import org.springframework.security.oauth2.jwt.Jwt;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Revocations made on one node and seen by the others, through an in-memory stand-in for the Redis maps and topic.
+ */
+class TokenRevocationServiceTest {
+
+    private final Map<String, Long> generations = new ConcurrentHashMap<>();
+
+    private final Map<String, Long> tokens = new ConcurrentHashMap<>();
+
+    private final List<MessageListener<String>> listeners = new CopyOnWriteArrayList<>();
+
+    private RedissonClient redissonClient;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        RMap<String, Long> sharedGenerations = mock(RMap.class);
+        when(sharedGenerations.addAndGet(anyString(), any(Number.class))).thenAnswer(invocation ->
+            generations.merge(invocation.getArgument(0), ((Number) invocation.getArgument(1)).longValue(), Long::sum)
+        );
+        when(sharedGenerations.readAllMap()).thenAnswer(invocation -> Map.copyOf(generations));
+        RMapCache<String, Long> sharedTokens = mock(RMapCache.class);
+        when(sharedTokens.fastPut(anyString(), anyLong(), anyLong(), any(TimeUnit.class))).thenAnswer(invocation ->
+            tokens.put(invocation.getArgument(0), invocation.getArgument(1)) == null
+        );
+        when(sharedTokens.readAllMap()).thenAnswer(invocation -> Map.copyOf(tokens));
+        RTopic events = mock(RTopic.class);
+        when(events.addListener(eq(String.class), any(MessageListener.class))).thenAnswer(invocation -> {
+            listeners.add(invocation.getArgument(1));
+            return listeners.size();
+        });
+        when(events.publish(any())).thenAnswer(invocation -> {
+            listeners.forEach(listener -> listener.onMessage("auth:revocation:events", invocation.getArgument(0)));
+            return (long) listeners.size();
+        });
+
+        redissonClient = mock(RedissonClient.class);
+        when(redissonClient.<String, Long>getMap(eq("auth:revocation:generations"), any(Codec.class))).thenReturn(sharedGenerations);
+        when(redissonClient.<String, Long>getMapCache(eq("auth:revocation:tokens"), any(Codec.class))).thenReturn(sharedTokens);
+        when(redissonClient.getTopic(eq("auth:revocation:events"), any(Codec.class))).thenReturn(events);
+    }
+
+    private TokenRevocationService startNode() {
+        TokenRevocationService node = new TokenRevocationService(redissonClient, new AuthProperties(), new SimpleMeterRegistry());
+        node.init();
+        return node;
+    }
+
+    private static Jwt token(String jti, String login, long generation, Instant expiresAt) {
+        return Jwt.withTokenValue("token")
+            .header("alg", "ES256")
+            .id(jti)
+            .subject(login)
+            .claim(TokenRevocationService.GENERATION_CLAIM, generation)
+            .issuedAt(expiresAt.minusSeconds(900))
+            .expiresAt(expiresAt)
+            .build();
+    }
+
+    @Test
+    void revokedTokenIsRejectedOnEveryNode() {
+        TokenRevocationService first = startNode();
+        TokenRevocationService second = startNode();
+        Instant expiresAt = Instant.now().plusSeconds(600);
+        Jwt revoked = token(UUID.randomUUID().toString(), "alice", 0, expiresAt);
+        Jwt other = token(UUID.randomUUID().toString(), "alice", 0, expiresAt);
+
+        first.revokeToken(revoked.getId(), expiresAt);
+
+        assertThat(first.validate(revoked).hasErrors()).isTrue();
+        assertThat(second.validate(revoked).hasErrors()).isTrue();
+        assertThat(second.validate(other).hasErrors()).isFalse();
+    }
+
+    @Test
+    void revokedUserOnlyKeepsTokensOfTheNewGeneration() {
+        TokenRevocationService first = startNode();
+        TokenRevocationService second = startNode();
+        Instant expiresAt = Instant.now().plusSeconds(600);
+        Jwt before = token(UUID.randomUUID().toString(), "alice", first.currentGeneration("alice"), expiresAt);
+
+        first.revokeUser("alice");
+
+        Jwt after = token(UUID.randomUUID().toString(), "alice", second.currentGeneration("alice"), expiresAt);
+        assertThat(second.currentGeneration("alice")).isEqualTo(1);
+        assertThat(second.validate(before).hasErrors()).isTrue();
+        assertThat(second.validate(after).hasErrors()).isFalse();
+        assertThat(second.validate(token(UUID.randomUUID().toString(), "bob", 0, expiresAt)).hasErrors()).isFalse();
+    }
+
+    @Test
+    void nodeStartedLaterLoadsEarlierRevocations() {
+        TokenRevocationService first = startNode();
+        Instant expiresAt = Instant.now().plusSeconds(600);
+        Jwt revoked = token(UUID.randomUUID().toString(), "alice", 0, expiresAt);
+        first.revokeToken(revoked.getId(), expiresAt);
+        first.revokeUser("bob");
+
+        TokenRevocationService later = startNode();
+
+        assertThat(later.validate(revoked).hasErrors()).isTrue();
+        assertThat(later.validate(token(UUID.randomUUID().toString(), "bob", 0, expiresAt)).hasErrors()).isTrue();
+    }
+
+    @Test
+    void purgeForgetsExpiredRevocations() {
+        TokenRevocationService node = startNode();
+        Instant expired = Instant.now().minusSeconds(1);
+        Jwt revoked = token(UUID.randomUUID().toString(), "alice", 0, Instant.now().plusSeconds(600));
+        // the event of a revocation that has run out since it was published
+        listeners.forEach(listener -> listener.onMessage("auth:revocation:events", "jti:" + expired.getEpochSecond() + ":" + revoked.getId()));
+        assertThat(node.validate(revoked).hasErrors()).isTrue();
+
+        node.purge();
+
+        assertThat(node.validate(revoked).hasErrors()).isFalse();
+    }
+}
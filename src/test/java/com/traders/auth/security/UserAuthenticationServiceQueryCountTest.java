@@ -0,0 +1,121 @@
+package com.traders.auth.security;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.traders.auth.TestUsers;
+import com.traders.auth.domain.Authority;
+import com.traders.auth.domain.User;
+import com.traders.auth.properties.AuthProperties;
+import com.traders.common.utils.EncryptionUtil;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.MockedStatic;
+import org.redisson.api.RMapCache;
+import org.redisson.api.RTopic;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.Codec;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.mockStatic;
+import static org.mockito.Mockito.when;
+
+/**
+ * SQL statements run by {@link UserAuthenticationService#loadUserByUsername}, the lookup of every password login, with
+ * the second-level and query caches off and Redis missing every credential.
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("testdev")
+@Import({ UserAuthenticationService.class, AuthProperties.class, UserAuthenticationServiceQueryCountTest.Config.class })
+class UserAuthenticationServiceQueryCountTest {
+
+    @TestConfiguration
+    static class Config {
+
+        @Bean
+        @SuppressWarnings("unchecked")
+        CredentialCache credentialCache(AuthProperties authProperties) {
+            RMapCache<String, String> shared = mock(RMapCache.class);
+            when(shared.fastPutIfAbsent(anyString(), anyString(), anyLong(), any(TimeUnit.class))).thenReturn(true);
+            RedissonClient redissonClient = mock(RedissonClient.class);
+            when(redissonClient.<String, String>getMapCache(anyString(), any(Codec.class))).thenReturn(shared);
+            when(redissonClient.getTopic(anyString(), any(Codec.class))).thenReturn(mock(RTopic.class));
+            return new CredentialCache(redissonClient, new ObjectMapper().findAndRegisterModules(), authProperties, new SimpleMeterRegistry());
+        }
+    }
+
+    @Autowired
+    private UserAuthenticationService userAuthenticationService;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @MockBean
+    private LoginAttemptService loginAttemptService;
+
+    private MockedStatic<EncryptionUtil> encryption;
+
+    private Statistics statistics;
+
+    private String login;
+
+    @BeforeEach
+    void setUp() {
+        encryption = mockStatic(EncryptionUtil.class);
+        encryption.when(() -> EncryptionUtil.encrypt(anyString())).thenReturn("encrypted");
+        Authority authority = entityManager.persist(new Authority().name("ROLE_USER"));
+        User root = TestUsers.persist(entityManager, TestUsers.uniqueLogin("root"), null, authority);
+        User broker = TestUsers.persist(entityManager, TestUsers.uniqueLogin("broker"), root, authority);
+        // a login of its own per test, as the credential cache outlives the test's rolled back rows
+        login = TestUsers.persist(entityManager, TestUsers.uniqueLogin("client"), broker, authority).getLogin();
+        entityManager.flush();
+        entityManager.clear();
+        statistics = entityManager.getEntityManager().getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @AfterEach
+    void tearDown() {
+        encryption.close();
+    }
+
+    @Test
+    void loginByLoginRunsOneStatementThenNone() {
+        UserDetails user = userAuthenticationService.loadUserByUsername(login);
+
+        assertThat(user.getUsername()).isEqualTo(login);
+        assertThat(user.getAuthorities()).hasSize(1);
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+
+        userAuthenticationService.loadUserByUsername(login);
+
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+
+    @Test
+    void loginByEmailRunsOneStatement() {
+        UserDetails user = userAuthenticationService.loadUserByUsername(login.toUpperCase() + "@localhost.test");
+
+        assertThat(user.getUsername()).isEqualTo(login);
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+}
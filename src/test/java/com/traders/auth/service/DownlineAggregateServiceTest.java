@@ -0,0 +1,232 @@
+package com.traders.auth.service;
+
+import com.traders.auth.TestUsers;
+import com.traders.auth.domain.Authority;
+import com.traders.auth.domain.DownlineAggregate;
+import com.traders.auth.domain.User;
+import com.traders.auth.domain.Wallet;
+import com.traders.auth.exception.BadRequestAlertException;
+import com.traders.auth.properties.AuthProperties;
+import com.traders.auth.repository.AuthorityRepository;
+import com.traders.auth.repository.DownlineAggregateDeltaRepository;
+import com.traders.auth.repository.DownlineAggregateRepository;
+import com.traders.auth.repository.UserHierarchyRepository;
+import com.traders.auth.repository.UserRepository;
+import com.traders.auth.repository.WalletRepository;
+import com.traders.auth.service.dto.DownlineSummaryDTO;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.redisson.api.RLock;
+import org.redisson.api.RedissonClient;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Downline aggregates kept through the deltas of every kind of change to the users below, then drifted on purpose and
+ * put right by the rebuild; and a user with a downline, which cannot be deleted.
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("testdev")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import({ DownlineAggregateService.class, UserHierarchyService.class, AuthProperties.class, DownlineAggregateServiceTest.Config.class })
+class DownlineAggregateServiceTest {
+
+    private static final String ROLE_USER = "ROLE_USER";
+
+    private static final String ROLE_ADMIN = "ROLE_ADMIN";
+
+    @TestConfiguration
+    static class Config {
+
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+
+        @Bean
+        RedissonClient redissonClient() throws InterruptedException {
+            RLock lock = mock(RLock.class);
+            when(lock.tryLock()).thenReturn(true);
+            when(lock.tryLock(anyLong(), any(TimeUnit.class))).thenReturn(true);
+            RedissonClient redissonClient = mock(RedissonClient.class);
+            when(redissonClient.getLock(anyString())).thenReturn(lock);
+            return redissonClient;
+        }
+    }
+
+    @Autowired
+    private DownlineAggregateService downlineAggregateService;
+
+    @Autowired
+    private UserHierarchyService userHierarchyService;
+
+    @Autowired
+    private DownlineAggregateRepository aggregateRepository;
+
+    @Autowired
+    private DownlineAggregateDeltaRepository deltaRepository;
+
+    @Autowired
+    private UserHierarchyRepository userHierarchyRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private AuthorityRepository authorityRepository;
+
+    @Autowired
+    private WalletRepository walletRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @BeforeEach
+    void setUp() {
+        for (String name : Set.of(ROLE_USER, ROLE_ADMIN)) {
+            if (!authorityRepository.existsById(name)) {
+                authorityRepository.save(new Authority().name(name));
+            }
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        // the users stay, outside of any hierarchy the rebuild would check
+        deltaRepository.deleteAll();
+        aggregateRepository.deleteAll();
+        userHierarchyRepository.deleteAll();
+    }
+
+    private Long addUser(Long parentId, boolean activated) {
+        return transactionTemplate.execute(status -> {
+            User user = TestUsers.user(
+                TestUsers.uniqueLogin("downline"),
+                parentId == null ? null : userRepository.getReferenceById(parentId),
+                authorityRepository.getReferenceById(ROLE_USER)
+            );
+            user.setActivated(activated);
+            user = userRepository.save(user);
+            userHierarchyService.addUser(user);
+            return user.getId();
+        });
+    }
+
+    private void credit(Long userId, long amountMinor) {
+        transactionTemplate.executeWithoutResult(status -> {
+            Wallet wallet = new Wallet();
+            wallet.setUser(userRepository.getReferenceById(userId));
+            wallet.setCreatedAt("2026-10-18 00:00:00");
+            wallet.setBalanceMinor(amountMinor);
+            walletRepository.save(wallet);
+            downlineAggregateService.recordBalanceChanged(userId, BigDecimal.valueOf(amountMinor, DownlineAggregateService.SCALE));
+        });
+    }
+
+    private void activate(Long userId) {
+        transactionTemplate.executeWithoutResult(status -> {
+            userRepository.findById(userId).orElseThrow().setActivated(true);
+            downlineAggregateService.recordUserChanged(userId, false, true, Set.of(ROLE_USER), Set.of(ROLE_USER));
+        });
+    }
+
+    private void grantAdmin(Long userId) {
+        transactionTemplate.executeWithoutResult(status -> {
+            Authority admin = authorityRepository.getReferenceById(ROLE_ADMIN);
+            userRepository.findById(userId).orElseThrow().getAuthorities().add(admin);
+            downlineAggregateService.recordUserChanged(userId, true, true, Set.of(ROLE_USER), Set.of(ROLE_USER, ROLE_ADMIN));
+        });
+    }
+
+    private void move(Long userId, Long newParentId) {
+        transactionTemplate.executeWithoutResult(status ->
+            userHierarchyService.moveUser(userRepository.findById(userId).orElseThrow(), userRepository.findById(newParentId).orElseThrow())
+        );
+    }
+
+    private void delete(Long userId) {
+        transactionTemplate.executeWithoutResult(status -> {
+            userHierarchyService.removeUser(userId);
+            userRepository.deleteById(userId);
+        });
+    }
+
+    private static void assertSummary(DownlineSummaryDTO summary, long users, long activeUsers, String totalBalance, Map<String, Long> usersByAuthority) {
+        assertThat(summary.users()).isEqualTo(users);
+        assertThat(summary.activeUsers()).isEqualTo(activeUsers);
+        assertThat(summary.totalBalance()).isEqualByComparingTo(totalBalance);
+        assertThat(summary.usersByAuthority()).isEqualTo(usersByAuthority);
+    }
+
+    @Test
+    void foldedDeltasMatchTheDownlineAndTheRebuildCorrectsDrift() {
+        Long root = addUser(null, true);
+        Long broker = addUser(root, true);
+        Long client = addUser(broker, true);
+        Long pending = addUser(root, false);
+        Long leaving = addUser(root, true);
+        credit(client, 1234);
+        activate(pending);
+        grantAdmin(broker);
+        move(client, pending);
+        delete(leaving);
+
+        downlineAggregateService.fold();
+
+        assertSummary(downlineAggregateService.summary(root), 3, 3, "12.34", Map.of(ROLE_USER, 3L, ROLE_ADMIN, 1L));
+        assertSummary(downlineAggregateService.summary(pending), 1, 1, "12.34", Map.of(ROLE_USER, 1L));
+        assertSummary(downlineAggregateService.summary(broker), 0, 0, "0", Map.of());
+        assertThat(downlineAggregateService.rebuild()).isZero();
+
+        transactionTemplate.executeWithoutResult(status -> {
+            aggregateRepository.addToAmount(root, DownlineAggregateService.USERS, BigDecimal.valueOf(5));
+            aggregateRepository.deleteById(new DownlineAggregate.Key(pending, DownlineAggregateService.BALANCE));
+        });
+
+        assertThat(downlineAggregateService.rebuild()).isEqualTo(2);
+        assertSummary(downlineAggregateService.summary(root), 3, 3, "12.34", Map.of(ROLE_USER, 3L, ROLE_ADMIN, 1L));
+        assertSummary(downlineAggregateService.summary(pending), 1, 1, "12.34", Map.of(ROLE_USER, 1L));
+    }
+
+    @Test
+    void userWithADownlineIsNotRemoved() {
+        Long root = addUser(null, true);
+        Long broker = addUser(root, true);
+        addUser(broker, true);
+
+        assertThatThrownBy(() -> delete(broker))
+            .isInstanceOfSatisfying(BadRequestAlertException.class, e -> assertThat(e.getErrorKey()).isEqualTo("hasdownline"));
+
+        downlineAggregateService.fold();
+
+        assertThat(userRepository.existsById(broker)).isTrue();
+        assertSummary(downlineAggregateService.summary(root), 2, 2, "0", Map.of(ROLE_USER, 2L));
+        assertSummary(downlineAggregateService.summary(broker), 1, 1, "0", Map.of(ROLE_USER, 1L));
+        assertThat(downlineAggregateService.rebuild()).isZero();
+    }
+}
@@ -0,0 +1,167 @@
+package com.traders.auth.service;
+
+import com.traders.auth.TestUsers;
+import com.traders.auth.domain.OutboxEvent;
+import com.traders.auth.properties.AuthProperties;
+import com.traders.auth.repository.OutboxEventRepository;
+import com.traders.auth.repository.UserRepository;
+import com.traders.auth.repository.WalletRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+
+/**
+ * Dispatching registration side effects: one batch per poll, a failing event isolated from its batch, retried later
+ * and given up on after the last attempt, and an event another node carried out first.
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("testdev")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import({ OutboxService.class, WalletService.class, AuthProperties.class, OutboxServiceTest.Config.class })
+class OutboxServiceTest {
+
+    @TestConfiguration
+    static class Config {
+
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+    }
+
+    @Autowired
+    private OutboxService outboxService;
+
+    @Autowired
+    private OutboxEventRepository outboxEventRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @SpyBean
+    private WalletRepository walletRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private AuthProperties authProperties;
+
+    @SpyBean
+    private WalletService walletService;
+
+    @MockBean
+    private DownlineAggregateService downlineAggregateService;
+
+    @BeforeEach
+    void setUp() {
+        authProperties.getOutbox().setBatchSize(2);
+        authProperties.getOutbox().setMaxAttempts(2);
+    }
+
+    @AfterEach
+    void tearDown() {
+        outboxEventRepository.deleteAll();
+        authProperties.getOutbox().setBatchSize(new AuthProperties.Outbox().getBatchSize());
+        authProperties.getOutbox().setMaxAttempts(new AuthProperties.Outbox().getMaxAttempts());
+    }
+
+    private Long register() {
+        return transactionTemplate.execute(status -> {
+            Long id = userRepository.save(TestUsers.user(TestUsers.uniqueLogin("outbox"), null)).getId();
+            outboxService.enqueue(OutboxEvent.Type.USER_WALLET, id);
+            return id;
+        });
+    }
+
+    private OutboxEvent eventOf(Long userId) {
+        return outboxEventRepository.findAll().stream().filter(event -> event.getAggregateId().equals(userId)).findFirst().orElseThrow();
+    }
+
+    private void makeDue(Long userId) {
+        transactionTemplate.executeWithoutResult(status -> eventOf(userId).setAvailableAt(Instant.now()));
+    }
+
+    @Test
+    void pollCarriesOutOneBatch() {
+        List<Long> users = List.of(register(), register(), register());
+
+        outboxService.dispatch();
+
+        assertThat(walletRepository.findUserIdsWithWallet(users)).hasSize(2);
+        assertThat(outboxEventRepository.count()).isEqualTo(1);
+
+        outboxService.dispatch();
+
+        assertThat(walletRepository.findUserIdsWithWallet(users)).containsExactlyInAnyOrderElementsOf(users);
+        assertThat(outboxEventRepository.count()).isZero();
+    }
+
+    @Test
+    void failingEventIsRetriedAloneThenGivenUpOn() {
+        Long done = register();
+        Long failing = register();
+        doThrow(new IllegalStateException("wallet store down"))
+            .when(walletService)
+            .createUserWallets(argThat(users -> users.stream().anyMatch(user -> user.getId().equals(failing))));
+
+        outboxService.dispatch();
+
+        assertThat(walletRepository.findUserIdsWithWallet(List.of(done, failing))).containsExactly(done);
+        OutboxEvent retried = eventOf(failing);
+        assertThat(outboxEventRepository.count()).isEqualTo(1);
+        assertThat(retried.getStatus()).isEqualTo(OutboxEvent.Status.PENDING);
+        assertThat(retried.getAttempts()).isEqualTo(1);
+        assertThat(retried.getLastError()).contains("wallet store down");
+        assertThat(retried.getAvailableAt()).isAfter(Instant.now());
+
+        // not due until its backoff has passed
+        outboxService.dispatch();
+        assertThat(eventOf(failing).getAttempts()).isEqualTo(1);
+
+        makeDue(failing);
+        outboxService.dispatch();
+
+        OutboxEvent failed = eventOf(failing);
+        assertThat(failed.getStatus()).isEqualTo(OutboxEvent.Status.FAILED);
+        assertThat(failed.getAttempts()).isEqualTo(2);
+    }
+
+    @Test
+    void walletCreatedByAnotherNodeCountsAsDone() {
+        Long user = register();
+        // the other node created the wallet after this one checked for it
+        transactionTemplate.executeWithoutResult(status -> walletService.createUserWallets(userRepository.findAllById(List.of(user))));
+        doReturn(Set.of()).when(walletRepository).findUserIdsWithWallet(anyCollection());
+
+        outboxService.dispatch();
+
+        assertThat(outboxEventRepository.count()).isZero();
+        assertThat(walletRepository.findAll()).filteredOn(wallet -> wallet.getUser().getId().equals(user)).hasSize(1);
+    }
+}
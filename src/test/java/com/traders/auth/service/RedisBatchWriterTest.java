@@ -0,0 +1,161 @@
+package com.traders.auth.service;
+
+import com.traders.auth.properties.AuthProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.redisson.api.BatchOptions;
+import org.redisson.api.RBatch;
+import org.redisson.api.RMapCache;
+import org.redisson.api.RMapCacheAsync;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.Codec;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Batched writes against an in-memory stand-in for Redis, where only the default-codec map of a cache name is readable:
+ * what the writer pipelines must land there just like its inline writes, including around shutdown.
+ */
+class RedisBatchWriterTest {
+
+    private static final String CACHE = "tokenManager";
+
+    private final Map<String, Object> redis = new ConcurrentHashMap<>();
+
+    private final Map<String, Long> ttlMillis = new ConcurrentHashMap<>();
+
+    private final AtomicInteger inlinePuts = new AtomicInteger();
+
+    private final AtomicInteger batches = new AtomicInteger();
+
+    private volatile Runnable onExecute = () -> {};
+
+    private final AuthProperties authProperties = new AuthProperties();
+
+    private RedissonClient redissonClient;
+
+    private RedisBatchWriter writer;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        RMapCache<Object, Object> map = mock(RMapCache.class);
+        when(map.fastPut(anyString(), any(), anyLong(), any(TimeUnit.class))).thenAnswer(invocation -> {
+            inlinePuts.incrementAndGet();
+            put(invocation.getArgument(0), invocation.getArgument(1), invocation.getArgument(2), invocation.getArgument(3));
+            return true;
+        });
+        when(map.get(any())).thenAnswer(invocation -> redis.get((String) invocation.getArgument(0)));
+        redissonClient = mock(RedissonClient.class);
+        when(redissonClient.getMapCache(CACHE)).thenReturn(map);
+        when(redissonClient.createBatch(any(BatchOptions.class))).thenAnswer(invocation -> newBatch());
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        if (writer != null) {
+            writer.shutdown();
+        }
+    }
+
+    private void put(String key, Object value, long ttl, TimeUnit unit) {
+        redis.put(key, value);
+        ttlMillis.put(key, unit.toMillis(ttl));
+    }
+
+    @SuppressWarnings("unchecked")
+    private RBatch newBatch() {
+        List<Runnable> pending = new ArrayList<>();
+        RMapCacheAsync<Object, Object> map = mock(RMapCacheAsync.class);
+        when(map.fastPutAsync(anyString(), any(), anyLong(), any(TimeUnit.class))).thenAnswer(invocation -> {
+            pending.add(() -> put(invocation.getArgument(0), invocation.getArgument(1), invocation.getArgument(2), invocation.getArgument(3)));
+            return null;
+        });
+        RBatch batch = mock(RBatch.class);
+        when(batch.getMapCache(CACHE)).thenReturn(map);
+        when(batch.execute()).thenAnswer(invocation -> {
+            batches.incrementAndGet();
+            onExecute.run();
+            pending.forEach(Runnable::run);
+            return null;
+        });
+        return batch;
+    }
+
+    private RedisBatchWriter writer() {
+        writer = new RedisBatchWriter(redissonClient, authProperties, new SimpleMeterRegistry());
+        return writer;
+    }
+
+    @Test
+    void batchedWriteIsReadableThroughTheCacheMap() {
+        authProperties.getRedisBatch().setDurability(AuthProperties.RedisBatch.Durability.AWAIT_FLUSH);
+        Instant issued = Instant.parse("2026-10-18T00:00:00Z");
+
+        writer().saveToCustomCacheWithTTL(CACHE, "42", issued, 24, TimeUnit.HOURS);
+
+        assertThat(batches).hasValue(1);
+        assertThat(inlinePuts).hasValue(0);
+        assertThat(redissonClient.getMapCache(CACHE).get("42")).isEqualTo(issued);
+        assertThat(ttlMillis).containsEntry("42", TimeUnit.HOURS.toMillis(24));
+        verify(redissonClient, never()).getMapCache(eq(CACHE), any(Codec.class));
+    }
+
+    @Test
+    void writeQueuedAtShutdownIsFlushed() throws Exception {
+        // the flusher is stuck on a first batch past the shutdown timeout, with a second write still queued behind it
+        authProperties.getRedisBatch().setShutdownTimeout(Duration.ofMillis(100));
+        CountDownLatch flushing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        onExecute = () -> {
+            onExecute = () -> {};
+            flushing.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+        RedisBatchWriter writer = writer();
+        writer.saveToCustomCacheWithTTL(CACHE, "1", "first", 1, TimeUnit.HOURS);
+        assertThat(flushing.await(5, TimeUnit.SECONDS)).isTrue();
+        writer.saveToCustomCacheWithTTL(CACHE, "2", "second", 1, TimeUnit.HOURS);
+
+        writer.shutdown();
+
+        assertThat(redis).containsEntry("2", "second");
+        assertThat(inlinePuts).hasValue(0);
+        release.countDown();
+    }
+
+    @Test
+    void writeAfterShutdownIsDoneInline() throws Exception {
+        RedisBatchWriter writer = writer();
+        writer.shutdown();
+
+        writer.saveToCustomCacheWithTTL(CACHE, "42", "value", 1, TimeUnit.HOURS);
+
+        assertThat(redis).containsEntry("42", "value");
+        assertThat(inlinePuts).hasValue(1);
+    }
+}
@@ -0,0 +1,225 @@
+package com.traders.auth.service;
+
+import com.traders.auth.TestUsers;
+import com.traders.auth.domain.User;
+import com.traders.auth.domain.Wallet;
+import com.traders.auth.exception.BadRequestAlertException;
+import com.traders.auth.properties.AuthProperties;
+import com.traders.auth.repository.UserRepository;
+import com.traders.auth.repository.WalletRepository;
+import com.traders.auth.service.dto.WalletDTO;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Concurrent operations on one wallet, with and without the striped lock: every operation that succeeded must show in
+ * the final balance, held amount and version, at no less than a floor of operations per second.
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("testdev")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import({ WalletService.class, AuthProperties.class, WalletServiceConcurrencyTest.Config.class })
+class WalletServiceConcurrencyTest {
+
+    private static final Logger LOG = LoggerFactory.getLogger(WalletServiceConcurrencyTest.class);
+
+    private static final int THREADS = 8;
+
+    private static final int OPERATIONS_PER_THREAD = 2_500;
+
+    // well below what one wallet sustains on the in-memory database, so only a serialization gone wrong trips it
+    private static final long MIN_OPERATIONS_PER_SECOND = 500;
+
+    @TestConfiguration
+    static class Config {
+
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+    }
+
+    @Autowired
+    private WalletService walletService;
+
+    @Autowired
+    private WalletRepository walletRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @MockBean
+    private DownlineAggregateService downlineAggregateService;
+
+    private Long userId;
+
+    private Long walletId;
+
+    @BeforeEach
+    void setUp() {
+        transactionTemplate.executeWithoutResult(status -> {
+            User user = userRepository.save(TestUsers.user(TestUsers.uniqueLogin("wallet"), null));
+            Wallet wallet = new Wallet();
+            wallet.setUser(user);
+            wallet.setCreatedAt("2026-10-18 00:00:00");
+            userId = user.getId();
+            walletId = walletRepository.save(wallet).getWalletId();
+        });
+    }
+
+    @Test
+    void noLostUpdatesUnderTheStripedLock() throws Exception {
+        stress(walletService);
+    }
+
+    @Test
+    void noLostUpdatesWithoutTheStripedLock() throws Exception {
+        // a zero timeout lets every contended operation go ahead without the lock, leaving it to the conditional updates
+        AuthProperties properties = new AuthProperties();
+        properties.getWalletOperations().setLockStripes(1);
+        properties.getWalletOperations().setLockTimeout(Duration.ZERO);
+        stress(new WalletService(walletRepository, downlineAggregateService, transactionTemplate, properties, new SimpleMeterRegistry()));
+    }
+
+    private void stress(WalletService service) throws Exception {
+        AtomicLong credited = new AtomicLong();
+        AtomicLong debited = new AtomicLong();
+        AtomicLong held = new AtomicLong();
+        AtomicLong released = new AtomicLong();
+        AtomicLong applied = new AtomicLong();
+        AtomicLong rejected = new AtomicLong();
+        AtomicLong creditsAndDebits = new AtomicLong();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Future<?>> workers = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            workers.add(
+                executor.submit(() -> {
+                    start.await();
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    for (int i = 0; i < OPERATIONS_PER_THREAD; i++) {
+                        WalletService.Operation operation = WalletService.Operation.values()[random.nextInt(4)];
+                        long amount = 1 + random.nextInt(1_000);
+                        try {
+                            service.apply(walletId, operation, amount, null).orElseThrow();
+                        } catch (BadRequestAlertException e) {
+                            // not enough available or held for it right now
+                            rejected.incrementAndGet();
+                            continue;
+                        }
+                        applied.incrementAndGet();
+                        switch (operation) {
+                            case CREDIT -> credited.addAndGet(amount);
+                            case DEBIT -> debited.addAndGet(amount);
+                            case HOLD -> held.addAndGet(amount);
+                            case RELEASE -> released.addAndGet(amount);
+                        }
+                        if (operation == WalletService.Operation.CREDIT || operation == WalletService.Operation.DEBIT) {
+                            creditsAndDebits.incrementAndGet();
+                        }
+                    }
+                    return null;
+                })
+            );
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Future<?> worker : workers) {
+            worker.get();
+        }
+        long elapsed = System.nanoTime() - begin;
+        executor.shutdown();
+
+        long operations = (long) THREADS * OPERATIONS_PER_THREAD;
+        long operationsPerSecond = operations * 1_000_000_000L / elapsed;
+        LOG.info(
+            "{} operations on one wallet in {} ms, {} ops/s, {} applied and {} rejected",
+            operations,
+            elapsed / 1_000_000,
+            operationsPerSecond,
+            applied.get(),
+            rejected.get()
+        );
+        WalletDTO wallet = service.getWallet(walletId).orElseThrow();
+        assertThat(applied.get() + rejected.get()).isEqualTo(operations);
+        assertThat(wallet.balanceMinor()).isEqualTo(credited.get() - debited.get());
+        assertThat(wallet.heldMinor()).isEqualTo(held.get() - released.get());
+        assertThat(wallet.heldMinor()).isBetween(0L, wallet.balanceMinor());
+        assertThat(wallet.version()).isEqualTo(applied.get());
+        verify(downlineAggregateService, times((int) creditsAndDebits.get())).recordBalanceChanged(eq(userId), any(BigDecimal.class));
+        assertThat(operationsPerSecond).isGreaterThanOrEqualTo(MIN_OPERATIONS_PER_SECOND);
+    }
+
+    @Test
+    void operationAtAnotherVersionIsRejected() {
+        WalletDTO credited = walletService.apply(walletId, WalletService.Operation.CREDIT, 1_000, 0L).orElseThrow();
+        assertThat(credited.version()).isEqualTo(1);
+
+        assertThatThrownBy(() -> walletService.apply(walletId, WalletService.Operation.DEBIT, 100, 0L))
+            .isInstanceOf(OptimisticLockingFailureException.class);
+
+        WalletDTO debited = walletService.apply(walletId, WalletService.Operation.DEBIT, 100, 1L).orElseThrow();
+        assertThat(debited.balanceMinor()).isEqualTo(900);
+        assertThat(debited.version()).isEqualTo(2);
+    }
+
+    @Test
+    void heldAmountCannotBeDebited() {
+        walletService.apply(walletId, WalletService.Operation.CREDIT, 1_000, null);
+        WalletDTO wallet = walletService.apply(walletId, WalletService.Operation.HOLD, 800, null).orElseThrow();
+        assertThat(wallet.availableMinor()).isEqualTo(200);
+
+        assertThatThrownBy(() -> walletService.apply(walletId, WalletService.Operation.DEBIT, 201, null))
+            .isInstanceOfSatisfying(BadRequestAlertException.class, e -> assertThat(e.getErrorKey()).isEqualTo("insufficientfunds"));
+        assertThatThrownBy(() -> walletService.apply(walletId, WalletService.Operation.RELEASE, 801, null))
+            .isInstanceOfSatisfying(BadRequestAlertException.class, e -> assertThat(e.getErrorKey()).isEqualTo("insufficientheld"));
+
+        wallet = walletService.apply(walletId, WalletService.Operation.RELEASE, 800, null).orElseThrow();
+        assertThat(wallet.balanceMinor()).isEqualTo(1_000);
+        assertThat(wallet.heldMinor()).isZero();
+        assertThat(wallet.version()).isEqualTo(3);
+    }
+
+    @Test
+    void unknownWalletIsEmpty() {
+        assertThat(walletService.apply(-1L, WalletService.Operation.CREDIT, 100, null)).isEmpty();
+    }
+}
@@ -0,0 +1,75 @@
+package com.traders.auth.web.filter;
+
+import com.traders.auth.properties.AuthProperties;
+import com.traders.auth.security.RateLimiter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.RedisConnectionException;
+import org.redisson.client.codec.Codec;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Per-IP throttling of the credential endpoints with Redis down, so that the per-node buckets alone decide.
+ */
+class LoginThrottlingFilterTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    private LoginThrottlingFilter filter;
+
+    @BeforeEach
+    void setUp() {
+        AuthProperties authProperties = new AuthProperties();
+        authProperties.getThrottling().getIp().setCapacity(2);
+        RedissonClient redissonClient = mock(RedissonClient.class);
+        when(redissonClient.getScript(any(Codec.class))).thenThrow(new RedisConnectionException("Connection refused"));
+        filter = new LoginThrottlingFilter(new RateLimiter(redissonClient, authProperties, registry), authProperties);
+    }
+
+    private MockHttpServletResponse post(String path) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", path);
+        request.setRemoteAddr("10.0.0.1");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, new MockFilterChain());
+        return response;
+    }
+
+    @Test
+    void exhaustedEndpointIsThrottled() throws Exception {
+        assertThat(post("/api/authenticate").getStatus()).isEqualTo(200);
+        assertThat(post("/api/authenticate").getStatus()).isEqualTo(200);
+
+        MockHttpServletResponse throttled = post("/api/authenticate");
+
+        assertThat(throttled.getStatus()).isEqualTo(429);
+        assertThat(throttled.getHeader(HttpHeaders.RETRY_AFTER)).isNotNull();
+    }
+
+    @Test
+    void otherEndpointsKeepTheirOwnBuckets() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            post("/api/authenticate");
+        }
+
+        assertThat(post("/api/client/authenticate").getStatus()).isEqualTo(200);
+        assertThat(post("/api/account/reset-password/init").getStatus()).isEqualTo(200);
+    }
+
+    @Test
+    void checksWithoutRedisAreCounted() throws Exception {
+        post("/api/authenticate");
+        post("/api/client/authenticate");
+
+        assertThat(registry.get("auth.throttling.failed-open").tag("bucket", "ip").counter().count()).isEqualTo(2);
+    }
+}